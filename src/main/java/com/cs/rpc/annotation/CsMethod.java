@@ -0,0 +1,18 @@
+package com.cs.rpc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 此注解的作用:
+ *      标注在CsReference引用的接口方法上,对单个方法覆盖CsReference中的调用配置
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CsMethod {
+    //调用超时时间(毫秒),小于0表示使用CsReference上的配置,0表示不超时
+    long timeout() default -1;
+
+    //单向调用,只能用于返回void的方法:发出请求后立即返回,服务端不返回响应,调用结果和异常都拿不到
+    boolean oneway() default false;
+}
@@ -19,5 +19,13 @@ public @interface CsReference {
 
    String version() default "1.0";
 
+   //调用超时时间(毫秒),0表示不超时,方法上可以用CsMethod单独配置
+   long timeout() default 3000;
+   //接口中所有返回void的方法都单向调用,方法上可以用CsMethod单独配置
+   boolean oneway() default false;
+   //负载均衡:random / roundRobin(按nacos权重加权轮询) / p2c(两次随机选未完成请求少的) / ewma(按延迟和错误率的移动平均)
+   //         / consistentHash(按CsRouteKey标注的参数一致性哈希)
+   String loadBalance() default "random";
+
 
 }
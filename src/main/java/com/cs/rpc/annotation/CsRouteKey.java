@@ -0,0 +1,16 @@
+package com.cs.rpc.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 此注解的作用:
+ *      标注在CsReference引用的接口方法的参数上,这个参数作为路由键,
+ *      配合CsReference(loadBalance = "consistentHash")使用,相同路由键的请求总是发往同一个服务提供方
+ *      路由键按String.valueOf的结果计算哈希,应该使用字符串、数字等toString稳定的类型,
+ *      这样不同的客户端也会把相同的键路由到同一个提供方
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CsRouteKey {
+}
@@ -30,4 +30,52 @@ public @interface EnableRpc {
     //server服务端口
     int serverPort() default 13567;
 
+    //每个服务提供方的最大连接数
+    int connectionsPerProvider() default 4;
+
+    //连接空闲多少秒后回收,小于等于0表示不回收
+    int connectionIdleTimeout() default 60;
+
+    //是否开启flush合并,同一轮EventLoop中的多次flush合并成一次系统调用
+    boolean flushBatching() default false;
+
+    //flush合并时,积压多少条消息后立即flush
+    int flushMaxMessages() default 64;
+
+    //flush合并时,积压多少字节后立即flush
+    int flushMaxBytes() default 65536;
+
+    //压缩类型:gzip / lz4 / deflateDict(按服务训练字典的deflate,适合小消息) / none
+    String compressType() default "gzip";
+
+    //序列化后小于多少字节不压缩,-1表示按压缩类型自动选择
+    int compressThreshold() default -1;
+
+    //是否按方法统计压缩率,压缩不划算的方法自动停止压缩
+    boolean compressAdaptive() default true;
+
+    //客户端是否用运行时生成的存根类代替JDK动态代理
+    boolean clientStub() default false;
+
+    //客户端是否暂时剔除连续失败、错误率高、延迟明显高于同服务其他实例的服务提供方
+    boolean outlierEjection() default true;
+
+    //所在地区,服务提供方发布到nacos元数据,消费端优先调用同地区的实例,为空表示不按地区路由
+    String zone() default "";
+
+    //标签,服务提供方发布到nacos元数据,消费端只调用相同标签的实例(没有时调用不带标签的实例)
+    String tag() default "";
+
+    //本地区可用实例的权重低于本地区所有上线实例权重的这个比例时,溢出到所有地区
+    double localityThreshold() default 0.7;
+
+    //是否按服务提供方和方法熔断,熔断器打开后调用直接失败,不再发往这个提供方
+    boolean circuitBreaker() default true;
+
+    //熔断器窗口中失败率达到这个值时打开
+    double breakerFailureRate() default 0.5;
+
+    //超过多少毫秒的调用算慢调用,慢调用比例过高时熔断器也会打开,0表示不统计慢调用
+    long breakerSlowCallMillis() default 2000;
+
 }
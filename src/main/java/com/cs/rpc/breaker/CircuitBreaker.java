@@ -0,0 +1,249 @@
+package com.cs.rpc.breaker;
+
+import com.cs.rpc.exception.CsRpcCircuitOpenException;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author ：cs
+ * @description：一个服务提供方上一个方法的熔断器
+ *      关闭(CLOSED):最近WINDOW_SIZE次调用的结果和延迟记在环形缓冲区中,
+ *          至少MIN_CALLS次调用后,失败率或慢调用率超过阈值时打开
+ *      打开(OPEN):调用直接被拒绝,抛出预先创建的异常,不分配对象也不发请求;WAIT之后转为半开
+ *      半开(HALF_OPEN):只放行PROBES次探测调用,全部完成后按失败率决定关闭还是重新打开;
+ *          探测调用迟迟不完成(没有设置超时)时,HALF_OPEN_TIMEOUT后重新打开,之后再探测
+ *      状态、代数和统计窗口是一个不可变的Phase,状态切换时CAS整体替换;
+ *      调用开始时拿到的permit是当时的代数,结果回来时代数已经变化就丢弃,旧状态下的调用不会影响新状态的统计
+ *      环形缓冲区无锁:写入位置由计数器getAndIncrement分配,每个槽位getAndSet,
+ *      再用新旧两个值的差更新调用数、失败数、慢调用数和延迟之和
+ * @date ：2026/10/18 11:10
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    static final int WINDOW_SIZE = 100;
+    static final int MIN_CALLS = 20;
+    static final int PROBES = 5;
+    static final long WAIT = TimeUnit.SECONDS.toNanos(5);
+    static final long HALF_OPEN_TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * 槽位的编码:延迟(微秒)<<3 | RECORDED | SLOW | FAILURE,0表示空槽位
+     */
+    private static final long FAILURE = 1;
+    private static final long SLOW = 2;
+    private static final long RECORDED = 4;
+
+    /**
+     * 不熔断,熔断关闭时使用
+     */
+    static final CircuitBreaker DISABLED = new CircuitBreaker(null, null, 1.0, 1.0, 0, null) {
+        @Override
+        public long acquire() {
+            return 0;
+        }
+
+        @Override
+        public void onResult(long permit, long latencyNanos, boolean success) {
+        }
+    };
+
+    private final InetSocketAddress address;
+    private final String method;
+    private final double failureRate;
+    private final double slowCallRate;
+    /**
+     * 超过这个时间的调用算慢调用,0表示不统计慢调用
+     */
+    private final long slowCallNanos;
+    private final CircuitBreakerRegistry registry;
+    private final CsRpcCircuitOpenException rejection;
+
+    private final AtomicReference<Phase> phase = new AtomicReference<>(new Phase(0, State.CLOSED, WINDOW_SIZE, 0, null));
+
+    CircuitBreaker(InetSocketAddress address, String method, double failureRate, double slowCallRate,
+                   long slowCallNanos, CircuitBreakerRegistry registry) {
+        this.address = address;
+        this.method = method;
+        this.failureRate = failureRate;
+        this.slowCallRate = slowCallRate;
+        this.slowCallNanos = slowCallNanos;
+        this.registry = registry;
+        this.rejection = new CsRpcCircuitOpenException("熔断器打开,拒绝调用:" + address + " " + method);
+    }
+
+    /**
+     * 调用前获取许可
+     * @return 许可,调用完成后传给onResult;小于0表示被拒绝
+     */
+    public long acquire() {
+        Phase current = phase.get();
+        if (current.state == State.CLOSED) {
+            return current.generation;
+        }
+        long now = System.nanoTime();
+        if (current.state == State.OPEN) {
+            if (now - current.until < 0) {
+                registry.rejected();
+                return -1;
+            }
+            Phase halfOpen = new Phase(current.generation + 1, State.HALF_OPEN, PROBES, now + HALF_OPEN_TIMEOUT, null);
+            transition(current, halfOpen);
+            current = phase.get();
+            if (current.state != State.HALF_OPEN) {
+                return acquire();
+            }
+        }
+        AtomicInteger probes = current.probes;
+        for (int remaining = probes.get(); remaining > 0; remaining = probes.get()) {
+            if (probes.compareAndSet(remaining, remaining - 1)) {
+                return current.generation;
+            }
+        }
+        if (now - current.until > 0) {
+            open(current);
+        }
+        registry.rejected();
+        return -1;
+    }
+
+    /**
+     * 调用完成
+     * @param permit acquire返回的许可
+     * @param success 是否成功,超时、连接失败、服务端繁忙都算失败
+     */
+    public void onResult(long permit, long latencyNanos, boolean success) {
+        Phase current = phase.get();
+        if (permit != current.generation || current.state == State.OPEN) {
+            return;
+        }
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, latencyNanos));
+        long value = latencyMicros << 3 | RECORDED
+                | (success ? 0 : FAILURE)
+                | (slowCallNanos > 0 && latencyNanos >= slowCallNanos ? SLOW : 0);
+        current.record(value);
+        int calls = current.calls.get();
+        if (current.state == State.CLOSED) {
+            if (calls >= MIN_CALLS && tripped(current, calls)) {
+                open(current);
+            }
+        } else if (calls >= PROBES) {
+            if (tripped(current, calls)) {
+                open(current);
+            } else {
+                transition(current, new Phase(current.generation + 1, State.CLOSED, WINDOW_SIZE, 0, null));
+            }
+        }
+    }
+
+    private boolean tripped(Phase phase, int calls) {
+        return phase.failures.get() >= calls * failureRate || phase.slows.get() >= calls * slowCallRate;
+    }
+
+    private void open(Phase current) {
+        transition(current, new Phase(current.generation + 1, State.OPEN, 0, System.nanoTime() + WAIT, current));
+    }
+
+    private void transition(Phase from, Phase to) {
+        if (phase.compareAndSet(from, to)) {
+            registry.stateChanged(this, from.state, to.state);
+        }
+    }
+
+    public State getState() {
+        return phase.get().state;
+    }
+
+    /**
+     * 当前窗口中的失败率,打开状态下是打开前窗口中的失败率
+     */
+    public double getFailureRate() {
+        Phase current = window();
+        int calls = current.calls.get();
+        return calls == 0 ? 0 : (double) current.failures.get() / calls;
+    }
+
+    /**
+     * 当前窗口中的平均延迟(毫秒),打开状态下是打开前窗口中的平均延迟
+     */
+    public double getAverageLatency() {
+        Phase current = window();
+        int calls = current.calls.get();
+        return calls == 0 ? 0 : current.latencyMicros.get() / 1000.0 / calls;
+    }
+
+    private Phase window() {
+        Phase current = phase.get();
+        return current.tripped != null ? current.tripped : current;
+    }
+
+    public CsRpcCircuitOpenException getRejection() {
+        return rejection;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * 熔断器的一个阶段:状态、代数、到期时间和这个阶段的统计窗口
+     * 窗口是无锁的环形缓冲区,计数是槽位的增量汇总,并发写入时短暂不一致,不影响熔断判断
+     */
+    private static final class Phase {
+        private final long generation;
+        private final State state;
+        /**
+         * OPEN:转为半开的时间 HALF_OPEN:探测超时重新打开的时间
+         */
+        private final long until;
+        /**
+         * OPEN:触发打开的那个阶段,用于查看打开前的统计
+         */
+        private final Phase tripped;
+        private final AtomicInteger probes;
+        private final AtomicLongArray slots;
+        private final AtomicLong cursor = new AtomicLong();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger slows = new AtomicInteger();
+        private final AtomicLong latencyMicros = new AtomicLong();
+
+        Phase(long generation, State state, int size, long until, Phase tripped) {
+            this.generation = generation;
+            this.state = state;
+            this.until = until;
+            this.tripped = tripped;
+            this.probes = new AtomicInteger(state == State.HALF_OPEN ? size : 0);
+            this.slots = new AtomicLongArray(Math.max(1, size));
+        }
+
+        void record(long value) {
+            int index = (int) (cursor.getAndIncrement() % slots.length());
+            long old = slots.getAndSet(index, value);
+            if (old == 0) {
+                calls.incrementAndGet();
+            }
+            int failure = (int) (value & FAILURE) - (int) (old & FAILURE);
+            if (failure != 0) {
+                failures.addAndGet(failure);
+            }
+            int slow = (int) ((value & SLOW) >> 1) - (int) ((old & SLOW) >> 1);
+            if (slow != 0) {
+                slows.addAndGet(slow);
+            }
+            latencyMicros.addAndGet((value >>> 3) - (old >>> 3));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.cs.rpc.breaker;
+
+/**
+ * 熔断器状态变化的监听器,在触发状态变化的调用线程(可能是netty的IO线程)上回调,不能阻塞
+ */
+public interface CircuitBreakerListener {
+    /**
+     * 状态变化
+     * @param breaker
+     * @param from
+     * @param to
+     */
+    void onStateChange(CircuitBreaker breaker, CircuitBreaker.State from, CircuitBreaker.State to);
+}
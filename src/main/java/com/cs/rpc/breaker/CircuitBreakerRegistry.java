@@ -0,0 +1,134 @@
+package com.cs.rpc.breaker;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.metrics.CsRpcMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author ：cs
+ * @description：熔断器注册表,按服务提供方地址和方法签名各一个熔断器
+ *      两层map查找,调用链路上不拼接key,也不分配对象
+ *      服务发现的快照变化后,不在任何快照中的地址由ServiceDiscovery清理
+ *      状态变化时通知监听器并记录日志
+ *      指标: client.breaker.opened / client.breaker.half_opened / client.breaker.closed 状态变化次数,
+ *           client.breaker.rejected 被拒绝的调用数, client.breaker.state 没有关闭的熔断器的状态
+ * @date ：2026/10/18 11:20
+ */
+@Slf4j
+public class CircuitBreakerRegistry {
+
+    private final Map<InetSocketAddress, Map<String, CircuitBreaker>> breakers = new ConcurrentHashMap<>();
+    private final List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder openedCounter;
+    private final LongAdder halfOpenedCounter;
+    private final LongAdder closedCounter;
+    private final LongAdder rejectedCounter;
+
+    private volatile boolean enabled = true;
+    private volatile double failureRate = 0.5;
+    private volatile double slowCallRate = 0.8;
+    private volatile long slowCallNanos = TimeUnit.SECONDS.toNanos(2);
+
+    public CircuitBreakerRegistry(){
+        CsRpcMetrics metrics = SingletonFactory.getInstance(CsRpcMetrics.class);
+        openedCounter = metrics.counter("client.breaker.opened");
+        halfOpenedCounter = metrics.counter("client.breaker.half_opened");
+        closedCounter = metrics.counter("client.breaker.closed");
+        rejectedCounter = metrics.counter("client.breaker.rejected");
+        metrics.gauge("client.breaker.state", this::states);
+    }
+
+    /**
+     * @param enabled 是否开启熔断
+     * @param failureRate 失败率达到这个值时打开
+     * @param slowCallMillis 超过这个时间的调用算慢调用,0表示不统计慢调用
+     */
+    public void configure(boolean enabled, double failureRate, long slowCallMillis){
+        this.enabled = enabled;
+        this.failureRate = failureRate;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        breakers.clear();
+    }
+
+    /**
+     * @param method 方法签名
+     */
+    public CircuitBreaker get(InetSocketAddress address, String method){
+        if(!enabled){
+            return CircuitBreaker.DISABLED;
+        }
+        Map<String, CircuitBreaker> methods = breakers.get(address);
+        if(methods == null){
+            methods = breakers.computeIfAbsent(address, k -> new ConcurrentHashMap<>());
+        }
+        CircuitBreaker breaker = methods.get(method);
+        if(breaker == null){
+            breaker = methods.computeIfAbsent(method,
+                    k -> new CircuitBreaker(address, k, failureRate, slowCallRate, slowCallNanos, this));
+        }
+        return breaker;
+    }
+
+    /**
+     * 只保留仍在服务发现快照中的提供方的熔断器,下线的提供方不再占用内存,也不再出现在指标中
+     */
+    public void retain(Set<InetSocketAddress> addresses){
+        breakers.keySet().retainAll(addresses);
+    }
+
+    public void addListener(CircuitBreakerListener listener){
+        listeners.add(listener);
+    }
+
+    public void removeListener(CircuitBreakerListener listener){
+        listeners.remove(listener);
+    }
+
+    void rejected(){
+        rejectedCounter.increment();
+    }
+
+    void stateChanged(CircuitBreaker breaker, CircuitBreaker.State from, CircuitBreaker.State to){
+        if(to == CircuitBreaker.State.OPEN){
+            openedCounter.increment();
+            log.warn("熔断器打开:{} {},失败率:{},平均延迟:{}ms", breaker.getAddress(), breaker.getMethod(),
+                    breaker.getFailureRate(), breaker.getAverageLatency());
+        }else if(to == CircuitBreaker.State.HALF_OPEN){
+            halfOpenedCounter.increment();
+            log.info("熔断器半开,开始探测:{} {}", breaker.getAddress(), breaker.getMethod());
+        }else {
+            closedCounter.increment();
+            log.info("熔断器关闭:{} {}", breaker.getAddress(), breaker.getMethod());
+        }
+        for (CircuitBreakerListener listener : listeners) {
+            try {
+                listener.onStateChange(breaker, from, to);
+            } catch (Exception e) {
+                log.warn("熔断器监听器出错", e);
+            }
+        }
+    }
+
+    private Object states(){
+        Map<String, String> states = new TreeMap<>();
+        for (Map<String, CircuitBreaker> methods : breakers.values()) {
+            for (CircuitBreaker breaker : methods.values()) {
+                if(breaker.getState() != CircuitBreaker.State.CLOSED){
+                    states.put(breaker.getAddress() + " " + breaker.getMethod(), breaker.getState().name());
+                }
+            }
+        }
+        return states;
+    }
+}
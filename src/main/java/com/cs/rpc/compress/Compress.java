@@ -1,5 +1,7 @@
 package com.cs.rpc.compress;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * 压缩的接口,用于帮助实现压缩和解压功能
  */
@@ -24,4 +26,28 @@ public interface Compress {
      * @return
      */
     byte[] decompress(byte[] bytes);
+
+    /**
+     * 压缩,从in的可读部分读取,结果直接写入out
+     * 默认走字节数组的实现,实现类可以覆盖,省掉中间数组
+     * @param in
+     * @param out
+     */
+    default void compress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = new byte[in.readableBytes()];
+        in.readBytes(bytes);
+        out.writeBytes(compress(bytes));
+    }
+
+    /**
+     * 解压缩,从in的可读部分读取,结果直接写入out
+     * 默认走字节数组的实现,实现类可以覆盖,省掉中间数组
+     * @param in
+     * @param out
+     */
+    default void decompress(ByteBuf in, ByteBuf out) {
+        byte[] bytes = new byte[in.readableBytes()];
+        in.readBytes(bytes);
+        out.writeBytes(decompress(bytes));
+    }
 }
@@ -0,0 +1,179 @@
+package com.cs.rpc.compress;
+
+import com.cs.rpc.constant.CompressTypeEnum;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.metrics.CsRpcMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author ：cs
+ * @description：压缩策略,编码时在序列化之后决定是否压缩
+ *      1.序列化后小于阈值的数据不压缩(gzip头尾就有18字节,小数据压缩后反而变大);
+ *        阈值配置为负数时按压缩类型自动选择,带字典的deflate对小消息也有效,阈值低很多
+ *      2.按方法抽样统计压缩率(压缩后/压缩前)的指数移动平均,压缩效果不好的方法自动停止压缩
+ *      3.停止压缩的方法仍然偶尔压缩一次做探测,数据特征变化后自动恢复
+ *      指标: compress.applied / compress.skip.small / compress.skip.disabled 计数,
+ *           compress.disabled 停止压缩的次数, compress.ratio 各方法当前的压缩率
+ * @date ：2026/10/18 1:00
+ */
+@Slf4j
+public class CompressPolicy {
+
+    /**
+     * 压缩时抽样统计的概率 1/8
+     */
+    private static final int SAMPLE_MASK = 7;
+    /**
+     * 停止压缩后探测的概率 1/256
+     */
+    private static final int PROBE_MASK = 255;
+    /**
+     * 至少抽样这么多次才会停止压缩
+     */
+    private static final int MIN_SAMPLES = 16;
+    /**
+     * 移动平均的权重
+     */
+    private static final double ALPHA = 0.2;
+
+    /**
+     * 自动阈值:普通压缩 / 带字典的deflate
+     */
+    private static final int DEFAULT_THRESHOLD = 1024;
+    private static final int DICTIONARY_THRESHOLD = 64;
+
+    /**
+     * 配置的阈值,负数表示按压缩类型自动选择
+     */
+    private volatile int configuredThreshold = -1;
+    private volatile int threshold = DEFAULT_THRESHOLD;
+    private volatile boolean adaptive = true;
+    /**
+     * 压缩率高于这个值认为压缩不划算
+     */
+    private volatile double maxRatio = 0.9;
+    /**
+     * 需要压缩时使用的压缩类型
+     */
+    private volatile byte compressType = CompressTypeEnum.GZIP.getCode();
+
+    private final Map<String, MethodStats> statsMap = new ConcurrentHashMap<>();
+
+    private final LongAdder appliedCounter;
+    private final LongAdder skipSmallCounter;
+    private final LongAdder skipDisabledCounter;
+    private final LongAdder disabledCounter;
+
+    public CompressPolicy(){
+        CsRpcMetrics metrics = SingletonFactory.getInstance(CsRpcMetrics.class);
+        appliedCounter = metrics.counter("compress.applied");
+        skipSmallCounter = metrics.counter("compress.skip.small");
+        skipDisabledCounter = metrics.counter("compress.skip.disabled");
+        disabledCounter = metrics.counter("compress.disabled");
+        metrics.gauge("compress.ratio", this::ratios);
+    }
+
+    /**
+     * @param threshold 小于这个字节数不压缩,负数表示按压缩类型自动选择
+     * @param adaptive 是否按压缩率自动停止压缩
+     * @param maxRatio 压缩率高于这个值认为不划算
+     */
+    public void configure(int threshold, boolean adaptive, double maxRatio){
+        this.configuredThreshold = threshold;
+        this.adaptive = adaptive;
+        this.maxRatio = maxRatio;
+        updateThreshold();
+    }
+
+    /**
+     * 请求和响应默认的压缩类型,是否真正压缩由编码时的shouldCompress决定
+     */
+    public byte getCompressType(){
+        return compressType;
+    }
+
+    public void setCompressType(byte compressType){
+        this.compressType = compressType;
+        updateThreshold();
+    }
+
+    private void updateThreshold(){
+        if(configuredThreshold >= 0){
+            threshold = configuredThreshold;
+        }else {
+            threshold = compressType == CompressTypeEnum.DEFLATE_DICT.getCode() ? DICTIONARY_THRESHOLD : DEFAULT_THRESHOLD;
+        }
+    }
+
+    /**
+     * 是否压缩
+     * @param methodKey 接口#方法,心跳等没有方法的消息为null
+     * @param rawLength 序列化后的长度
+     */
+    public boolean shouldCompress(String methodKey, int rawLength){
+        if(rawLength < threshold){
+            skipSmallCounter.increment();
+            return false;
+        }
+        if(adaptive && methodKey != null){
+            MethodStats stats = statsMap.get(methodKey);
+            if(stats != null && stats.disabled
+                    && (ThreadLocalRandom.current().nextInt() & PROBE_MASK) != 0){
+                skipDisabledCounter.increment();
+                return false;
+            }
+        }
+        appliedCounter.increment();
+        return true;
+    }
+
+    /**
+     * 记录一次压缩的结果,按概率抽样
+     */
+    public void record(String methodKey, int rawLength, int compressedLength){
+        if(!adaptive || methodKey == null || rawLength <= 0){
+            return;
+        }
+        MethodStats stats = statsMap.get(methodKey);
+        if(stats == null){
+            stats = statsMap.computeIfAbsent(methodKey, k -> new MethodStats());
+        }else if(!stats.disabled && (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) != 0){
+            //正常压缩的方法只抽样统计;停止压缩的方法每次探测都统计
+            return;
+        }
+        double ratio = (double) compressedLength / rawLength;
+        //多线程并发更新时可能丢掉个别样本,对平均值没有影响
+        double average = stats.samples == 0 ? ratio : stats.ratio + ALPHA * (ratio - stats.ratio);
+        stats.ratio = average;
+        stats.samples++;
+        if(!stats.disabled && stats.samples >= MIN_SAMPLES && average > maxRatio){
+            stats.disabled = true;
+            disabledCounter.increment();
+            log.info("方法{}压缩率{},停止压缩",methodKey,String.format("%.2f",average));
+        }else if(stats.disabled && average <= maxRatio){
+            stats.disabled = false;
+            log.info("方法{}压缩率{},恢复压缩",methodKey,String.format("%.2f",average));
+        }
+    }
+
+    private Map<String, Object> ratios(){
+        Map<String, Object> ratios = new TreeMap<>();
+        for (Map.Entry<String, MethodStats> entry : statsMap.entrySet()) {
+            MethodStats stats = entry.getValue();
+            ratios.put(entry.getKey(), String.format("%.3f%s", stats.ratio, stats.disabled ? "(disabled)" : ""));
+        }
+        return ratios;
+    }
+
+    private static final class MethodStats {
+        private volatile double ratio;
+        private volatile int samples;
+        private volatile boolean disabled;
+    }
+}
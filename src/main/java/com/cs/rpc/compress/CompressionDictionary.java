@@ -0,0 +1,28 @@
+package com.cs.rpc.compress;
+
+import lombok.Getter;
+
+/**
+ * @author ：cs
+ * @description：deflate预置字典,不可变
+ *      id在发送方进程内唯一,帧中只带id;同一个服务每次重新训练版本号加一
+ * @date ：2026/10/18 3:00
+ */
+@Getter
+public final class CompressionDictionary {
+
+    private final int id;
+    /**
+     * 服务名(interfaceName+version)
+     */
+    private final String serviceKey;
+    private final int version;
+    private final byte[] data;
+
+    public CompressionDictionary(int id, String serviceKey, int version, byte[] data) {
+        this.id = id;
+        this.serviceKey = serviceKey;
+        this.version = version;
+        this.data = data;
+    }
+}
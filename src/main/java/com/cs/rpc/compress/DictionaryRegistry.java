@@ -0,0 +1,92 @@
+package com.cs.rpc.compress;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.metrics.CsRpcMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author ：cs
+ * @description：本进程发送方向的字典,按服务(interfaceName+version)训练和保存
+ *      编码时抽样序列化后的消息,样本足够时在单独的后台线程训练,训练完成后替换当前字典,
+ *      新字典在下一次使用时随消息一起发给对端,旧字典对端仍然保留,飞行中的消息不受影响
+ *      指标: compress.dict.trained 训练次数
+ * @date ：2026/10/18 3:40
+ */
+@Slf4j
+public class DictionaryRegistry {
+
+    private final Map<String, DictionaryTrainer> trainers = new ConcurrentHashMap<>();
+    private final Map<String, CompressionDictionary> current = new ConcurrentHashMap<>();
+    /**
+     * 字典id,0表示不用字典
+     */
+    private final AtomicInteger ids = new AtomicInteger();
+    private final LongAdder trainedCounter;
+    /**
+     * 训练很少发生,一个线程足够;每个服务同时只有一个训练任务,队列不会堆积
+     */
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(new DefaultThreadFactory("cs-rpc-dict-trainer", true));
+
+    public DictionaryRegistry(){
+        trainedCounter = SingletonFactory.getInstance(CsRpcMetrics.class).counter("compress.dict.trained");
+    }
+
+    /**
+     * 抽样一条消息,并返回这个服务当前的字典
+     * @param serviceKey 服务名,null时不抽样
+     * @param serialized 序列化后的数据,不改变读索引
+     * @return 当前字典,还没有训练出来时返回null
+     */
+    public CompressionDictionary sampleAndGet(String serviceKey, ByteBuf serialized){
+        if(serviceKey == null){
+            return null;
+        }
+        DictionaryTrainer trainer = trainers.get(serviceKey);
+        if(trainer == null){
+            trainer = trainers.computeIfAbsent(serviceKey, k -> new DictionaryTrainer());
+        }
+        if(trainer.offer(serialized)){
+            DictionaryTrainer t = trainer;
+            executor.execute(() -> train(serviceKey, t));
+        }
+        return current.get(serviceKey);
+    }
+
+    /**
+     * 所有服务当前的字典,建立连接时发给对端
+     */
+    public List<CompressionDictionary> all(){
+        return new ArrayList<>(current.values());
+    }
+
+    private void train(String serviceKey, DictionaryTrainer trainer){
+        try {
+            long start = System.nanoTime();
+            byte[] data = trainer.train();
+            if(data.length == 0){
+                return;
+            }
+            CompressionDictionary old = current.get(serviceKey);
+            int version = old == null ? 1 : old.getVersion() + 1;
+            current.put(serviceKey, new CompressionDictionary(ids.incrementAndGet(), serviceKey, version, data));
+            trainedCounter.increment();
+            log.info("服务{}训练压缩字典,版本:{},大小:{}字节,耗时:{}ms", serviceKey, version, data.length,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            log.error("服务{}训练压缩字典出错", serviceKey, e);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.cs.rpc.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author ：cs
+ * @description：按服务抽样消息并训练预置字典
+ *      只抽样小于1KB的消息(大消息自身的重复已经足够,字典收益小),样本满后随机替换;
+ *      训练:统计8字节片段在多少个样本中出现,反复挑出得分最高的64字节段放入字典,
+ *      已选中的片段不再计分,得分越高的段放得越靠后(离数据越近,deflate的距离编码越短)
+ * @date ：2026/10/18 3:05
+ */
+public class DictionaryTrainer {
+
+    static final int DICTIONARY_SIZE = 2 * 1024;
+    private static final int MAX_SAMPLE_LENGTH = 1024;
+    private static final int MAX_SAMPLES = 128;
+    private static final int MIN_SAMPLES = 64;
+    /**
+     * 抽样概率 1/4
+     */
+    private static final int SAMPLE_MASK = 3;
+    private static final long RETRAIN_INTERVAL = TimeUnit.MINUTES.toNanos(10);
+    private static final int K = 8;
+    private static final int SEGMENT = 64;
+
+    private final List<byte[]> samples = new ArrayList<>(MAX_SAMPLES);
+    private final AtomicBoolean training = new AtomicBoolean();
+    private volatile long lastTrainNanos;
+    private volatile boolean trained;
+    private int newSamples;
+
+    /**
+     * 抽样一条序列化后的消息,不改变读索引
+     * @return 是否应该开始训练,返回true时调用方必须调用train
+     */
+    public boolean offer(ByteBuf serialized) {
+        int length = serialized.readableBytes();
+        if (length < K || length > MAX_SAMPLE_LENGTH
+                || (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) != 0) {
+            return false;
+        }
+        byte[] sample = ByteBufUtil.getBytes(serialized);
+        int size;
+        synchronized (samples) {
+            if (samples.size() < MAX_SAMPLES) {
+                samples.add(sample);
+            } else {
+                samples.set(ThreadLocalRandom.current().nextInt(MAX_SAMPLES), sample);
+            }
+            newSamples++;
+            size = samples.size();
+        }
+        if (size < MIN_SAMPLES) {
+            return false;
+        }
+        if (trained && (System.nanoTime() - lastTrainNanos < RETRAIN_INTERVAL || newSamples < MAX_SAMPLES)) {
+            return false;
+        }
+        return training.compareAndSet(false, true);
+    }
+
+    /**
+     * 用当前样本训练字典
+     */
+    public byte[] train() {
+        List<byte[]> copy;
+        synchronized (samples) {
+            copy = new ArrayList<>(samples);
+            newSamples = 0;
+        }
+        try {
+            return train(copy, DICTIONARY_SIZE);
+        } finally {
+            lastTrainNanos = System.nanoTime();
+            trained = true;
+            training.set(false);
+        }
+    }
+
+    static byte[] train(List<byte[]> samples, int dictionarySize) {
+        //1.每个8字节片段出现在多少个样本中
+        Map<Long, Integer> frequency = new HashMap<>();
+        long[][] kmers = new long[samples.size()][];
+        for (int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            long[] hashes = new long[Math.max(0, sample.length - K + 1)];
+            Set<Long> seen = new HashSet<>();
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = kmer(sample, i);
+                if (seen.add(hashes[i])) {
+                    frequency.merge(hashes[i], 1, Integer::sum);
+                }
+            }
+            kmers[s] = hashes;
+        }
+        //2.反复挑出得分最高的段
+        List<byte[]> segments = new ArrayList<>();
+        int total = 0;
+        int[] weights = new int[MAX_SAMPLE_LENGTH];
+        while (total < dictionarySize) {
+            int bestScore = 0;
+            int bestSample = -1;
+            int bestStart = 0;
+            for (int s = 0; s < samples.size(); s++) {
+                long[] hashes = kmers[s];
+                if (hashes.length == 0) {
+                    continue;
+                }
+                //只出现在一个样本中的片段没有价值
+                for (int i = 0; i < hashes.length; i++) {
+                    Integer count = frequency.get(hashes[i]);
+                    weights[i] = count == null || count < 2 ? 0 : count;
+                }
+                //滑动窗口求段内得分
+                int window = Math.min(SEGMENT - K + 1, hashes.length);
+                int score = 0;
+                for (int i = 0; i < window; i++) {
+                    score += weights[i];
+                }
+                for (int start = 0; ; start++) {
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestSample = s;
+                        bestStart = start;
+                    }
+                    if (start + window >= hashes.length) {
+                        break;
+                    }
+                    score += weights[start + window] - weights[start];
+                }
+            }
+            if (bestSample < 0) {
+                break;
+            }
+            byte[] sample = samples.get(bestSample);
+            int end = Math.min(sample.length, bestStart + SEGMENT);
+            long[] hashes = kmers[bestSample];
+            for (int i = bestStart; i + K <= end; i++) {
+                frequency.remove(hashes[i]);
+            }
+            byte[] segment = new byte[end - bestStart];
+            System.arraycopy(sample, bestStart, segment, 0, segment.length);
+            segments.add(segment);
+            total += segment.length;
+        }
+        //3.得分高的放在最后
+        Collections.reverse(segments);
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(total);
+        for (byte[] segment : segments) {
+            dictionary.write(segment, 0, segment.length);
+        }
+        byte[] data = dictionary.toByteArray();
+        if (data.length > dictionarySize) {
+            byte[] trimmed = new byte[dictionarySize];
+            System.arraycopy(data, data.length - dictionarySize, trimmed, 0, dictionarySize);
+            return trimmed;
+        }
+        return data;
+    }
+
+    private static long kmer(byte[] data, int offset) {
+        long hash = 0;
+        for (int i = 0; i < K; i++) {
+            hash = (hash << 8) | (data[offset + i] & 0xFF);
+        }
+        return hash;
+    }
+}
@@ -2,19 +2,80 @@ package com.cs.rpc.compress;
 
 import com.cs.rpc.constant.CompressTypeEnum;
 import com.cs.rpc.exception.CsRpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.FastThreadLocal;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * @author ：xxx
- * @description：TODO
+ * @description：gzip压缩
+ *      Deflater/Inflater(包含zlib的native内存)按线程复用,每次用完reset,不再每条消息创建GZIP流;
+ *      线程结束时(netty的IO线程和CsRpcThreadFactory创建的业务线程)调用end()立即释放native内存,不依赖GC
+ *      gzip的头和尾(CRC32+原始长度)自己读写,解压时按尾部记录的原始长度预先分配输出空间
  * @date ：2022/11/19 4:09
  */
 public class GzipCompress implements Compress{
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int HEADER_LENGTH = 10;
+    private static final int TRAILER_LENGTH = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    /**
+     * 按尾部记录的原始长度预分配时的上限,防止恶意数据导致申请过大的内存,超过后按需扩容
+     */
+    private static final int MAX_PRESIZE = 16 * 1024 * 1024;
+    private static final int CHUNK = 8 * 1024;
+    private static final byte[] HEADER = {
+            (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    private static final FastThreadLocal<Deflater> DEFLATER = new FastThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+
+        @Override
+        protected void onRemoval(Deflater deflater) {
+            deflater.end();
+        }
+    };
+
+    private static final FastThreadLocal<Inflater> INFLATER = new FastThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+
+        @Override
+        protected void onRemoval(Inflater inflater) {
+            inflater.end();
+        }
+    };
+
+    private static final FastThreadLocal<CRC32> CRC = new FastThreadLocal<CRC32>() {
+        @Override
+        protected CRC32 initialValue() {
+            return new CRC32();
+        }
+    };
+
+    private static final FastThreadLocal<byte[]> SCRATCH = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[CHUNK];
+        }
+    };
+
     @Override
     public String name() {
         return CompressTypeEnum.GZIP.getName();
@@ -27,16 +88,9 @@ public class GzipCompress implements Compress{
         if (bytes == null){
             throw new NullPointerException("传入的压缩数据为null");
         }
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        try {
-            GZIPOutputStream gzip = new GZIPOutputStream(os);
-            gzip.write(bytes);
-            gzip.flush();
-            gzip.finish();
-            return os.toByteArray();
-        } catch (IOException e) {
-            throw new CsRpcException("压缩数据出错",e);
-        }
+        ByteBuf out = Unpooled.buffer(maxCompressedLength(bytes.length));
+        compress(Unpooled.wrappedBuffer(bytes), out);
+        return ByteBufUtil.getBytes(out);
     }
 
     @Override
@@ -46,17 +100,164 @@ public class GzipCompress implements Compress{
         if (bytes == null){
             throw new NullPointerException("传入的解压缩数据为null");
         }
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ByteBuf out = Unpooled.buffer(0);
+        decompress(Unpooled.wrappedBuffer(bytes), out);
+        if (out.readableBytes() == out.capacity() && out.arrayOffset() == 0) {
+            //预分配的大小正好,直接返回底层数组
+            return out.array();
+        }
+        return ByteBufUtil.getBytes(out);
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        byte[] src;
+        int srcOff;
+        if (in.hasArray()) {
+            src = in.array();
+            srcOff = in.arrayOffset() + in.readerIndex();
+        } else {
+            src = ByteBufUtil.getBytes(in);
+            srcOff = 0;
+        }
+        Deflater deflater = DEFLATER.get();
+        CRC32 crc = CRC.get();
+        try {
+            out.ensureWritable(maxCompressedLength(length));
+            out.writeBytes(HEADER);
+            deflater.setInput(src, srcOff, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (out.hasArray()) {
+                    out.ensureWritable(CHUNK);
+                    int n = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+                    out.writerIndex(out.writerIndex() + n);
+                } else {
+                    byte[] scratch = SCRATCH.get();
+                    int n = deflater.deflate(scratch, 0, scratch.length);
+                    out.writeBytes(scratch, 0, n);
+                }
+            }
+            crc.reset();
+            crc.update(src, srcOff, length);
+            out.writeIntLE((int) crc.getValue());
+            out.writeIntLE(length);
+        } finally {
+            deflater.reset();
+        }
+        in.skipBytes(length);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        int start = in.readerIndex();
+        int end = in.writerIndex();
+        if (end - start < HEADER_LENGTH + TRAILER_LENGTH) {
+            throw new CsRpcException("解压缩数据出错:数据长度不足");
+        }
+        readHeader(in);
+        //尾部:CRC32 + 原始长度(对2^32取模),原始长度用来预分配空间,并限制解压出的数据量
+        int expectedCrc = in.getIntLE(end - TRAILER_LENGTH);
+        int expectedLength = in.getIntLE(end - 4);
+        long declaredLength = expectedLength & 0xFFFFFFFFL;
+        int compressedLength = end - TRAILER_LENGTH - in.readerIndex();
+        if (compressedLength < 0) {
+            throw new CsRpcException("解压缩数据出错:数据长度不足");
+        }
+        byte[] src;
+        int srcOff;
+        if (in.hasArray()) {
+            src = in.array();
+            srcOff = in.arrayOffset() + in.readerIndex();
+        } else {
+            src = ByteBufUtil.getBytes(in, in.readerIndex(), compressedLength);
+            srcOff = 0;
+        }
+        Inflater inflater = INFLATER.get();
+        CRC32 crc = CRC.get();
+        crc.reset();
+        long written = 0;
         try {
-            GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(bytes));
-            byte[] buffer = new byte[1024 * 4];
-            int n;
-            while ((n = gzipInputStream.read(buffer)) > -1){
-                os.write(buffer,0,n);
+            inflater.setInput(src, srcOff, compressedLength);
+            if (expectedLength > 0) {
+                out.ensureWritable(Math.min(expectedLength, MAX_PRESIZE));
+            }
+            while (!inflater.finished()) {
+                //每次最多比声明的长度多解压1个字节,恶意数据在超出时立即失败,不会先解压出大量数据
+                long limit = declaredLength - written + 1;
+                int n;
+                if (out.hasArray()) {
+                    out.ensureWritable(1);
+                    int offset = out.arrayOffset() + out.writerIndex();
+                    n = inflater.inflate(out.array(), offset, (int) Math.min(out.writableBytes(), limit));
+                    crc.update(out.array(), offset, n);
+                    out.writerIndex(out.writerIndex() + n);
+                } else {
+                    byte[] scratch = SCRATCH.get();
+                    n = inflater.inflate(scratch, 0, (int) Math.min(scratch.length, limit));
+                    crc.update(scratch, 0, n);
+                    out.writeBytes(scratch, 0, n);
+                }
+                written += n;
+                if (written > declaredLength) {
+                    throw new CsRpcException("解压缩数据出错:解压后的数据超过声明的长度");
+                }
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new CsRpcException("解压缩数据出错:数据不完整");
+                }
+            }
+            if (inflater.getRemaining() != 0) {
+                throw new CsRpcException("解压缩数据出错:压缩数据后有多余的数据");
             }
-            return os.toByteArray();
-        } catch (IOException e) {
+        } catch (DataFormatException e) {
             throw new CsRpcException("解压缩数据出错",e);
+        } finally {
+            inflater.reset();
         }
+        if ((int) crc.getValue() != expectedCrc || (int) written != expectedLength) {
+            throw new CsRpcException("解压缩数据出错:校验失败");
+        }
+        in.readerIndex(end);
+    }
+
+    /**
+     * 读取并跳过gzip头,兼容带有附加字段的gzip数据
+     */
+    private void readHeader(ByteBuf in) {
+        if (in.readUnsignedShortLE() != GZIP_MAGIC) {
+            throw new CsRpcException("解压缩数据出错:不是gzip格式");
+        }
+        if (in.readUnsignedByte() != Deflater.DEFLATED) {
+            throw new CsRpcException("解压缩数据出错:不支持的压缩方法");
+        }
+        int flags = in.readUnsignedByte();
+        //MTIME(4) XFL(1) OS(1)
+        in.skipBytes(6);
+        if ((flags & FEXTRA) != 0) {
+            in.skipBytes(in.readUnsignedShortLE());
+        }
+        if ((flags & FNAME) != 0) {
+            skipZeroTerminated(in);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            skipZeroTerminated(in);
+        }
+        if ((flags & FHCRC) != 0) {
+            in.skipBytes(2);
+        }
+    }
+
+    private void skipZeroTerminated(ByteBuf in) {
+        while (in.readByte() != 0) {
+            //跳过以0结尾的字符串
+        }
+    }
+
+    /**
+     * 压缩后的最大长度:deflate的上界加上gzip的头和尾
+     */
+    private static int maxCompressedLength(int length) {
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + HEADER_LENGTH + TRAILER_LENGTH;
     }
 }
@@ -0,0 +1,132 @@
+package com.cs.rpc.compress;
+
+import com.cs.rpc.constant.CompressTypeEnum;
+import com.cs.rpc.constant.CsRpcConstants;
+import com.cs.rpc.exception.CsRpcException;
+import io.netty.buffer.ByteBuf;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * @author ：cs
+ * @description：LZ4块格式的压缩,使用lz4-java
+ *      数据格式: 4B 原始长度 + LZ4 block
+ *      用压缩率换速度,适合带宽充足、对延迟敏感的机房内调用
+ *      优先使用JNI实现,加载不了时退化为lz4-java的纯java实现;解压使用带边界检查的safe解压器,恶意数据只会抛出异常
+ *      ByteBuf接口直接在堆数组或直接内存上压缩和解压,不复制数据
+ * @date ：2026/10/18 1:40
+ */
+public class Lz4Compress implements Compress {
+
+    /**
+     * 解压时允许的最大原始长度,不超过解码器的最大帧长度,防止恶意数据导致申请过大的内存
+     */
+    private static final int MAX_DECOMPRESSED_LENGTH = CsRpcConstants.MAX_FRAME_LENGTH;
+    /**
+     * LZ4块格式的最大压缩比,每个压缩字节最多展开成255个字节
+     */
+    private static final long MAX_RATIO = 255;
+
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+    private static final LZ4Compressor COMPRESSOR = FACTORY.fastCompressor();
+    private static final LZ4SafeDecompressor DECOMPRESSOR = FACTORY.safeDecompressor();
+
+    @Override
+    public String name() {
+        return CompressTypeEnum.LZ4.getName();
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        if (bytes == null){
+            throw new NullPointerException("传入的压缩数据为null");
+        }
+        byte[] dst = new byte[4 + COMPRESSOR.maxCompressedLength(bytes.length)];
+        writeInt(dst, 0, bytes.length);
+        int length = COMPRESSOR.compress(bytes, 0, bytes.length, dst, 4, dst.length - 4);
+        return Arrays.copyOf(dst, 4 + length);
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        if (bytes == null){
+            throw new NullPointerException("传入的解压缩数据为null");
+        }
+        if (bytes.length < 4) {
+            throw new CsRpcException("解压缩数据出错:数据长度不足");
+        }
+        int length = checkLength(readInt(bytes, 0), bytes.length - 4);
+        byte[] dst = new byte[length];
+        try {
+            checkDecompressed(DECOMPRESSOR.decompress(bytes, 4, bytes.length - 4, dst, 0, length), length);
+        } catch (LZ4Exception e) {
+            throw new CsRpcException("解压缩数据出错", e);
+        }
+        return dst;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        int srcLength = in.readableBytes();
+        int maxLength = COMPRESSOR.maxCompressedLength(srcLength);
+        out.ensureWritable(4 + maxLength);
+        out.writeInt(srcLength);
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), srcLength);
+        ByteBuffer dst = out.nioBuffer(out.writerIndex(), maxLength);
+        int length = COMPRESSOR.compress(src, src.position(), srcLength, dst, dst.position(), maxLength);
+        out.writerIndex(out.writerIndex() + length);
+        in.skipBytes(srcLength);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        if (in.readableBytes() < 4) {
+            throw new CsRpcException("解压缩数据出错:数据长度不足");
+        }
+        int length = checkLength(in.readInt(), in.readableBytes());
+        int srcLength = in.readableBytes();
+        out.ensureWritable(length);
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), srcLength);
+        ByteBuffer dst = out.nioBuffer(out.writerIndex(), length);
+        try {
+            checkDecompressed(DECOMPRESSOR.decompress(src, src.position(), srcLength, dst, dst.position(), length), length);
+        } catch (LZ4Exception e) {
+            throw new CsRpcException("解压缩数据出错", e);
+        }
+        out.writerIndex(out.writerIndex() + length);
+        in.skipBytes(srcLength);
+    }
+
+    private static void checkDecompressed(int decompressed, int length) {
+        if (decompressed != length) {
+            throw new CsRpcException("解压缩数据出错:长度不一致");
+        }
+    }
+
+    private static int readInt(byte[] buf, int i) {
+        return ((buf[i] & 0xFF) << 24) | ((buf[i + 1] & 0xFF) << 16) | ((buf[i + 2] & 0xFF) << 8) | (buf[i + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] buf, int i, int value) {
+        buf[i] = (byte) (value >>> 24);
+        buf[i + 1] = (byte) (value >>> 16);
+        buf[i + 2] = (byte) (value >>> 8);
+        buf[i + 3] = (byte) value;
+    }
+
+    /**
+     * 在申请内存之前检查声明的原始长度
+     * @param srcLength 压缩数据的长度
+     */
+    private static int checkLength(int length, int srcLength) {
+        if (length < 0 || length > MAX_DECOMPRESSED_LENGTH || length > srcLength * MAX_RATIO) {
+            throw new CsRpcException("解压缩数据出错:原始长度不合法:" + length);
+        }
+        return length;
+    }
+}
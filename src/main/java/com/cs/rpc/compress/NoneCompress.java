@@ -0,0 +1,36 @@
+package com.cs.rpc.compress;
+
+import com.cs.rpc.constant.CompressTypeEnum;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * @author ：cs
+ * @description：不压缩,数据原样写出
+ * @date ：2026/10/17 23:20
+ */
+public class NoneCompress implements Compress{
+    @Override
+    public String name() {
+        return CompressTypeEnum.NONE.getName();
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes) {
+        return bytes;
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes) {
+        return bytes;
+    }
+
+    @Override
+    public void compress(ByteBuf in, ByteBuf out) {
+        out.writeBytes(in);
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out) {
+        out.writeBytes(in);
+    }
+}
@@ -19,4 +19,68 @@ public class CsRpcConfig {
      */
 //    private String nacosGroup = "cs-rpc-group";
     private String nacosGroup = "cs-rpc";
+    /**
+     * 每个服务提供方的最大连接数
+     */
+    private int connectionsPerProvider = 4;
+    /**
+     * 连接空闲多少秒后回收,小于等于0表示不回收
+     */
+    private int connectionIdleTimeout = 60;
+    /**
+     * 是否开启flush合并,默认关闭
+     */
+    private boolean flushBatching = false;
+    /**
+     * flush合并时,积压多少条消息后立即flush
+     */
+    private int flushMaxMessages = 64;
+    /**
+     * flush合并时,积压多少字节后立即flush
+     */
+    private int flushMaxBytes = 64 * 1024;
+    /**
+     * 压缩类型:gzip / lz4 / deflateDict(按服务训练字典的deflate,适合小消息) / none
+     */
+    private String compressType = "gzip";
+    /**
+     * 序列化后小于多少字节不压缩,-1表示按压缩类型自动选择(deflateDict为64,其他为1024)
+     */
+    private int compressThreshold = -1;
+    /**
+     * 是否按方法统计压缩率,压缩不划算的方法自动停止压缩
+     */
+    private boolean compressAdaptive = true;
+    /**
+     * 客户端是否用生成的存根类代替JDK动态代理
+     */
+    private boolean clientStub = false;
+    /**
+     * 是否暂时剔除异常的服务提供方
+     */
+    private boolean outlierEjection = true;
+    /**
+     * 所在地区,服务提供方注册到nacos元数据中,消费端优先调用同地区的实例,为空表示不按地区路由
+     */
+    private String zone = "";
+    /**
+     * 标签,服务提供方注册到nacos元数据中,消费端只调用相同标签的实例(没有时调用不带标签的实例)
+     */
+    private String tag = "";
+    /**
+     * 本地区可用实例的权重低于本地区所有上线实例权重的这个比例时,溢出到所有地区
+     */
+    private double localityThreshold = 0.7;
+    /**
+     * 是否按服务提供方和方法熔断
+     */
+    private boolean circuitBreaker = true;
+    /**
+     * 熔断器窗口中失败率达到这个值时打开
+     */
+    private double breakerFailureRate = 0.5;
+    /**
+     * 超过多少毫秒的调用算慢调用,慢调用比例过高时熔断器也会打开,0表示不统计慢调用
+     */
+    private long breakerSlowCallMillis = 2000;
 }
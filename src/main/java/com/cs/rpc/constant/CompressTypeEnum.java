@@ -7,9 +7,15 @@ import lombok.Getter;
 @Getter
 public enum CompressTypeEnum {
 	//读取协议这的压缩类型，来此枚举进行匹配
+    NONE((byte) 0x00, "none"),
+
     GZIP((byte) 0x01, "gzip"),
 
-    OTHER((byte) 0x02, "other");
+    OTHER((byte) 0x02, "other"),
+
+    LZ4((byte) 0x03, "lz4"),
+
+    DEFLATE_DICT((byte) 0x04, "deflateDict");
 
     private final byte code;
     private final String name;
@@ -24,4 +30,14 @@ public enum CompressTypeEnum {
         return null;
     }
 
+    public static CompressTypeEnum of(String name) {
+        //从实现类的名称得到类型码
+        for (CompressTypeEnum c : CompressTypeEnum.values()) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
 }
@@ -12,8 +12,24 @@ public class CsRpcConstants {
             {(byte)'m',(byte)'s',(byte)'n',(byte)'b'};
 
     public static final int VERSION = 1;
+    /**
+     * v2协议:varint长度、flags、64位requestId、附件,见CsRpcEncoder
+     */
+    public static final int VERSION_2 = 2;
+    /**
+     * 本端支持的最高版本,握手时告诉对端
+     */
+    public static final int MAX_VERSION = VERSION_2;
+    /**
+     * v2协议flags
+     */
+    public static final byte FLAG_ONEWAY = 0x01;
 
     public static final int HEAD_LENGTH = 16;
+    /**
+     * 解码器默认的最大帧长度,解压后的数据也不允许超过这个长度
+     */
+    public static final int MAX_FRAME_LENGTH = 8 * 1024 * 1024;
     //心跳检测测试
     //ping
     public static final byte HEARTBEAT_REQUEST_TYPE = 3;
@@ -23,5 +39,11 @@ public class CsRpcConstants {
     public static final String PING = "ping";
     public static final String PONG = "pong";
 
+    /**
+     * 服务提供方注册到nacos的实例元数据:所在地区和标签
+     */
+    public static final String METADATA_ZONE = "zone";
+    public static final String METADATA_TAG = "tag";
+
 
 }
@@ -14,7 +14,12 @@ public enum MessageTypeEnum {
     REQUEST((byte) 0x01, "request"),
     RESPONSE((byte) 0x02, "response"),
     HEARTBEAT_PING((byte) 0x03, "heart ping"),
-    HEARTBEAT_PONG((byte) 0x04, "heart pong");
+    HEARTBEAT_PONG((byte) 0x04, "heart pong"),
+    //压缩字典,发送方的字典id对应的字典内容,只在连接上交换,没有响应
+    DICTIONARY((byte) 0x05, "dictionary"),
+    //握手,连接建立时客户端请求方法表,服务端返回方法签名到方法id的映射
+    HANDSHAKE_REQUEST((byte) 0x06, "handshake request"),
+    HANDSHAKE_RESPONSE((byte) 0x07, "handshake response");
 
     private final byte code;
     private final String name;
@@ -0,0 +1,46 @@
+package com.cs.rpc.constant;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 响应码,失败时客户端按响应码抛出CsRpcRemoteException
+ */
+@AllArgsConstructor
+@Getter
+public enum ResponseCodeEnum {
+
+    SUCCESS(200, "success"),
+    //参数个数或类型与服务方法不匹配
+    BAD_REQUEST(400, "bad request"),
+    //服务或方法不存在
+    NOT_FOUND(404, "not found"),
+    //服务方法抛出了异常
+    SERVICE_EXCEPTION(500, "service exception"),
+    //服务端业务线程池已满
+    SERVER_BUSY(503, "server busy");
+
+    private final int code;
+    private final String name;
+
+    public static ResponseCodeEnum of(Integer code) {
+        if (code == null) {
+            return null;
+        }
+        for (ResponseCodeEnum c : ResponseCodeEnum.values()) {
+            if (c.code == code) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 是否算服务提供方的失败,计入熔断、延迟统计和异常点剔除
+     * 服务方法抛出异常(500)和服务端繁忙(503)算失败;参数不匹配(400)、方法不存在(404)是调用方的问题,不算;
+     * 响应码为空的是老版本的成功响应
+     */
+    public static boolean isProviderFailure(Integer code) {
+        return code != null && (code == SERVICE_EXCEPTION.code || code == SERVER_BUSY.code);
+    }
+}
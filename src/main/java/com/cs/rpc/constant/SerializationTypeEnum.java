@@ -25,4 +25,14 @@ public enum SerializationTypeEnum {
         return null;
     }
 
+    public static SerializationTypeEnum of(String name) {
+        //从实现类的名称得到类型码
+        for (SerializationTypeEnum c : SerializationTypeEnum.values()) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
 }
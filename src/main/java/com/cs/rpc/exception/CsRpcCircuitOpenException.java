@@ -0,0 +1,61 @@
+package com.cs.rpc.exception;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * @author ：cs
+ * @description：熔断器打开,调用被快速拒绝
+ *      每个熔断器只创建一个实例并反复抛出:不记录堆栈、不能添加suppressed、cause固定为null,多个调用方共享也不会被修改
+ *      异步调用不能共享一个CompletableFuture(调用方可以complete/obtrude它),
+ *      返回值声明为CompletionStage时给预先创建的只读stage(minimalCompletionStage,JDK9及以上),其他情况每次新建一个失败的future
+ * @date ：2026/10/18 11:10
+ */
+public class CsRpcCircuitOpenException extends CsRpcException{
+
+    private static final Method MINIMAL_COMPLETION_STAGE = minimalCompletionStageMethod();
+
+    private final CompletionStage<Object> failedStage;
+
+    public CsRpcCircuitOpenException(String msg){
+        super(msg, null, false, false);
+        failedStage = minimalStage(newFailedFuture());
+    }
+
+    /**
+     * 新的以本异常失败的future,调用方可以任意修改
+     */
+    public CompletableFuture<Object> newFailedFuture() {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(this);
+        return future;
+    }
+
+    /**
+     * 以本异常失败的只读stage,多个调用方共享;运行在JDK8上时没有只读的stage,每次新建future
+     */
+    public CompletionStage<Object> getFailedStage() {
+        return failedStage != null ? failedStage : newFailedFuture();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletionStage<Object> minimalStage(CompletableFuture<Object> future) {
+        if (MINIMAL_COMPLETION_STAGE == null) {
+            return null;
+        }
+        try {
+            return (CompletionStage<Object>) MINIMAL_COMPLETION_STAGE.invoke(future);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Method minimalCompletionStageMethod() {
+        try {
+            return CompletableFuture.class.getMethod("minimalCompletionStage");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
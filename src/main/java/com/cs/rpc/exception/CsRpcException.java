@@ -15,4 +15,19 @@ public class CsRpcException extends RuntimeException{
         super(msg,e);
     }
 
+    /**
+     * 原因是Error(LinkageError等)时使用,不需要再包一层
+     */
+    public CsRpcException(String msg, Throwable cause){
+        super(msg, cause);
+    }
+
+    /**
+     * 反复抛出的共享异常使用:enableSuppression和writableStackTrace为false时,
+     * addSuppressed和setStackTrace都不会修改它,也不记录堆栈
+     */
+    protected CsRpcException(String msg, Throwable cause, boolean enableSuppression, boolean writableStackTrace){
+        super(msg, cause, enableSuppression, writableStackTrace);
+    }
+
 }
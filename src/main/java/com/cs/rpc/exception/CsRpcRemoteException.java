@@ -0,0 +1,27 @@
+package com.cs.rpc.exception;
+
+/**
+ * @author ：cs
+ * @description：服务端返回的失败响应
+ *      code见ResponseCodeEnum;服务方法抛出异常时exceptionClass为服务端异常的类名
+ * @date ：2026/10/18 6:00
+ */
+public class CsRpcRemoteException extends CsRpcException{
+
+    private final int code;
+    private final String exceptionClass;
+
+    public CsRpcRemoteException(int code, String exceptionClass, String msg){
+        super(msg);
+        this.code = code;
+        this.exceptionClass = exceptionClass;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getExceptionClass() {
+        return exceptionClass;
+    }
+}
@@ -0,0 +1,13 @@
+package com.cs.rpc.exception;
+
+/**
+ * @author ：cs
+ * @description：调用超时的异常
+ * @date ：2026/10/17 19:20
+ */
+public class CsRpcTimeoutException extends CsRpcException{
+
+    public CsRpcTimeoutException(String msg){
+        super(msg);
+    }
+}
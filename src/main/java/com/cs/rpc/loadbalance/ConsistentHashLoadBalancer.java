@@ -0,0 +1,196 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.nacos.ServiceInstances;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author ：cs
+ * @description：一致性哈希,按CsRouteKey标注的参数选择服务提供方
+ *      每个提供方按nacos权重在哈希环上放VIRTUAL_NODES个虚拟节点,路由键哈希后顺时针找第一个虚拟节点;
+ *      提供方加入或离开时只有约1/N的键换到别的提供方,提供方上按键缓存的数据大部分仍然命中
+ *      哈希环用排序的long数组保存,查找是一次二分查找;
+ *      实例快照被替换后(nacos推送、异常点剔除和恢复)在旧环上增量重建:
+ *      保留没变的提供方的虚拟节点,只对新加入的提供方计算哈希,再归并成新的环
+ *      没有路由键时随机选择
+ * @date ：2026/10/18 10:10
+ */
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "consistentHash";
+    /**
+     * 权重为1的提供方的虚拟节点数
+     */
+    private static final int VIRTUAL_NODES = 160;
+    private static final int MAX_VIRTUAL_NODES = VIRTUAL_NODES * 10;
+
+    /**
+     * key:服务名 value:当前实例快照的哈希环
+     */
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public InetSocketAddress select(String serviceName, ServiceInstances instances) {
+        InetSocketAddress[] addresses = instances.getAddresses();
+        return addresses[ThreadLocalRandom.current().nextInt(addresses.length)];
+    }
+
+    @Override
+    public InetSocketAddress select(String serviceName, ServiceInstances instances, Object routeKey) {
+        if (routeKey == null) {
+            return select(serviceName, instances);
+        }
+        Ring ring = rings.get(serviceName);
+        if (ring == null || ring.source != instances) {
+            //并发重建时后写入的覆盖先写入的,两个环内容相同
+            ring = Ring.build(ring, instances);
+            rings.put(serviceName, ring);
+        }
+        return ring.locate(hash(String.valueOf(routeKey)));
+    }
+
+    static final class Ring {
+
+        private final ServiceInstances source;
+        final long[] points;
+        final InetSocketAddress[] owners;
+        /**
+         * 每个提供方的虚拟节点数,重建时据此判断提供方是否变化
+         */
+        private final Map<InetSocketAddress, Integer> replicas;
+
+        private Ring(ServiceInstances source, long[] points, InetSocketAddress[] owners, Map<InetSocketAddress, Integer> replicas) {
+            this.source = source;
+            this.points = points;
+            this.owners = owners;
+            this.replicas = replicas;
+        }
+
+        InetSocketAddress locate(long hash) {
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0) {
+                index = -index - 1;
+                if (index == points.length) {
+                    index = 0;
+                }
+            }
+            return owners[index];
+        }
+
+        /**
+         * 在旧环的基础上构建新的环
+         * @param old 旧的环,为null时全量构建
+         */
+        static Ring build(Ring old, ServiceInstances instances) {
+            InetSocketAddress[] addresses = instances.getAddresses();
+            Instance[] nacosInstances = instances.getInstances();
+            Map<InetSocketAddress, Integer> replicas = new HashMap<>(addresses.length * 2);
+            List<InetSocketAddress> added = new ArrayList<>();
+            int total = 0;
+            for (int i = 0; i < addresses.length; i++) {
+                int count = replicas(nacosInstances[i]);
+                replicas.put(addresses[i], count);
+                total += count;
+                if (old == null || !Integer.valueOf(count).equals(old.replicas.get(addresses[i]))) {
+                    added.add(addresses[i]);
+                }
+            }
+            //新加入(或权重变化)的提供方的虚拟节点,排序后和旧环中保留的节点归并
+            int addedCount = 0;
+            for (InetSocketAddress address : added) {
+                addedCount += replicas.get(address);
+            }
+            long[] newPoints = new long[addedCount];
+            InetSocketAddress[] newOwners = new InetSocketAddress[addedCount];
+            int n = 0;
+            for (InetSocketAddress address : added) {
+                String prefix = address.getHostString() + ":" + address.getPort() + "#";
+                for (int i = replicas.get(address); i > 0; i--) {
+                    newPoints[n] = hash(prefix + i);
+                    newOwners[n] = address;
+                    n++;
+                }
+            }
+            sort(newPoints, newOwners);
+            long[] points = new long[total];
+            InetSocketAddress[] owners = new InetSocketAddress[total];
+            int size = 0;
+            int j = 0;
+            if (old != null) {
+                for (int i = 0; i < old.points.length; i++) {
+                    InetSocketAddress owner = old.owners[i];
+                    Integer count = replicas.get(owner);
+                    if (count == null || !count.equals(old.replicas.get(owner))) {
+                        //已经离开或者权重变化的提供方
+                        continue;
+                    }
+                    while (j < newPoints.length && newPoints[j] < old.points[i]) {
+                        points[size] = newPoints[j];
+                        owners[size++] = newOwners[j++];
+                    }
+                    points[size] = old.points[i];
+                    owners[size++] = owner;
+                }
+            }
+            while (j < newPoints.length) {
+                points[size] = newPoints[j];
+                owners[size++] = newOwners[j++];
+            }
+            return new Ring(instances, points, owners, replicas);
+        }
+
+        private static int replicas(Instance instance) {
+            double weight = instance.getWeight() > 0 ? instance.getWeight() : 0.01;
+            return (int) Math.max(1, Math.min(MAX_VIRTUAL_NODES, Math.round(VIRTUAL_NODES * weight)));
+        }
+
+        /**
+         * 按哈希值排序,owners跟随移动
+         */
+        private static void sort(long[] points, InetSocketAddress[] owners) {
+            Integer[] order = new Integer[points.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(points[a], points[b]));
+            long[] sortedPoints = new long[points.length];
+            InetSocketAddress[] sortedOwners = new InetSocketAddress[owners.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedPoints[i] = points[order[i]];
+                sortedOwners[i] = owners[order[i]];
+            }
+            System.arraycopy(sortedPoints, 0, points, 0, points.length);
+            System.arraycopy(sortedOwners, 0, owners, 0, owners.length);
+        }
+    }
+
+    /**
+     * FNV-1a后再做一次murmur3的fmix64,短字符串的哈希值也能均匀分布在环上
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
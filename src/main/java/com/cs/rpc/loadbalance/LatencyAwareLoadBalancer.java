@@ -0,0 +1,59 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.nacos.ServiceInstances;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author ：cs
+ * @description：按延迟感知的两次随机选择
+ *      代价 = 延迟移动平均 * (inflight+1) / 权重 / (1-错误率),随机取两个实例选代价小的;
+ *      GC停顿或所在主机繁忙的提供方延迟和inflight同时变大,在nacos把它标记为不健康之前流量就会移走
+ *      还没有延迟样本(新加入或刚从剔除中恢复)的实例:没有请求在途时代价为0,优先探测一次;
+ *      已经有请求在途时代价很大,等第一个响应回来再按实际延迟分配,避免恢复瞬间涌入大量请求
+ * @date ：2026/10/18 9:30
+ */
+public class LatencyAwareLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "ewma";
+    private static final double PENALTY = Double.MAX_VALUE / 4;
+
+    private final ProviderStatsRegistry statsRegistry;
+
+    public LatencyAwareLoadBalancer() {
+        this.statsRegistry = SingletonFactory.getInstance(ProviderStatsRegistry.class);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public InetSocketAddress select(String serviceName, ServiceInstances instances) {
+        InetSocketAddress[] addresses = instances.getAddresses();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(addresses.length);
+        int b = random.nextInt(addresses.length - 1);
+        if (b >= a) {
+            b++;
+        }
+        Instance[] nacosInstances = instances.getInstances();
+        double costA = cost(statsRegistry.get(addresses[a]), nacosInstances[a]);
+        double costB = cost(statsRegistry.get(addresses[b]), nacosInstances[b]);
+        return costA <= costB ? addresses[a] : addresses[b];
+    }
+
+    private static double cost(ProviderStats stats, Instance instance) {
+        int inflight = stats.inflight();
+        double latency = stats.latency();
+        if (latency == 0) {
+            return inflight == 0 ? 0 : PENALTY;
+        }
+        double weight = instance.getWeight() > 0 ? instance.getWeight() : 1e-6;
+        return latency * (inflight + 1) / weight / Math.max(0.01, 1 - stats.errorRate());
+    }
+}
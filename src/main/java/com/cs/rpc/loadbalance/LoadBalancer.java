@@ -0,0 +1,34 @@
+package com.cs.rpc.loadbalance;
+
+import com.cs.rpc.nacos.ServiceInstances;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 负载均衡的接口,通过SPI加载,在CsReference上按名称选择
+ */
+public interface LoadBalancer {
+    /**
+     * 负载均衡名称
+     * @return
+     */
+    String name();
+
+    /**
+     * 选择一个服务提供方
+     * 在每次调用的线程上执行,实现必须线程安全,并且不能阻塞
+     * @param serviceName 服务名(interfaceName+version)
+     * @param instances 健康实例快照,至少有两个实例
+     * @return
+     */
+    InetSocketAddress select(String serviceName, ServiceInstances instances);
+
+    /**
+     * 按路由键选择一个服务提供方,默认忽略路由键
+     * @param routeKey CsRouteKey标注的参数值,方法没有路由键或者参数为null时为null
+     * @return
+     */
+    default InetSocketAddress select(String serviceName, ServiceInstances instances, Object routeKey) {
+        return select(serviceName, instances);
+    }
+}
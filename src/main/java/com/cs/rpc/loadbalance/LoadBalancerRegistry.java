@@ -0,0 +1,42 @@
+package com.cs.rpc.loadbalance;
+
+import com.cs.rpc.exception.CsRpcException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author ：cs
+ * @description：负载均衡的注册表,启动时通过SPI加载一次,按名称查找
+ *      实现类在多个CsReference之间共享,轮询计数等状态按服务名区分
+ * @date ：2026/10/18 8:50
+ */
+@Slf4j
+public class LoadBalancerRegistry {
+
+    private final Map<String, LoadBalancer> loadBalancers = new ConcurrentHashMap<>();
+
+    public LoadBalancerRegistry(){
+        for (LoadBalancer loadBalancer : ServiceLoader.load(LoadBalancer.class)) {
+            register(loadBalancer);
+        }
+    }
+
+    public LoadBalancer get(String name){
+        LoadBalancer loadBalancer = loadBalancers.get(name);
+        if(loadBalancer == null){
+            throw new CsRpcException("无对应的负载均衡:"+name);
+        }
+        return loadBalancer;
+    }
+
+    /**
+     * 运行时注册负载均衡实现,相同名称会覆盖
+     */
+    public void register(LoadBalancer loadBalancer){
+        loadBalancers.put(loadBalancer.name(), loadBalancer);
+        log.info("注册负载均衡:{}->{}",loadBalancer.name(),loadBalancer.getClass().getName());
+    }
+}
@@ -0,0 +1,125 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.constant.CsRpcConstants;
+import com.cs.rpc.nacos.ServiceInstances;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * @author ：cs
+ * @description：按nacos实例元数据中的标签和地区路由,在异常点剔除之后、负载均衡之前执行
+ *      1.标签:客户端配置了标签时只调用相同标签的实例,没有时退回到不带标签的实例;
+ *        客户端没有配置标签时只调用不带标签的实例(灰度实例不接普通流量),都没有时不限制
+ *      2.地区:优先调用和客户端同一地区的实例;本地区可用实例的权重之和
+ *        (去掉不健康和被剔除的)低于本地区所有上线实例权重之和的threshold时,溢出到所有地区
+ *      路由结果按实例快照缓存,快照没变时每次调用只有一次map查找
+ * @date ：2026/10/18 10:40
+ */
+@Slf4j
+public class LocalityRouter {
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    private volatile String zone = "";
+    private volatile String tag = "";
+    private volatile double threshold = 0.7;
+
+    public LocalityRouter(){
+
+    }
+
+    /**
+     * @param zone 客户端所在地区,为空表示不按地区路由
+     * @param tag 客户端的标签,为空表示只调用不带标签的实例
+     * @param threshold 本地区可用比例低于这个值时溢出到其他地区
+     */
+    public void configure(String zone, String tag, double threshold){
+        this.zone = zone == null ? "" : zone;
+        this.tag = tag == null ? "" : tag;
+        this.threshold = threshold;
+        routes.clear();
+    }
+
+    public ServiceInstances route(String serviceName, ServiceInstances instances){
+        Route route = routes.get(serviceName);
+        if(route != null && route.source == instances){
+            return route.routed;
+        }
+        Route newRoute = build(instances);
+        if(route != null && route.local != newRoute.local){
+            log.info("服务{}的地区路由变化:{}", serviceName, newRoute.local ? "恢复为本地区" : "溢出到所有地区");
+        }
+        routes.put(serviceName, newRoute);
+        return newRoute.routed;
+    }
+
+    private Route build(ServiceInstances instances){
+        Predicate<Instance> tagged = tagPredicate(instances);
+        ServiceInstances candidates = instances.retain(tagged);
+        String zone = this.zone;
+        if(zone.isEmpty()){
+            return new Route(instances, candidates, true);
+        }
+        Predicate<Instance> local = instance -> zone.equals(metadata(instance, CsRpcConstants.METADATA_ZONE));
+        ServiceInstances localInstances = candidates.retain(local);
+        double available = weight(localInstances.getInstances(), local);
+        double registered = weight(instances.getRegistered(), tagged.and(local));
+        if(localInstances.isEmpty() || available < registered * threshold){
+            return new Route(instances, candidates, false);
+        }
+        return new Route(instances, localInstances, true);
+    }
+
+    /**
+     * 标签匹配的条件,匹配不到任何可用实例时逐级放宽
+     */
+    private Predicate<Instance> tagPredicate(ServiceInstances instances){
+        String tag = this.tag;
+        Predicate<Instance> untagged = instance -> metadata(instance, CsRpcConstants.METADATA_TAG).isEmpty();
+        if(!tag.isEmpty()){
+            Predicate<Instance> sameTag = instance -> tag.equals(metadata(instance, CsRpcConstants.METADATA_TAG));
+            if(!instances.retain(sameTag).isEmpty()){
+                return sameTag;
+            }
+        }
+        if(!instances.retain(untagged).isEmpty()){
+            return untagged;
+        }
+        return instance -> true;
+    }
+
+    private static double weight(Instance[] instances, Predicate<Instance> predicate){
+        double weight = 0;
+        for (Instance instance : instances) {
+            if(predicate.test(instance)){
+                weight += Math.max(0, instance.getWeight());
+            }
+        }
+        return weight;
+    }
+
+    private static String metadata(Instance instance, String key){
+        Map<String, String> metadata = instance.getMetadata();
+        String value = metadata == null ? null : metadata.get(key);
+        return value == null ? "" : value;
+    }
+
+    private static final class Route {
+        private final ServiceInstances source;
+        private final ServiceInstances routed;
+        /**
+         * 是否只路由到本地区
+         */
+        private final boolean local;
+
+        Route(ServiceInstances source, ServiceInstances routed, boolean local) {
+            this.source = source;
+            this.routed = routed;
+            this.local = local;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.cs.rpc.loadbalance;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.nacos.ServiceInstances;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author ：cs
+ * @description：异常点剔除,在负载均衡之前把暂时剔除的提供方从实例快照中去掉,对所有负载均衡都生效
+ *      1.连续失败、连接不上的提供方在ProviderStats中直接剔除
+ *      2.每个服务每100ms检查一次同服务的提供方:错误率超过MAX_ERROR_RATE,
+ *        或者延迟超过中位数的LATENCY_FACTOR倍(并且至少慢MIN_LATENCY_GAP)的剔除
+ *      3.停顿(GC、主机卡住)时没有请求完成,也就没有延迟样本,
+ *        有请求在途但超过中位数的STALL_FACTOR倍(至少MIN_STALL)没有完成任何请求的也剔除
+ *      4.同一个服务最多剔除一半的实例,防止误判或者整体变慢时把流量都压到少数实例上
+ *      去掉剔除实例后的快照按服务缓存,nacos推送、有新的剔除、剔除到期时才重建,平时只有一次map查找
+ * @date ：2026/10/18 9:20
+ */
+public class OutlierEjector {
+
+    private static final long CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_SAMPLES = 10;
+    private static final double MAX_ERROR_RATE = 0.5;
+    private static final double LATENCY_FACTOR = 3;
+    private static final double MIN_LATENCY_GAP = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final double STALL_FACTOR = 20;
+    private static final double MIN_STALL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final ProviderStatsRegistry statsRegistry;
+    private final Map<String, View> views = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+
+    public OutlierEjector(){
+        this.statsRegistry = SingletonFactory.getInstance(ProviderStatsRegistry.class);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 去掉被剔除的提供方
+     * @param instances nacos推送的健康实例快照
+     * @return 没有剔除时返回instances本身
+     */
+    public ServiceInstances filter(String serviceName, ServiceInstances instances){
+        if(!enabled || instances.size() < 2){
+            return instances;
+        }
+        return filter(serviceName, instances, System.nanoTime());
+    }
+
+    ServiceInstances filter(String serviceName, ServiceInstances instances, long now){
+        View view = views.get(serviceName);
+        if(view != null && view.source == instances && view.epoch == ProviderStats.ejectionEpoch() && now - view.expireAt < 0){
+            return view.filtered;
+        }
+        view = build(view, instances, now);
+        views.put(serviceName, view);
+        return view.filtered;
+    }
+
+    private View build(View old, ServiceInstances instances, long now){
+        InetSocketAddress[] addresses = instances.getAddresses();
+        int maxEjected = addresses.length / 2;
+        ProviderStats[] stats = new ProviderStats[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            stats[i] = statsRegistry.get(addresses[i]);
+        }
+        detect(stats, maxEjected, now);
+        int epoch = ProviderStats.ejectionEpoch();
+        ServiceInstances filtered = instances;
+        long expireAt = now + CHECK_INTERVAL;
+        int ejected = 0;
+        for (int i = 0; i < stats.length && ejected < maxEjected; i++) {
+            if(stats[i].isEjected(now)){
+                filtered = filtered.without(addresses[i]);
+                ejected++;
+                if(stats[i].getEjectedUntil() - expireAt < 0){
+                    expireAt = stats[i].getEjectedUntil();
+                }
+            }
+        }
+        if(old != null && old.source == instances && old.filtered.sameAddresses(filtered)){
+            //剔除的实例没有变化时沿用原来的快照,后面按快照缓存的路由和负载均衡状态不需要重建
+            filtered = old.filtered;
+        }
+        return new View(instances, filtered, epoch, expireAt);
+    }
+
+    /**
+     * 按错误率和同服务提供方的延迟中位数找出异常点
+     */
+    private void detect(ProviderStats[] stats, int maxEjected, long now){
+        int ejected = 0;
+        double[] latencies = new double[stats.length];
+        int count = 0;
+        for (ProviderStats stat : stats) {
+            if(stat.isEjected(now)){
+                ejected++;
+            }else if(stat.samples() >= MIN_SAMPLES){
+                latencies[count++] = stat.latency();
+            }
+        }
+        double median = 0;
+        if(count >= 3){
+            Arrays.sort(latencies, 0, count);
+            median = latencies[count / 2];
+        }
+        for (int i = 0; i < stats.length && ejected < maxEjected; i++) {
+            ProviderStats stat = stats[i];
+            if(stat.isEjected(now) || stat.samples() < MIN_SAMPLES){
+                continue;
+            }
+            boolean erroring = stat.errorRate() > MAX_ERROR_RATE;
+            boolean slow = median > 0 && stat.latency() > median * LATENCY_FACTOR && stat.latency() - median > MIN_LATENCY_GAP;
+            boolean stalled = median > 0 && stat.inflight() > 0
+                    && now - stat.getLastSampleNanos() > Math.max(MIN_STALL, median * STALL_FACTOR);
+            if(erroring || slow || stalled){
+                stat.eject(now);
+                ejected++;
+            }
+        }
+    }
+
+    private static final class View {
+        private final ServiceInstances source;
+        private final ServiceInstances filtered;
+        private final int epoch;
+        private final long expireAt;
+
+        View(ServiceInstances source, ServiceInstances filtered, int epoch, long expireAt) {
+            this.source = source;
+            this.filtered = filtered;
+            this.epoch = epoch;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.nacos.ServiceInstances;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author ：cs
+ * @description：两次随机选择(power of two choices),选未完成请求数少的一个
+ *      随机取两个不同的实例,比较(inflight+1)/权重,不需要遍历全部实例,也没有全局的锁和计数器;
+ *      慢的实例上请求会堆积,inflight变大后自然少分到请求
+ * @date ：2026/10/18 8:50
+ */
+public class PowerOfTwoLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "p2c";
+
+    private final ProviderStatsRegistry statsRegistry;
+
+    public PowerOfTwoLoadBalancer() {
+        this.statsRegistry = SingletonFactory.getInstance(ProviderStatsRegistry.class);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public InetSocketAddress select(String serviceName, ServiceInstances instances) {
+        InetSocketAddress[] addresses = instances.getAddresses();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(addresses.length);
+        int b = random.nextInt(addresses.length - 1);
+        if (b >= a) {
+            b++;
+        }
+        Instance[] nacosInstances = instances.getInstances();
+        double loadA = (statsRegistry.get(addresses[a]).inflight() + 1) / weight(nacosInstances[a]);
+        double loadB = (statsRegistry.get(addresses[b]).inflight() + 1) / weight(nacosInstances[b]);
+        return loadA <= loadB ? addresses[a] : addresses[b];
+    }
+
+    private static double weight(Instance instance) {
+        double weight = instance.getWeight();
+        //权重为0的实例尽量不选,但两个都是0时仍能比较
+        return weight > 0 ? weight : 1e-6;
+    }
+}
@@ -0,0 +1,186 @@
+package com.cs.rpc.loadbalance;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.metrics.CsRpcMetrics;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author ：cs
+ * @description：客户端视角下一个服务提供方的实时状态
+ *      inflight是发出后还没有完成(响应/失败/超时)的请求数,跨连接池中所有连接统计,
+ *      负载均衡据此判断提供方的忙碌程度;
+ *      延迟和错误率是按时间衰减的指数移动平均,距离上一个样本越久,旧值的权重越小,
+ *      每个样本至少占MIN_ALPHA的权重,同一时刻大量完成的请求也都能计入;
+ *      失败的请求往往很快返回,不会拉低延迟,只计入错误率;
+ *      连续失败FAILURE_THRESHOLD次、连接不上或被OutlierEjector判定为异常点后暂时剔除,
+ *      剔除时间从BASE_EJECTION开始每次翻倍,最长MAX_EJECTION,恢复后正常一段时间再清零
+ * @date ：2026/10/18 8:30
+ */
+public class ProviderStats {
+
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final double MIN_ALPHA = 0.05;
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long BASE_EJECTION = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_EJECTION = TimeUnit.SECONDS.toNanos(60);
+
+    private static final LongAdder EJECTED_COUNTER = SingletonFactory.getInstance(CsRpcMetrics.class).counter("client.provider.ejected");
+    /**
+     * 任意提供方被剔除时加一,OutlierEjector据此判断缓存的快照是否需要重建
+     */
+    private static final AtomicInteger EJECTION_EPOCH = new AtomicInteger();
+
+    private final InetSocketAddress address;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /**
+     * 延迟的移动平均(纳秒)和错误率的移动平均,写入在锁内,读取不加锁
+     */
+    private volatile double latency;
+    private volatile double errorRate;
+    /**
+     * 上次剔除后(或创建后)计入的样本数,样本太少时不参与异常判断
+     */
+    private volatile int samples;
+    private volatile boolean ejected;
+    private volatile long ejectedUntil;
+
+    private volatile long lastSampleNanos;
+    private int consecutiveFailures;
+    private int ejections;
+    private long ejectedAt;
+
+    public ProviderStats(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * 请求发出前调用
+     * @return 开始时间,请求完成时用来计算延迟
+     */
+    public long begin() {
+        inflight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * 请求完成后调用,和begin一一对应,不计入延迟样本(单向调用)
+     */
+    public void end() {
+        inflight.decrementAndGet();
+    }
+
+    /**
+     * 请求完成后调用,和begin一一对应
+     * @param startNanos begin返回的开始时间
+     * @param success 是否成功,超时、连接失败、服务方法异常、服务端繁忙都算失败
+     */
+    public void end(long startNanos, boolean success) {
+        long now = System.nanoTime();
+        end(now, now - startNanos, success);
+    }
+
+    void end(long now, long latencyNanos, boolean success) {
+        inflight.decrementAndGet();
+        record(now, latencyNanos, success);
+    }
+
+    private synchronized void record(long now, long latencyNanos, boolean success) {
+        if (ejected && now - latencyNanos - ejectedAt < 0) {
+            //剔除前发出的请求,反映的是剔除前的状态
+            return;
+        }
+        double error = success ? 0 : 1;
+        if (samples == 0) {
+            latency = latencyNanos;
+            errorRate = error;
+        } else {
+            double alpha = Math.max(MIN_ALPHA, 1 - Math.exp(-(now - lastSampleNanos) / DECAY_NANOS));
+            if (success || latencyNanos > latency) {
+                latency += (latencyNanos - latency) * alpha;
+            }
+            errorRate += (error - errorRate) * alpha;
+        }
+        lastSampleNanos = now;
+        samples++;
+        consecutiveFailures = success ? 0 : consecutiveFailures + 1;
+        if (consecutiveFailures >= FAILURE_THRESHOLD) {
+            eject(now);
+        }
+    }
+
+    /**
+     * 连接不上时暂时剔除,到期后重新参与选择,仍然连接不上时退避翻倍
+     */
+    public void eject() {
+        eject(System.nanoTime());
+    }
+
+    /**
+     * 暂时剔除,剔除期间的样本清零,恢复后重新统计
+     */
+    synchronized void eject(long now) {
+        if (isEjected(now)) {
+            return;
+        }
+        if (ejections > 0 && now - ejectedUntil > MAX_EJECTION) {
+            //上次恢复后正常了足够长的时间,退避重新开始
+            ejections = 0;
+        }
+        long duration = Math.min(MAX_EJECTION, BASE_EJECTION << Math.min(ejections, 16));
+        ejections++;
+        ejectedAt = now;
+        ejectedUntil = now + duration;
+        ejected = true;
+        samples = 0;
+        consecutiveFailures = 0;
+        EJECTED_COUNTER.increment();
+        EJECTION_EPOCH.incrementAndGet();
+    }
+
+    public boolean isEjected(long now) {
+        return ejected && ejectedUntil - now > 0;
+    }
+
+    /**
+     * 最近一次请求完成的时间
+     */
+    long getLastSampleNanos() {
+        return lastSampleNanos;
+    }
+
+    long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    static int ejectionEpoch() {
+        return EJECTION_EPOCH.get();
+    }
+
+    public int inflight() {
+        return inflight.get();
+    }
+
+    /**
+     * 延迟的移动平均(纳秒),还没有样本时为0
+     */
+    public double latency() {
+        return samples == 0 ? 0 : latency;
+    }
+
+    public double errorRate() {
+        return samples == 0 ? 0 : errorRate;
+    }
+
+    public int samples() {
+        return samples;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+}
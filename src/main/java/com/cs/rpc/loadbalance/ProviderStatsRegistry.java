@@ -0,0 +1,70 @@
+package com.cs.rpc.loadbalance;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.metrics.CsRpcMetrics;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author ：cs
+ * @description：所有服务提供方的实时状态,按地址保存,同一个地址上的多个服务共用一份
+ *      服务发现的快照变化后,不在任何快照中的地址由ServiceDiscovery清理
+ *      指标: client.provider.inflight 各提供方当前的未完成请求数,
+ *           client.provider.latency 各提供方延迟的移动平均(毫秒), client.provider.error 各提供方错误率的移动平均
+ * @date ：2026/10/18 8:30
+ */
+public class ProviderStatsRegistry {
+
+    private final Map<InetSocketAddress, ProviderStats> statsMap = new ConcurrentHashMap<>();
+
+    public ProviderStatsRegistry(){
+        CsRpcMetrics metrics = SingletonFactory.getInstance(CsRpcMetrics.class);
+        metrics.gauge("client.provider.inflight", this::inflight);
+        metrics.gauge("client.provider.latency", this::latency);
+        metrics.gauge("client.provider.error", this::errorRate);
+    }
+
+    public ProviderStats get(InetSocketAddress address){
+        ProviderStats stats = statsMap.get(address);
+        if(stats == null){
+            stats = statsMap.computeIfAbsent(address, ProviderStats::new);
+        }
+        return stats;
+    }
+
+    /**
+     * 只保留仍在服务发现快照中的提供方,已经下线的提供方不再占用内存,也不再出现在指标中
+     * 下线后又重新上线的提供方从新的统计开始
+     */
+    public void retain(Set<InetSocketAddress> addresses){
+        statsMap.keySet().retainAll(addresses);
+    }
+
+    private Object inflight(){
+        Map<String, Integer> inflight = new TreeMap<>();
+        for (ProviderStats stats : statsMap.values()) {
+            inflight.put(stats.getAddress().toString(), stats.inflight());
+        }
+        return inflight;
+    }
+
+    private Object latency(){
+        Map<String, Double> latency = new TreeMap<>();
+        for (ProviderStats stats : statsMap.values()) {
+            latency.put(stats.getAddress().toString(), stats.latency() / 1_000_000);
+        }
+        return latency;
+    }
+
+    private Object errorRate(){
+        Map<String, Double> errorRate = new TreeMap<>();
+        for (ProviderStats stats : statsMap.values()) {
+            errorRate.put(stats.getAddress().toString(), stats.errorRate());
+        }
+        return errorRate;
+    }
+}
@@ -0,0 +1,27 @@
+package com.cs.rpc.loadbalance;
+
+import com.cs.rpc.nacos.ServiceInstances;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author ：cs
+ * @description：随机选择,无锁,O(1),不看权重和负载
+ * @date ：2026/10/18 8:30
+ */
+public class RandomLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "random";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public InetSocketAddress select(String serviceName, ServiceInstances instances) {
+        InetSocketAddress[] addresses = instances.getAddresses();
+        return addresses[ThreadLocalRandom.current().nextInt(addresses.length)];
+    }
+}
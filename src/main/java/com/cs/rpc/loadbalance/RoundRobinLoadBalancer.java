@@ -0,0 +1,151 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.nacos.ServiceInstances;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author ：cs
+ * @description：按nacos实例权重加权轮询
+ *      每个实例快照只生成一次轮询表:按平滑加权轮询(nginx的算法)排出一个周期内的选择顺序,
+ *      权重高的实例均匀地分散在周期中,不会连续打到同一个实例;
+ *      选择时只对服务的计数器做一次getAndIncrement,再按下标取轮询表,无锁
+ *      实例快照被替换后(nacos推送、剔除)轮询表随之重建
+ * @date ：2026/10/18 8:40
+ */
+public class RoundRobinLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "roundRobin";
+    /**
+     * nacos的权重是小数,放大后取整
+     */
+    private static final int WEIGHT_SCALE = 100;
+    /**
+     * 轮询表的最大长度,权重之和超过时按比例缩小
+     */
+    private static final int MAX_CYCLE = 1024;
+
+    /**
+     * key:服务名 value:当前实例快照的轮询表
+     */
+    private final Map<String, Schedule> schedules = new ConcurrentHashMap<>();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public InetSocketAddress select(String serviceName, ServiceInstances instances) {
+        Schedule schedule = schedules.get(serviceName);
+        if (schedule == null || schedule.instances != instances) {
+            //并发重建时后写入的覆盖先写入的,两份轮询表内容相同
+            schedule = new Schedule(instances);
+            schedules.put(serviceName, schedule);
+        }
+        return schedule.next();
+    }
+
+    private static final class Schedule {
+
+        private final ServiceInstances instances;
+        /**
+         * 一个周期内依次选择的实例下标,所有权重相同时为null,直接按计数器取模
+         */
+        private final int[] cycle;
+        private final AtomicLong counter;
+
+        Schedule(ServiceInstances instances) {
+            this.instances = instances;
+            this.cycle = buildCycle(weights(instances.getInstances()));
+            //每个客户端从随机位置开始,避免多个客户端同时从第一个实例开始轮询
+            this.counter = new AtomicLong(ThreadLocalRandom.current().nextInt(1 << 16));
+        }
+
+        InetSocketAddress next() {
+            InetSocketAddress[] addresses = instances.getAddresses();
+            long count = counter.getAndIncrement() & Long.MAX_VALUE;
+            if (cycle == null) {
+                return addresses[(int) (count % addresses.length)];
+            }
+            return addresses[cycle[(int) (count % cycle.length)]];
+        }
+    }
+
+    /**
+     * 放大取整后的权重,权重为0的实例不参与轮询;全部为0时按相同权重处理
+     */
+    static int[] weights(Instance[] instances) {
+        int[] weights = new int[instances.length];
+        long total = 0;
+        for (int i = 0; i < instances.length; i++) {
+            weights[i] = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(0, Math.round(instances[i].getWeight() * WEIGHT_SCALE)));
+            total += weights[i];
+        }
+        if (total == 0) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = 1;
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * 按平滑加权轮询生成一个周期的选择顺序
+     * 每一步所有实例的current加上自己的权重,选current最大的实例,被选中的实例current减去权重之和
+     */
+    static int[] buildCycle(int[] weights) {
+        int gcd = 0;
+        boolean same = true;
+        for (int weight : weights) {
+            gcd = gcd(gcd, weight);
+            same &= weight == weights[0];
+        }
+        if (same) {
+            return null;
+        }
+        long total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] /= gcd;
+            total += weights[i];
+        }
+        if (total > MAX_CYCLE) {
+            long scaled = 0;
+            for (int i = 0; i < weights.length; i++) {
+                if (weights[i] > 0) {
+                    weights[i] = (int) Math.max(1, weights[i] * MAX_CYCLE / total);
+                }
+                scaled += weights[i];
+            }
+            total = scaled;
+        }
+        int[] cycle = new int[(int) total];
+        long[] current = new long[weights.length];
+        for (int step = 0; step < cycle.length; step++) {
+            int best = -1;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (weights[i] > 0 && (best < 0 || current[i] > current[best])) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            cycle[step] = best;
+        }
+        return cycle;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,55 @@
+package com.cs.rpc.message;
+
+import com.cs.rpc.constant.CsRpcConstants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author ：cs
+ * @description：连接建立时的握手
+ *      客户端连接成功后发送握手请求,服务端返回方法表:方法签名 -> 方法id,
+ *      之后客户端在这个连接上的请求只带方法id和参数;方法表里没有的方法仍然发送完整的请求
+ *      方法id在服务端进程内不变,服务端重启后连接重建,会重新握手
+ *      双方同时交换支持的最高协议版本,之后按两者中较小的版本发送(ProtocolVersion)
+ * @date ：2026/10/18 5:00
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CsHandshake implements Serializable {
+
+    /**
+     * key:方法签名 value:方法id
+     */
+    private Map<String, Integer> methodIds = new HashMap<>();
+    /**
+     * 发送方支持的最高协议版本,老版本没有这个字段
+     */
+    private Integer version;
+
+    public CsHandshake(Map<String, Integer> methodIds) {
+        this.methodIds = methodIds;
+        this.version = CsRpcConstants.MAX_VERSION;
+    }
+
+    /**
+     * 方法签名:服务名(interfaceName+version)#方法名(参数类型,...)
+     */
+    public static String signature(String serviceKey, String methodName, Class<?>[] paramTypes) {
+        StringBuilder builder = new StringBuilder(serviceKey).append('#').append(methodName).append('(');
+        if (paramTypes != null) {
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(paramTypes[i].getName());
+            }
+        }
+        return builder.append(')').toString();
+    }
+}
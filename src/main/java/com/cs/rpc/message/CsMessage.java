@@ -3,6 +3,8 @@ package com.cs.rpc.message;
 
 import lombok.*;
 
+import java.util.Map;
+
 /**
  * 将数据流反序列化后需要类对象来承接
  * CsMassage就是信息类
@@ -20,9 +22,21 @@ public class CsMessage {
     private byte codec;
     //compress type
     private byte compress;
-    //request id
-    private int requestId;
+    //request id,v1协议中只有4字节,v2协议中是varint编码的64位
+    private long requestId;
     //request data
     private Object data;
+    //协议版本,0表示按连接协商的版本发送;解码时记录收到的版本,响应使用相同的版本
+    private byte version;
+    //v2协议的flags,见CsRpcConstants.FLAG_*
+    private byte flags;
+    //附件,每次调用的元数据,只有v2协议会发送
+    private Map<String, String> attachments;
+    //deadline(System.nanoTime),0表示没有超时;客户端用于计算剩余时间,服务端由解码时的剩余时间换算而来
+    private long deadline;
+    //接口#方法,压缩策略按方法统计压缩率,不写入协议
+    private String methodKey;
+    //服务名(interfaceName+version),按服务训练压缩字典,不写入协议
+    private String serviceKey;
 
 }
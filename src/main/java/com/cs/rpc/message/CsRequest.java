@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 
 import java.io.Serializable;
@@ -21,4 +22,27 @@ public class CsRequest implements Serializable {
     private Class<?>[] paramTypes;
     private String version;
     private String group;
+    /**
+     * 剩余的超时时间(毫秒),由编码器在发送时填入,服务端据此跳过调用方已经放弃的请求
+     * 只在v1协议中使用:v1协议头没有空位,放在请求体中;protostuff按字段序号兼容,旧版本会忽略这个字段
+     * v2协议放在附件timeout中,这个字段为null
+     */
+    @Setter
+    private Integer timeout;
+    /**
+     * 方法id,连接建立时服务端通过握手下发方法表(CsHandshake);
+     * 有方法id时请求中只带方法id和参数,接口名、方法名、参数类型、版本都不再发送
+     */
+    private Integer methodId;
+
+    /**
+     * 只带方法id和参数的精简请求
+     */
+    public CsRequest compact(int methodId) {
+        CsRequest request = new CsRequest();
+        request.methodId = methodId;
+        request.parameters = parameters;
+        request.timeout = timeout;
+        return request;
+    }
 }
@@ -1,5 +1,6 @@
 package com.cs.rpc.message;
 
+import com.cs.rpc.constant.ResponseCodeEnum;
 import lombok.*;
 
 import java.io.Serializable;
@@ -26,11 +27,15 @@ public class CsResponse<T> implements Serializable {
      * response body
      */
     private T data;
+    /**
+     * 服务方法抛出异常时,异常的类名
+     */
+    private String exceptionClass;
 
     public static <T> CsResponse<T> success(T data, String requestId) {
         CsResponse<T> response = new CsResponse<>();
-        response.setCode(200);
-        response.setMessage("success");
+        response.setCode(ResponseCodeEnum.SUCCESS.getCode());
+        response.setMessage(ResponseCodeEnum.SUCCESS.getName());
         response.setRequestId(requestId);
         if (null != data) {
             response.setData(data);
@@ -39,10 +44,23 @@ public class CsResponse<T> implements Serializable {
     }
 
     public static <T> CsResponse<T> fail(String message) {
+        return fail(ResponseCodeEnum.SERVICE_EXCEPTION, message);
+    }
+
+    public static <T> CsResponse<T> fail(ResponseCodeEnum code, String message) {
         CsResponse<T> response = new CsResponse<>();
-        response.setCode(500);
+        response.setCode(code.getCode());
         response.setMessage(message);
         return response;
     }
 
+    /**
+     * 服务方法抛出的异常
+     */
+    public static <T> CsResponse<T> fail(Throwable cause) {
+        CsResponse<T> response = fail(ResponseCodeEnum.SERVICE_EXCEPTION, cause.getMessage());
+        response.setExceptionClass(cause.getClass().getName());
+        return response;
+    }
+
 }
@@ -0,0 +1,62 @@
+package com.cs.rpc.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * @author ：cs
+ * @description：运行指标
+ *      计数器(counter)用LongAdder累加,高并发下没有竞争;
+ *      仪表(gauge)只保存取值函数,在读取快照时才计算
+ *      通过SingletonFactory获取单例,snapshot()的结果可以对接到任意监控系统
+ * @date ：2026/10/17 14:05
+ */
+public class CsRpcMetrics {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Object>> gauges = new ConcurrentHashMap<>();
+
+    public CsRpcMetrics(){
+
+    }
+
+    /**
+     * 获取计数器,热点路径上应持有返回的LongAdder,避免每次查找
+     */
+    public LongAdder counter(String name){
+        LongAdder adder = counters.get(name);
+        if(adder == null){
+            adder = counters.computeIfAbsent(name, k -> new LongAdder());
+        }
+        return adder;
+    }
+
+    public void increment(String name){
+        counter(name).increment();
+    }
+
+    public void gauge(String name, Supplier<Object> supplier){
+        gauges.put(name, supplier);
+    }
+
+    public void removeGauge(String name){
+        gauges.remove(name);
+    }
+
+    /**
+     * 所有指标当前值,按名称排序
+     */
+    public Map<String, Object> snapshot(){
+        Map<String, Object> snapshot = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        for (Map.Entry<String, Supplier<Object>> entry : gauges.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+}
@@ -4,6 +4,7 @@ import com.alibaba.nacos.api.NacosFactory;
 import com.alibaba.nacos.api.config.ConfigService;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.cs.rpc.config.CsRpcConfig;
 
@@ -59,6 +60,21 @@ public class NacosTemplate {
         return instance;
     }
 
+    //获取全部健康的实例,由调用方自己做负载均衡
+    public List<Instance> getHealthyInstances(String groupName,String serverName) throws Exception{
+        return namingService.selectInstances(serverName, groupName, true);
+    }
+
+    //获取全部实例(包括不健康的)
+    public List<Instance> getAllInstances(String groupName,String serverName) throws Exception{
+        return namingService.getAllInstances(serverName, groupName);
+    }
+
+    //订阅服务,实例发生变化时由nacos主动推送
+    public void subscribe(String groupName,String serverName,EventListener listener) throws Exception{
+        namingService.subscribe(serverName, groupName, listener);
+    }
+
     public static void main(String[] args) throws Exception {
         NacosTemplate nacosTemplate = new NacosTemplate();
         nacosTemplate.init("localhost",8848);
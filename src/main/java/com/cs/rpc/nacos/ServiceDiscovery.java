@@ -0,0 +1,123 @@
+package com.cs.rpc.nacos;
+
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.breaker.CircuitBreakerRegistry;
+import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.loadbalance.LoadBalancer;
+import com.cs.rpc.loadbalance.LocalityRouter;
+import com.cs.rpc.loadbalance.OutlierEjector;
+import com.cs.rpc.loadbalance.ProviderStatsRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author ：cs
+ * @description：服务发现缓存
+ *      每个服务(interfaceName+version)第一次调用时从nacos拉取一次并订阅,
+ *      之后实例的变化由nacos推送过来替换快照,调用链路上不再访问注册中心
+ * @date ：2026/10/17 10:20
+ */
+@Slf4j
+public class ServiceDiscovery {
+
+    private final NacosTemplate nacosTemplate;
+    private final OutlierEjector outlierEjector;
+    private final LocalityRouter localityRouter;
+    private final ProviderStatsRegistry providerStatsRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    /**
+     * key:服务名(interfaceName+version) value:健康实例快照
+     */
+    private final Map<String, ServiceInstances> instancesMap = new ConcurrentHashMap<>();
+
+    public ServiceDiscovery(){
+        nacosTemplate = SingletonFactory.getInstance(NacosTemplate.class);
+        outlierEjector = SingletonFactory.getInstance(OutlierEjector.class);
+        localityRouter = SingletonFactory.getInstance(LocalityRouter.class);
+        providerStatsRegistry = SingletonFactory.getInstance(ProviderStatsRegistry.class);
+        circuitBreakerRegistry = SingletonFactory.getInstance(CircuitBreakerRegistry.class);
+    }
+
+    /**
+     * 去掉暂时剔除的异常实例,再按标签和地区路由,最后按负载均衡选择一个服务提供方,只有一个实例时不经过负载均衡
+     * @param routeKey 路由键,没有时为null
+     */
+    public InetSocketAddress select(String groupName, String serviceName, LoadBalancer loadBalancer, Object routeKey){
+        ServiceInstances instances = getInstances(groupName, serviceName);
+        if(instances.isEmpty()){
+            throw new CsRpcException("没有可用的服务提供方:"+serviceName);
+        }
+        instances = localityRouter.route(serviceName, outlierEjector.filter(serviceName, instances));
+        if(instances.size() == 1){
+            return instances.getAddresses()[0];
+        }
+        return loadBalancer.select(serviceName, instances, routeKey);
+    }
+
+    public ServiceInstances getInstances(String groupName, String serviceName){
+        ServiceInstances instances = instancesMap.get(serviceName);
+        if(instances != null){
+            return instances;
+        }
+        return subscribe(groupName, serviceName);
+    }
+
+    /**
+     * 冷启动:拉取一次实例并订阅,只在每个服务第一次调用时进入
+     */
+    private synchronized ServiceInstances subscribe(String groupName, String serviceName){
+        ServiceInstances instances = instancesMap.get(serviceName);
+        if(instances != null){
+            return instances;
+        }
+        try {
+            //拉取所有实例,不健康的实例只作为地区路由计算可用比例的基准
+            instances = ServiceInstances.of(nacosTemplate.getAllInstances(groupName, serviceName));
+            //先放入缓存再订阅,订阅后推送来的数据一定比拉取的新
+            instancesMap.put(serviceName, instances);
+            nacosTemplate.subscribe(groupName, serviceName, event -> {
+                if(event instanceof NamingEvent){
+                    ServiceInstances newInstances = ServiceInstances.of(((NamingEvent) event).getInstances());
+                    instancesMap.put(serviceName, newInstances);
+                    log.info("服务{}实例发生变化,当前可用实例数:{}", serviceName, newInstances.size());
+                    retainProviders();
+                }
+            });
+            log.info("订阅服务:{}:{},可用实例数:{}", groupName, serviceName, instances.size());
+            return instances;
+        } catch (Exception e) {
+            instancesMap.remove(serviceName);
+            throw new CsRpcException("从nacos获取服务实例出错:"+serviceName, e);
+        }
+    }
+
+    /**
+     * 按地址保存的状态只保留还在某个服务快照中(包括不健康)的提供方,下线的提供方清理掉
+     * 连接不上被暂时剔除的实例仍在快照中,不会清理
+     */
+    private void retainProviders(){
+        Set<InetSocketAddress> addresses = new HashSet<>();
+        for (ServiceInstances instances : instancesMap.values()) {
+            for (Instance instance : instances.getRegistered()) {
+                addresses.add(new InetSocketAddress(instance.getIp(), instance.getPort()));
+            }
+        }
+        providerStatsRegistry.retain(addresses);
+        circuitBreakerRegistry.retain(addresses);
+    }
+
+    /**
+     * 连接不上的实例按退避暂时剔除,由OutlierEjector在选择时去掉,到期后重新参与选择
+     * 不修改nacos推送的快照,只有一个实例时仍然会选到它,不会因为一次连接失败变成没有可用的服务提供方
+     */
+    public void invalidate(InetSocketAddress address){
+        providerStatsRegistry.get(address).eject();
+    }
+}
@@ -0,0 +1,139 @@
+package com.cs.rpc.nacos;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * @author ：cs
+ * @description：某个服务(interfaceName+version)健康实例的不可变快照
+ *      nacos推送变化时整体替换快照,调用方只读数组,无需加锁
+ *      另外保留所有上线的实例(包括不健康的),作为按地区路由时计算可用比例的基准
+ * @date ：2026/10/17 10:12
+ */
+public final class ServiceInstances {
+
+    private static final ServiceInstances EMPTY = new ServiceInstances(new Instance[0], new InetSocketAddress[0], new Instance[0]);
+
+    private final Instance[] instances;
+    private final InetSocketAddress[] addresses;
+    private final Instance[] registered;
+
+    private ServiceInstances(Instance[] instances, InetSocketAddress[] addresses, Instance[] registered) {
+        this.instances = instances;
+        this.addresses = addresses;
+        this.registered = registered;
+    }
+
+    /**
+     * 用nacos返回的实例构建快照,只保留健康并且上线的实例
+     */
+    public static ServiceInstances of(List<Instance> list) {
+        if (list == null || list.isEmpty()) {
+            return EMPTY;
+        }
+        List<Instance> healthy = new ArrayList<>(list.size());
+        List<Instance> registered = new ArrayList<>(list.size());
+        for (Instance instance : list) {
+            if (!instance.isEnabled()) {
+                continue;
+            }
+            registered.add(instance);
+            if (instance.isHealthy()) {
+                healthy.add(instance);
+            }
+        }
+        Instance[] instances = healthy.toArray(new Instance[0]);
+        InetSocketAddress[] addresses = new InetSocketAddress[instances.length];
+        for (int i = 0; i < instances.length; i++) {
+            addresses[i] = new InetSocketAddress(instances[i].getIp(), instances[i].getPort());
+        }
+        return new ServiceInstances(instances, addresses, registered.toArray(new Instance[0]));
+    }
+
+    /**
+     * 去掉某个地址后的新快照,地址不存在时返回自身
+     */
+    public ServiceInstances without(InetSocketAddress address) {
+        int index = indexOf(address);
+        if (index < 0) {
+            return this;
+        }
+        int size = addresses.length - 1;
+        Instance[] newInstances = new Instance[size];
+        InetSocketAddress[] newAddresses = new InetSocketAddress[size];
+        System.arraycopy(instances, 0, newInstances, 0, index);
+        System.arraycopy(instances, index + 1, newInstances, index, size - index);
+        System.arraycopy(addresses, 0, newAddresses, 0, index);
+        System.arraycopy(addresses, index + 1, newAddresses, index, size - index);
+        return new ServiceInstances(newInstances, newAddresses, registered);
+    }
+
+    /**
+     * 只保留满足条件的实例,全部满足时返回自身
+     */
+    public ServiceInstances retain(Predicate<Instance> predicate) {
+        List<Instance> retained = new ArrayList<>(instances.length);
+        List<InetSocketAddress> retainedAddresses = new ArrayList<>(instances.length);
+        for (int i = 0; i < instances.length; i++) {
+            if (predicate.test(instances[i])) {
+                retained.add(instances[i]);
+                retainedAddresses.add(addresses[i]);
+            }
+        }
+        if (retained.size() == instances.length) {
+            return this;
+        }
+        return new ServiceInstances(retained.toArray(new Instance[0]),
+                retainedAddresses.toArray(new InetSocketAddress[0]), registered);
+    }
+
+    /**
+     * 两个快照的实例地址是否完全相同
+     */
+    public boolean sameAddresses(ServiceInstances other) {
+        return Arrays.equals(addresses, other.addresses);
+    }
+
+    public int indexOf(InetSocketAddress address) {
+        for (int i = 0; i < addresses.length; i++) {
+            if (addresses[i].equals(address)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return addresses.length;
+    }
+
+    public boolean isEmpty() {
+        return addresses.length == 0;
+    }
+
+    /**
+     * 返回内部数组,调用方不可修改
+     */
+    public Instance[] getInstances() {
+        return instances;
+    }
+
+    /**
+     * 所有上线的实例,包括不健康的,返回内部数组,调用方不可修改
+     */
+    public Instance[] getRegistered() {
+        return registered;
+    }
+
+    /**
+     * 返回内部数组,调用方不可修改
+     */
+    public InetSocketAddress[] getAddresses() {
+        return addresses;
+    }
+}
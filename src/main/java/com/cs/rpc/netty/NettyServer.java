@@ -11,9 +11,12 @@ import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
-import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author ：cs
  * @description：Netty服务类
@@ -27,7 +30,10 @@ public class NettyServer implements CsServer{
     private EventLoopGroup workerGroup;
 
     private CsServiceProvider csServiceProvider;
-    private DefaultEventExecutorGroup eventExecutors;
+    /**
+     * 业务线程池,有界队列,队列满时直接给客户端返回失败
+     */
+    private ThreadPoolExecutor eventExecutors;
 
     private boolean isRunning;
 
@@ -55,7 +61,9 @@ public class NettyServer implements CsServer{
         ServerBootstrap b = new ServerBootstrap();
 
         //设定线程池配置:cpu和核数目*2 为线程的个数  ,用自定义的线程工厂来创建线程  并且创建线程池
-        eventExecutors = new DefaultEventExecutorGroup(RuntimeUtil.cpus() * 2,new CsRpcThreadFactory(csServiceProvider));
+        int threads = RuntimeUtil.cpus() * 2;
+        eventExecutors = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(10000), new CsRpcThreadFactory(csServiceProvider));
 
         try {
             //配置netty服务
@@ -71,7 +79,7 @@ public class NettyServer implements CsServer{
                     .handler(new LoggingHandler(LogLevel.INFO))
                     // 当客户端第一次进行请求的时候才会进行初始化
                     // 将自定义的线程池配置进入netty服务
-                    .childHandler(new NettyServerInitiator(eventExecutors));
+                    .childHandler(new NettyServerInitiator(eventExecutors, csServiceProvider.getCsRpcConfig()));
 
             // 绑定端口，同步等待绑定成功
             b.bind(csServiceProvider.getCsRpcConfig().getProviderPort()).sync().channel();
@@ -94,7 +102,7 @@ public class NettyServer implements CsServer{
 
     private void stopNettyServer() {
         if(eventExecutors != null){
-            eventExecutors.shutdownGracefully();
+            eventExecutors.shutdown();
         }
         if(bossGroup != null){
             bossGroup.shutdownGracefully();
@@ -0,0 +1,122 @@
+package com.cs.rpc.netty.client;
+
+import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.nacos.ServiceDiscovery;
+import com.cs.rpc.netty.client.cache.ChannelCache;
+import com.cs.rpc.netty.client.cache.PooledChannel;
+import com.cs.rpc.netty.client.idle.ConnectionWatchdog;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author ：cs
+ * @description：连接管理
+ *      获取连接的过程完全异步,调用线程不会阻塞在建连上;
+ *      同一个地址同一时间只有一个建连动作,并发到来的请求都挂在这一次建连上,连接就绪后依次发送
+ * @date ：2026/10/17 16:10
+ */
+@Slf4j
+public class ConnectionManager {
+
+    private final Bootstrap bootstrap;
+    private final Timer timer;
+    private final ChannelCache channelCache;
+    private final ServiceDiscovery serviceDiscovery;
+    /**
+     * 正在建立的连接 key:服务提供方地址
+     */
+    private final Map<InetSocketAddress, CompletableFuture<PooledChannel>> connecting = new ConcurrentHashMap<>();
+
+    public ConnectionManager(Bootstrap bootstrap, Timer timer, ChannelCache channelCache, ServiceDiscovery serviceDiscovery) {
+        this.bootstrap = bootstrap;
+        this.timer = timer;
+        this.channelCache = channelCache;
+        this.serviceDiscovery = serviceDiscovery;
+    }
+
+    /**
+     * 获取一个已占用(acquire)的连接,使用完后需要release
+     */
+    public CompletableFuture<PooledChannel> acquire(InetSocketAddress inetSocketAddress) {
+        PooledChannel pooledChannel = channelCache.get(inetSocketAddress);
+        if (!channelCache.shouldGrow(inetSocketAddress, pooledChannel) && pooledChannel.acquire()) {
+            return CompletableFuture.completedFuture(pooledChannel);
+        }
+        //需要新建连接,同一地址的并发建连合并为一次
+        CompletableFuture<PooledChannel> connectFuture = connect(inetSocketAddress);
+        //已有连接只是在忙,扩容在后台进行,当前请求先用已有连接
+        if (pooledChannel != null && pooledChannel.acquire()) {
+            return CompletableFuture.completedFuture(pooledChannel);
+        }
+        return connectFuture.thenCompose(connected -> {
+            if (connected.acquire()) {
+                return CompletableFuture.completedFuture(connected);
+            }
+            CompletableFuture<PooledChannel> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new CsRpcException("通道连接异常"));
+            return failed;
+        });
+    }
+
+    private CompletableFuture<PooledChannel> connect(InetSocketAddress inetSocketAddress) {
+        CompletableFuture<PooledChannel> connectFuture = connecting.get(inetSocketAddress);
+        if (connectFuture != null) {
+            return connectFuture;
+        }
+        CompletableFuture<PooledChannel> newFuture = new CompletableFuture<>();
+        connectFuture = connecting.putIfAbsent(inetSocketAddress, newFuture);
+        if (connectFuture != null) {
+            return connectFuture;
+        }
+        doConnect(inetSocketAddress, newFuture);
+        return newFuture;
+    }
+
+    /**
+     * 进行连接
+     * 连接成功后给channel装上链路检测狗,并放入连接池
+     */
+    private void doConnect(InetSocketAddress inetSocketAddress, CompletableFuture<PooledChannel> connectFuture) {
+        log.info("将要去链接:{}", inetSocketAddress);
+        bootstrap.connect(inetSocketAddress).addListener((ChannelFuture future) -> {
+            connecting.remove(inetSocketAddress, connectFuture);
+            if (future.isSuccess()) {
+                Channel channel = future.channel();
+                newWatchdog(inetSocketAddress).watch(channel);
+                PooledChannel pooledChannel = channelCache.set(inetSocketAddress, channel);
+                if (pooledChannel == null) {
+                    //重连的连接抢先占满了连接池,改用池中已有的连接
+                    pooledChannel = channelCache.get(inetSocketAddress);
+                }
+                if (pooledChannel == null) {
+                    connectFuture.completeExceptionally(new CsRpcException("通道连接异常"));
+                } else {
+                    connectFuture.complete(pooledChannel);
+                }
+            } else {
+                //链接失败后,服务端实例要从缓存中剔除
+                serviceDiscovery.invalidate(inetSocketAddress);
+                connectFuture.completeExceptionally(future.cause());
+                log.info("连接netty服务失败:{}", inetSocketAddress);
+            }
+        });
+    }
+
+    private ConnectionWatchdog newWatchdog(InetSocketAddress inetSocketAddress) {
+        return new ConnectionWatchdog(bootstrap, timer, inetSocketAddress, channelCache) {
+            @Override
+            public void clear(InetSocketAddress inetSocketAddress) {
+                serviceDiscovery.invalidate(inetSocketAddress);
+                log.info("重连12次后,进行实例缓存清除");
+            }
+        };
+    }
+}
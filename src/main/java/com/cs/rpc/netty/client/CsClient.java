@@ -1,10 +1,19 @@
 package com.cs.rpc.netty.client;
 
 import com.cs.rpc.message.CsRequest;
-
-import java.util.concurrent.ExecutionException;
+import com.cs.rpc.proxy.CsMethodMetadata;
 
 public interface CsClient {
 
-    Object sendRequest(CsRequest csRequest) throws ExecutionException, InterruptedException;
+    /**
+     * 发送请求,返回等待响应的CompletableFuture
+     * 选不出服务提供方(没有可用实例、熔断)时直接抛出CsRpcException;选中之后的失败(建连、发送、超时)通过future返回
+     */
+    Object sendRequest(CsRequest csRequest, CsMethodMetadata metadata);
+
+    /**
+     * 单向调用,不等待也不跟踪响应
+     * 选不出服务提供方时和sendRequest一样直接抛出CsRpcException;之后的失败只记录日志
+     */
+    void sendOneway(CsRequest csRequest, CsMethodMetadata metadata);
 }
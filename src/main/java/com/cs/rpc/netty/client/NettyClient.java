@@ -1,42 +1,46 @@
 package com.cs.rpc.netty.client;
 
-import com.alibaba.nacos.api.naming.pojo.Instance;
-import com.alibaba.nacos.common.utils.RandomUtils;
+import com.cs.rpc.breaker.CircuitBreaker;
+import com.cs.rpc.breaker.CircuitBreakerRegistry;
 import com.cs.rpc.config.CsRpcConfig;
-import com.cs.rpc.constant.CompressTypeEnum;
+import com.cs.rpc.compress.CompressPolicy;
+import com.cs.rpc.constant.CsRpcConstants;
+import com.cs.rpc.constant.ResponseCodeEnum;
 import com.cs.rpc.constant.MessageTypeEnum;
 import com.cs.rpc.constant.SerializationTypeEnum;
 import com.cs.rpc.exception.CsRpcException;
 import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.loadbalance.ProviderStats;
+import com.cs.rpc.loadbalance.ProviderStatsRegistry;
 import com.cs.rpc.message.CsMessage;
 import com.cs.rpc.message.CsRequest;
 import com.cs.rpc.message.CsResponse;
-import com.cs.rpc.nacos.NacosTemplate;
+import com.cs.rpc.metrics.CsRpcMetrics;
+import com.cs.rpc.nacos.ServiceDiscovery;
 import com.cs.rpc.netty.client.cache.ChannelCache;
 import com.cs.rpc.netty.client.handler.CsNettyClientHandler;
-import com.cs.rpc.netty.client.idle.ConnectionWatchdog;
+import com.cs.rpc.netty.client.handler.RemoteMethodTable;
 import com.cs.rpc.netty.codec.CsRpcDecoder;
 import com.cs.rpc.netty.codec.CsRpcEncoder;
+import com.cs.rpc.netty.handler.FlushBatchingHandler;
+import com.cs.rpc.netty.handler.PendingRequest;
 import com.cs.rpc.netty.handler.UnprocessedRequests;
+import com.cs.rpc.proxy.CsMethodMetadata;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.logging.LogLevel;
-import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
-import java.util.Optional;
-import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author ：cs
@@ -46,6 +50,11 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class NettyClient implements CsClient{
 
+    /**
+     * 选中的提供方熔断时最多选择几次
+     */
+    private static final int MAX_SELECT_ATTEMPTS = 3;
+
     /**
      * 导入配置
      */
@@ -53,19 +62,35 @@ public class NettyClient implements CsClient{
 
     private final Bootstrap bootstrap;
     private final EventLoopGroup eventLoopGroup;
-    private final UnprocessedRequests unprocessedRequests;
-    private final NacosTemplate nacosTemplate;
     /**
-     * 用于存储实例缓存 用字符串ip,port格式存储
+     * 服务发现缓存,按interfaceName+version保存健康实例快照
+     */
+    private final ServiceDiscovery serviceDiscovery;
+    /**
+     * 各服务提供方的未完成请求数,供负载均衡使用
      */
-    private final static Set<String> SERVICES = new CopyOnWriteArraySet<>();
+    private final ProviderStatsRegistry providerStatsRegistry;
+    /**
+     * 按提供方和方法的熔断器
+     */
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
 
     private final ChannelCache channelCache;
 
+    private final ConnectionManager connectionManager;
+
+    private final CompressPolicy compressPolicy;
+    /**
+     * 单向调用次数
+     */
+    private final LongAdder onewayCounter;
+
     protected final HashedWheelTimer timer = new HashedWheelTimer();
 
     public void setCsRpcConfig(CsRpcConfig csRpcConfig){
         this.csRpcConfig = csRpcConfig;
+        channelCache.setPoolSize(csRpcConfig.getConnectionsPerProvider());
+        scheduleIdleReaper(csRpcConfig.getConnectionIdleTimeout());
     }
 
     public CsRpcConfig getCsRpcConfig() {
@@ -77,190 +102,239 @@ public class NettyClient implements CsClient{
      */
     public NettyClient(){
         this.channelCache = SingletonFactory.getInstance(ChannelCache.class);
-        this.unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-        this.nacosTemplate = SingletonFactory.getInstance(NacosTemplate.class);
+        this.serviceDiscovery = SingletonFactory.getInstance(ServiceDiscovery.class);
+        this.providerStatsRegistry = SingletonFactory.getInstance(ProviderStatsRegistry.class);
+        this.circuitBreakerRegistry = SingletonFactory.getInstance(CircuitBreakerRegistry.class);
+        this.compressPolicy = SingletonFactory.getInstance(CompressPolicy.class);
+        this.onewayCounter = SingletonFactory.getInstance(CsRpcMetrics.class).counter("client.request.oneway");
         eventLoopGroup = new NioEventLoopGroup();
         bootstrap = new Bootstrap();
 
 
         bootstrap.group(eventLoopGroup)
                 .channel(NioSocketChannel.class)
-                .handler(new LoggingHandler(LogLevel.INFO))
                 //超时时间设置
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,5000);
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,5000)
+                //给netty设置处理器,只构建一次,每个新连接都按这里初始化pipeline
+                //链路检测狗在连接成功后再装到pipeline的最前面
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        //每个连接一张未完成请求表
+                        ch.attr(UnprocessedRequests.UNPROCESSED_REQUESTS).set(new UnprocessedRequests(ch));
+                        ch.pipeline().addLast(new IdleStateHandler(0, 3, 0, TimeUnit.SECONDS));
+                        //flush合并(可选):同一轮EventLoop中发出的请求合并成一次系统调用
+                        if(csRpcConfig != null && csRpcConfig.isFlushBatching()){
+                            ch.pipeline().addLast(new FlushBatchingHandler("client",
+                                    csRpcConfig.getFlushMaxMessages(), csRpcConfig.getFlushMaxBytes()));
+                        }
+                        ch.pipeline().addLast(
+                                new CsRpcDecoder(),
+                                new CsRpcEncoder(),
+                                new CsNettyClientHandler());
+                    }
+                });
+        this.connectionManager = new ConnectionManager(bootstrap, timer, channelCache, serviceDiscovery);
     }
 
     @Override
-    public Object sendRequest(CsRequest csRequest) throws ExecutionException, InterruptedException {
+    public Object sendRequest(CsRequest csRequest, CsMethodMetadata metadata) {
         //判断配置是否写入
         if(csRpcConfig == null){
             throw new CsRpcException("EnableRPC未被配置或开启");
         }
 
-        //创建一个CsResponse<Object>异步线程任务管理器resultCompletableFuture
-        CompletableFuture<CsResponse<Object>> resultCompletableFuture = new CompletableFuture<>();
-
         //1.拿到channel连接信息
-
-        //Doubbo 的rpc :注册中心挂掉后,应用仍能运行,因为第一次获取实例后,将实例放入缓存了,可以实现降低网络的消耗
-        InetSocketAddress inetSocketAddress = null;
-        String ipPort = null;
-        //从缓存中拿到实例
-        if(!SERVICES.isEmpty()){
-            //随机的负载均衡算法
-            int size = SERVICES.size();
-            int i = RandomUtils.nextInt(0, size - 1);
-            Optional<String> optional = SERVICES.stream().skip(i).findFirst();
-            if(optional.isPresent()){
-                //实例字符串是否为空,能否拿到
-                ipPort = optional.get();
-                inetSocketAddress = new InetSocketAddress(ipPort.split(",")[0],Integer.parseInt(ipPort.split(",")[1]));
-                log.info("从缓存中拿到了实例,省去");
-            }
-        }
-
-        //从nacos中获取服务提供方的ip和端口
+        //  实例从本地的服务发现缓存中按负载均衡选取,缓存由nacos推送更新,调用链路上不再访问注册中心
+        //  选中的提供方上这个方法的熔断器打开时重新选择,几次都被拒绝时快速失败
         String serviceName = csRequest.getInterfaceName()+csRequest.getVersion();
-
-        Instance oneHealthyInstance = null;
-        try {
-            log.info("调用实例:"+csRpcConfig.getNacosGroup()+":"+serviceName);
-            //从nacos中拿到实例
-            oneHealthyInstance = nacosTemplate.getOneHealthyInstance(csRpcConfig.getNacosGroup(),serviceName);
-            //拿到channel连接信息
-            inetSocketAddress = new InetSocketAddress(oneHealthyInstance.getIp(), oneHealthyInstance.getPort());
-            //将实例放入缓存
-            ipPort = oneHealthyInstance.getIp()+","+oneHealthyInstance.getPort();
-            SERVICES.add(ipPort);
-        } catch (Exception e) {
-            log.error("获取nacos实例出错",e);
-            resultCompletableFuture.completeExceptionally(e);
-            return resultCompletableFuture;
+        Object routeKey = metadata.routeKey(csRequest.getParameters());
+        InetSocketAddress inetSocketAddress;
+        CircuitBreaker circuitBreaker;
+        long permit;
+        int attempts = 0;
+        do {
+            //没有可用的服务提供方时直接抛出
+            inetSocketAddress = serviceDiscovery.select(csRpcConfig.getNacosGroup(),serviceName,
+                    metadata.getLoadBalancer(),routeKey);
+            circuitBreaker = circuitBreakerRegistry.get(inetSocketAddress, metadata.getSignature());
+            permit = circuitBreaker.acquire();
+        } while (permit < 0 && ++attempts < MAX_SELECT_ATTEMPTS);
+        if(permit < 0){
+            //熔断:不创建future、不发请求,直接抛出熔断器预先创建的异常
+            throw circuitBreaker.getRejection();
         }
 
-        String host = oneHealthyInstance.getIp();
-        int port = oneHealthyInstance.getPort();
-        log.info("将要去链接:"+host+":"+port);
+        //创建一个CsResponse<Object>异步线程任务管理器resultCompletableFuture
+        CompletableFuture<CsResponse<Object>> resultCompletableFuture = new CompletableFuture<>();
+        //选中后立即计入提供方的未完成请求数,建连和排队中的请求也算在内
+        //  完成时记录延迟和是否失败(建连失败、发送失败、超时、服务方法异常、服务端繁忙),
+        //  用于延迟感知的负载均衡、异常点剔除和熔断
+        ProviderStats providerStats = providerStatsRegistry.get(inetSocketAddress);
+        long startNanos = providerStats.begin();
+        CircuitBreaker breaker = circuitBreaker;
+        long acquired = permit;
+        resultCompletableFuture.whenComplete((response, t) -> {
+            boolean success = t == null && response != null && !ResponseCodeEnum.isProviderFailure(response.getCode());
+            breaker.onResult(acquired, System.nanoTime() - startNanos, success);
+            providerStats.end(startNanos, success);
+        });
 
-        //2.创建一个channel异步线程任务管理器channelCompletableFuture
-        CompletableFuture<Channel> completableFuture = new CompletableFuture<>();
+        //2.开始计时,超时时间从调用开始计算,包含建连和排队的时间
+        //  拿到连接后再登记到连接的未完成请求表中
+        long timeout = metadata.getTimeout();
+        PendingRequest pendingRequest = new PendingRequest(resultCompletableFuture, timeout);
 
-        //创建一个链路检测狗
-        ConnectionWatchdog watchdog = new ConnectionWatchdog(bootstrap,timer,inetSocketAddress,completableFuture,true,channelCache) {
-            @Override
-            public ChannelHandler[] handlers() {
-                return new ChannelHandler[]{
-                        this,
-                        new IdleStateHandler(0, 3, 0, TimeUnit.SECONDS),
-                        new CsRpcDecoder(),
-                        new CsRpcEncoder(),
-                        new CsNettyClientHandler()
-                };
-            }
+        //3.构建发送信息
+        CsMessage csMessage = CsMessage.builder()
+                .codec(SerializationTypeEnum.PROTO_STUFF.getCode())
+                .compress(compressPolicy.getCompressType())
+                .methodKey(metadata.getMethodKey())
+                .serviceKey(serviceName)
+                .messageType(MessageTypeEnum.REQUEST.getCode())
+                .data(csRequest)
+                .deadline(timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0)
+                .build();
 
-            @Override
-            public void clear(InetSocketAddress inetSocketAddress) {
-                SERVICES.remove(inetSocketAddress.getHostName()+","+inetSocketAddress.getPort());
-                log.info("重连12次后,进行实例缓存清除");
+        //4.从连接池中拿到等待响应最少的channel
+        //  需要新建连接时不会阻塞,请求挂在建连任务上,连接就绪后再发送
+        connectionManager.acquire(inetSocketAddress).whenComplete((pooledChannel, throwable) -> {
+            if(throwable != null){
+                resultCompletableFuture.completeExceptionally(throwable);
+                return;
             }
-        };
-        //给netty设置处理器
-        bootstrap.handler(new ChannelInitializer<SocketChannel>() {
-            @Override
-            protected void initChannel(SocketChannel ch) throws Exception {
-                ch.pipeline().addLast(watchdog.handlers());
+            //请求完成后释放连接上的占用计数
+            resultCompletableFuture.whenComplete((response, t) -> pooledChannel.release());
+            Channel channel = pooledChannel.getChannel();
+            EventLoop eventLoop = channel.eventLoop();
+            //未完成请求表只在连接的EventLoop中读写
+            if(eventLoop.inEventLoop()){
+                write(channel, csMessage, metadata, pendingRequest);
+            }else {
+                eventLoop.execute(() -> write(channel, csMessage, metadata, pendingRequest));
             }
         });
 
+        return resultCompletableFuture;
+    }
 
-        String finalIpPort = ipPort;
-
-
-        //5.将未处理的request的channel任务 放入缓存中
-        unprocessedRequests.put(csRequest.getRequestId(),resultCompletableFuture);
-
-
-        Channel channel = null;
-        //6.拿到异步任务管理器中的channel
-        //  此过程是阻塞的
-        channel = getChannel(inetSocketAddress,completableFuture);
-        if(!channel.isActive()){
-            throw new CsRpcException("通道连接异常");
+    /**
+     * 单向调用:不创建PendingRequest,不登记未完成请求表,不计时
+     * 请求带上FLAG_ONEWAY,requestId为0,服务端不返回响应;写出后就释放连接的占用计数
+     * 连接是v1协议(对端是老版本)时flags发不出去,对端仍会返回响应,客户端按requestId为0丢弃
+     */
+    @Override
+    public void sendOneway(CsRequest csRequest, CsMethodMetadata metadata) {
+        if(csRpcConfig == null){
+            throw new CsRpcException("EnableRPC未被配置或开启");
         }
-
-        //7.构建发送信息
+        String serviceName = csRequest.getInterfaceName()+csRequest.getVersion();
+        Object routeKey = metadata.routeKey(csRequest.getParameters());
+        InetSocketAddress inetSocketAddress;
+        CircuitBreaker circuitBreaker;
+        long permit;
+        int attempts = 0;
+        do {
+            inetSocketAddress = serviceDiscovery.select(csRpcConfig.getNacosGroup(),serviceName,
+                    metadata.getLoadBalancer(),routeKey);
+            circuitBreaker = circuitBreakerRegistry.get(inetSocketAddress, metadata.getSignature());
+            permit = circuitBreaker.acquire();
+        } while (permit < 0 && ++attempts < MAX_SELECT_ATTEMPTS);
+        if(permit < 0){
+            throw circuitBreaker.getRejection();
+        }
+        CircuitBreaker breaker = circuitBreaker;
+        long acquired = permit;
+        ProviderStats providerStats = providerStatsRegistry.get(inetSocketAddress);
+        long startNanos = providerStats.begin();
+        onewayCounter.increment();
         CsMessage csMessage = CsMessage.builder()
                 .codec(SerializationTypeEnum.PROTO_STUFF.getCode())
-                .compress(CompressTypeEnum.GZIP.getCode())
+                .compress(compressPolicy.getCompressType())
+                .methodKey(metadata.getMethodKey())
+                .serviceKey(serviceName)
                 .messageType(MessageTypeEnum.REQUEST.getCode())
+                .flags(CsRpcConstants.FLAG_ONEWAY)
                 .data(csRequest)
                 .build();
+        connectionManager.acquire(inetSocketAddress).whenComplete((pooledChannel, throwable) -> {
+            if(throwable != null){
+                breaker.onResult(acquired, System.nanoTime() - startNanos, false);
+                providerStats.end(startNanos, false);
+                log.warn("单向调用获取连接失败:{}",metadata.getMethodKey(),throwable);
+                return;
+            }
+            Channel channel = pooledChannel.getChannel();
+            Integer methodId = RemoteMethodTable.lookup(channel, metadata.getSignature());
+            if(methodId != null){
+                csMessage.setData(csRequest.compact(methodId));
+            }
+            channel.writeAndFlush(csMessage).addListener(future -> {
+                pooledChannel.release();
+                //单向调用写出后就算完成,熔断器只记录能否写出
+                breaker.onResult(acquired, 0, future.isSuccess());
+                if(future.isSuccess()){
+                    //没有响应,不计入延迟
+                    providerStats.end();
+                }else {
+                    providerStats.end(startNanos, false);
+                    log.warn("单向调用发送失败:{}",metadata.getMethodKey(),future.cause());
+                }
+            });
+        });
+    }
 
-        //8.将信息写入channel通道中
-        // 并且添加监听器,如果写入成功,将打印日志
+    /**
+     * 登记请求并分配本连接内的requestId,然后将信息写入channel通道中
+     * 并且添加监听器,如果写入失败,关闭通道并让请求失败
+     * 在连接的EventLoop中调用
+     */
+    private void write(Channel channel, CsMessage csMessage, CsMethodMetadata metadata, PendingRequest pendingRequest){
+        if(pendingRequest.isDone()){
+            //等待连接的过程中已经超时,不再发送
+            return;
+        }
+        //连接已经握手并且服务端有这个方法,只发送方法id和参数
+        Integer methodId = RemoteMethodTable.lookup(channel, metadata.getSignature());
+        if(methodId != null){
+            csMessage.setData(((CsRequest) csMessage.getData()).compact(methodId));
+        }
+        UnprocessedRequests unprocessedRequests = UnprocessedRequests.get(channel);
+        int requestId = unprocessedRequests.put(pendingRequest);
+        if(requestId == 0){
+            //检查之后、登记之前超时了,已经被移除,不再发送
+            return;
+        }
+        csMessage.setRequestId(requestId);
         channel.writeAndFlush(csMessage).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
-                if(future.isSuccess()){
-                    log.info(csMessage.getData()+":请求完成");
-                }else {
+                if(!future.isSuccess()){
                     log.info("发送请求数据失败");
+                    unprocessedRequests.remove(requestId);
                     //将通道关闭
                     future.channel().close();
                     //通道抛出异常
-                    resultCompletableFuture.completeExceptionally(future.cause());
+                    pendingRequest.getFuture().completeExceptionally(future.cause());
                 }
             }
         });
-
-
-        return resultCompletableFuture;
     }
 
     /**
-     * 获得连接通道
-     * @param inetSocketAddress
-     * @param completableFuture
-     * @return
+     * 定时回收空闲连接
+     * @param idleSeconds 空闲超时时间,小于等于0表示不回收
      */
-    private Channel getChannel(InetSocketAddress inetSocketAddress, CompletableFuture<Channel> completableFuture) throws ExecutionException, InterruptedException {
-        Channel channel = channelCache.get(inetSocketAddress);
-        if(channel == null){
-            //缓存中没有可用通道,进行连接
-            doConnect(inetSocketAddress,completableFuture);
-            channel = completableFuture.get();
-            //连接后将channel放入缓存
-            channelCache.set(inetSocketAddress,channel);
-            return channel;
-        }else {
-            log.info("channel是从缓存中获取的");
-            return channel;
+    private void scheduleIdleReaper(int idleSeconds){
+        if(idleSeconds <= 0){
+            return;
         }
-    }
-
-    /**
-     * 进行连接
-     * @param inetSocketAddress
-     */
-    public void doConnect(InetSocketAddress inetSocketAddress,CompletableFuture<Channel> completableFuture){
-        //netty进行连接
-        // 并且添加监听器,如果连接成功,将channel放入任务中
-        // 此步骤是异步的:
-
-        bootstrap.connect(inetSocketAddress).addListener(new ChannelFutureListener(){
-
+        timer.newTimeout(new TimerTask() {
             @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-                if(future.isSuccess()){
-                    //连接成功,将channel放入线程任务中
-                    completableFuture.complete(future.channel());
-                }else{
-                    //链接失败后,服务端实例要从缓存中剔除
-                    SERVICES.remove(inetSocketAddress.getHostName()+","+inetSocketAddress.getPort());
-                    completableFuture.completeExceptionally(future.cause());
-                    log.info("连接netty服务失败");
-                }
+            public void run(Timeout timeout) throws Exception {
+                channelCache.reapIdle(TimeUnit.SECONDS.toNanos(idleSeconds));
+                timer.newTimeout(this, idleSeconds, TimeUnit.SECONDS);
             }
-        });
+        }, idleSeconds, TimeUnit.SECONDS);
     }
 }
@@ -1,43 +1,115 @@
 package com.cs.rpc.netty.client.cache;
 
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.metrics.CsRpcMetrics;
 import io.netty.channel.Channel;
-import org.springframework.util.StringUtils;
+import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author ：cs
- * @description：缓存channel
+ * @description：缓存channel,每个服务提供方一个连接池
  * @date ：2022/11/23 6:30
  */
+@Slf4j
 public class ChannelCache {
-    private final Map<String, Channel> channelMap;
+    private final Map<InetSocketAddress, ChannelPool> poolMap;
+    /**
+     * 每个服务提供方的最大连接数
+     */
+    private volatile int poolSize = 1;
 
     public ChannelCache(){
-        channelMap = new ConcurrentHashMap<>();
+        poolMap = new ConcurrentHashMap<>();
+        //导出连接池占用情况
+        SingletonFactory.getInstance(CsRpcMetrics.class).gauge("client.channel.pool", this::occupancy);
     }
 
-    public Channel get(InetSocketAddress address){
-        String key = address.toString();
-        if(key != null){
-            Channel channel = channelMap.get(key);
-            if(channel != null && channel.isActive()){
-                return channel;
-            }else {
-                remove(address);
-            }
+    public void setPoolSize(int poolSize) {
+        this.poolSize = Math.max(1, poolSize);
+    }
+
+    /**
+     * 获取一个等待响应最少的连接
+     * @return 没有可用连接时返回null
+     */
+    public PooledChannel get(InetSocketAddress address){
+        ChannelPool pool = poolMap.get(address);
+        if(pool == null){
+            return null;
+        }
+        return pool.select();
+    }
+
+    /**
+     * 选出的连接正在忙并且连接池还有空位时,应该新建连接
+     */
+    public boolean shouldGrow(InetSocketAddress address, PooledChannel selected){
+        if(selected == null){
+            return true;
         }
-        return null;
+        if(selected.pending() == 0){
+            return false;
+        }
+        ChannelPool pool = poolMap.get(address);
+        return pool == null || pool.hasFreeSlot();
     }
-    public void set(InetSocketAddress address,Channel channel){
-        channelMap.put(address.toString(),channel);
+
+    /**
+     * 将新建的连接放入连接池
+     * @return 连接池已满时关闭这个连接并返回null
+     */
+    public PooledChannel set(InetSocketAddress address,Channel channel){
+        ChannelPool pool = poolMap.computeIfAbsent(address, k -> new ChannelPool(k, poolSize));
+        PooledChannel pooledChannel = pool.offer(channel);
+        if(pooledChannel == null){
+            //并发建连时可能超出连接池大小,多余的连接直接关闭,并且不再重连
+            PooledChannel discarded = new PooledChannel(channel);
+            discarded.evict();
+            channel.attr(ChannelPool.POOLED_CHANNEL).set(discarded);
+            channel.close();
+            log.info("连接池已满,关闭多余连接:{}",address);
+        }
+        return pooledChannel;
     }
+
     public void remove(InetSocketAddress address){
-        channelMap.remove(address.toString());
+        ChannelPool pool = poolMap.remove(address);
+        if(pool != null){
+            pool.close();
+        }
     }
 
+    /**
+     * 回收所有连接池中空闲超时的连接
+     */
+    public void reapIdle(long idleNanos){
+        long now = System.nanoTime();
+        for (ChannelPool pool : poolMap.values()) {
+            int reaped = pool.reapIdle(idleNanos, now);
+            if(reaped > 0){
+                log.info("回收空闲连接:{},数量:{}",pool.getAddress(),reaped);
+            }
+        }
+    }
 
+    /**
+     * 连接池占用情况 key:服务提供方地址 value:可用连接数/最大连接数,等待响应的请求数
+     */
+    public Map<String, Object> occupancy(){
+        Map<String, Object> occupancy = new LinkedHashMap<>();
+        for (ChannelPool pool : poolMap.values()) {
+            Map<String, Integer> stats = new LinkedHashMap<>();
+            stats.put("active", pool.active());
+            stats.put("size", pool.size());
+            stats.put("pending", pool.pending());
+            occupancy.put(pool.getAddress().toString(), stats);
+        }
+        return occupancy;
+    }
 
 }
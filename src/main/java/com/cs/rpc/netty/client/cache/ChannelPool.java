@@ -0,0 +1,147 @@
+package com.cs.rpc.netty.client.cache;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @author ：cs
+ * @description：一个服务提供方的连接池
+ *      固定数量的槽位,每次请求选择等待响应最少的连接;
+ *      已有连接都在忙并且还有空槽位时才新建连接,所以低负载下只占用一个连接
+ * @date ：2026/10/17 14:30
+ */
+public class ChannelPool {
+
+    /**
+     * channel上绑定它在池中的包装对象,重连检测狗通过它判断连接是否是被主动回收的
+     */
+    public static final AttributeKey<PooledChannel> POOLED_CHANNEL = AttributeKey.valueOf("cs-rpc.pooled-channel");
+
+    private final InetSocketAddress address;
+    private final AtomicReferenceArray<PooledChannel> slots;
+
+    public ChannelPool(InetSocketAddress address, int size) {
+        this.address = address;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+    }
+
+    /**
+     * 选择等待响应最少的连接
+     * @return 最空闲的连接,没有可用连接时返回null
+     */
+    public PooledChannel select() {
+        PooledChannel best = null;
+        int bestPending = Integer.MAX_VALUE;
+        for (int i = 0; i < slots.length(); i++) {
+            PooledChannel pooledChannel = slots.get(i);
+            if (pooledChannel == null || !pooledChannel.isActive()) {
+                continue;
+            }
+            int pending = pooledChannel.pending();
+            if (pending < bestPending) {
+                best = pooledChannel;
+                bestPending = pending;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 是否还有空槽位或已失效的连接可以替换
+     */
+    public boolean hasFreeSlot() {
+        for (int i = 0; i < slots.length(); i++) {
+            PooledChannel pooledChannel = slots.get(i);
+            if (pooledChannel == null || !pooledChannel.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把新连接放入空槽位或替换掉已失效的连接
+     * @return 放入成功返回包装对象,连接池已满返回null
+     */
+    public PooledChannel offer(Channel channel) {
+        PooledChannel pooledChannel = new PooledChannel(channel);
+        for (int i = 0; i < slots.length(); i++) {
+            PooledChannel current = slots.get(i);
+            if ((current == null || !current.isActive()) && slots.compareAndSet(i, current, pooledChannel)) {
+                channel.attr(POOLED_CHANNEL).set(pooledChannel);
+                return pooledChannel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 回收空闲超时的连接,正在使用的连接不会被回收
+     * @return 回收的连接数
+     */
+    public int reapIdle(long idleNanos, long nowNanos) {
+        int reaped = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            PooledChannel pooledChannel = slots.get(i);
+            if (pooledChannel == null) {
+                continue;
+            }
+            if (!pooledChannel.isActive()) {
+                slots.compareAndSet(i, pooledChannel, null);
+                continue;
+            }
+            if (nowNanos - pooledChannel.getLastUsedNanos() > idleNanos && pooledChannel.tryEvict()) {
+                slots.compareAndSet(i, pooledChannel, null);
+                pooledChannel.getChannel().close();
+                reaped++;
+            }
+        }
+        return reaped;
+    }
+
+    /**
+     * 关闭池中所有连接
+     */
+    public void close() {
+        for (int i = 0; i < slots.length(); i++) {
+            PooledChannel pooledChannel = slots.getAndSet(i, null);
+            if (pooledChannel != null) {
+                pooledChannel.evict();
+                pooledChannel.getChannel().close();
+            }
+        }
+    }
+
+    public int active() {
+        int active = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            PooledChannel pooledChannel = slots.get(i);
+            if (pooledChannel != null && pooledChannel.isActive()) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    public int pending() {
+        int pending = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            PooledChannel pooledChannel = slots.get(i);
+            if (pooledChannel != null) {
+                pending += pooledChannel.pending();
+            }
+        }
+        return pending;
+    }
+
+    public int size() {
+        return slots.length();
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+}
@@ -0,0 +1,77 @@
+package com.cs.rpc.netty.client.cache;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author ：cs
+ * @description：连接池中的一个连接,记录正在等待响应的请求数和最后使用时间
+ * @date ：2026/10/17 14:20
+ */
+public class PooledChannel {
+
+    /**
+     * 被回收的连接把计数置为一个很小的负数,之后的acquire都会失败
+     */
+    private static final int EVICTED = Integer.MIN_VALUE / 2;
+
+    private final Channel channel;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile long lastUsedNanos = System.nanoTime();
+
+    public PooledChannel(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 占用连接发送一个请求,连接已被回收时返回false
+     */
+    public boolean acquire() {
+        if (pending.incrementAndGet() < 0) {
+            pending.decrementAndGet();
+            return false;
+        }
+        lastUsedNanos = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * 请求完成(收到响应或失败)后释放
+     */
+    public void release() {
+        lastUsedNanos = System.nanoTime();
+        pending.decrementAndGet();
+    }
+
+    /**
+     * 没有请求在等待时才能回收
+     */
+    boolean tryEvict() {
+        return pending.compareAndSet(0, EVICTED);
+    }
+
+    void evict() {
+        pending.set(EVICTED);
+    }
+
+    public boolean isEvicted() {
+        return pending.get() < 0;
+    }
+
+    public boolean isActive() {
+        return channel.isActive() && pending.get() >= 0;
+    }
+
+    public int pending() {
+        return Math.max(0, pending.get());
+    }
+
+    public long getLastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+}
@@ -5,9 +5,12 @@ import com.cs.rpc.constant.CompressTypeEnum;
 import com.cs.rpc.constant.CsRpcConstants;
 import com.cs.rpc.constant.MessageTypeEnum;
 import com.cs.rpc.constant.SerializationTypeEnum;
-import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.message.CsHandshake;
 import com.cs.rpc.message.CsMessage;
 import com.cs.rpc.message.CsResponse;
+import com.cs.rpc.netty.codec.ChannelDictionaries;
+import com.cs.rpc.netty.codec.ProtocolVersion;
 import com.cs.rpc.netty.handler.UnprocessedRequests;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -17,6 +20,8 @@ import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collections;
+
 /**
  * @author ：cs
  * @description："netty客服端处理"
@@ -25,11 +30,6 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class CsNettyClientHandler extends ChannelInboundHandlerAdapter {
 
-    private UnprocessedRequests unprocessedRequests;
-    public CsNettyClientHandler(){
-        unprocessedRequests = SingletonFactory.getInstance(UnprocessedRequests.class);
-    }
-
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         try{
@@ -37,10 +37,20 @@ public class CsNettyClientHandler extends ChannelInboundHandlerAdapter {
                 //读取数据 如果是response的消息类型，拿到数据，标识为完成
                 CsMessage csMessage = (CsMessage)msg;
 
-                if(MessageTypeEnum.RESPONSE.getCode() == csMessage.getMessageType()){
+                if(MessageTypeEnum.HANDSHAKE_RESPONSE.getCode() == csMessage.getMessageType()){
+                    CsHandshake handshake = (CsHandshake) csMessage.getData();
+                    RemoteMethodTable.set(ctx.channel(), handshake.getMethodIds());
+                    ProtocolVersion.negotiate(ctx.channel(), handshake.getVersion());
+                    log.info("握手完成,服务端方法数:{}",handshake.getMethodIds() == null ? 0 : handshake.getMethodIds().size());
+                }
+                //requestId为0的是单向调用的响应(对端是不支持单向调用的老版本),直接丢弃
+                if(MessageTypeEnum.RESPONSE.getCode() == csMessage.getMessageType() && csMessage.getRequestId() != 0){
                     Object data = csMessage.getData();
                     CsResponse csResponse = (CsResponse) data;
-                    unprocessedRequests.complete(csResponse);
+                    //用协议头中的requestId在本连接的未完成请求表中找到对应的请求
+                    if(!UnprocessedRequests.get(ctx.channel()).complete(csMessage.getRequestId(), csResponse)){
+                        log.info("响应对应的请求已经超时,丢弃:{}",csMessage.getRequestId());
+                    }
                 }
 
             }
@@ -64,7 +74,7 @@ public class CsNettyClientHandler extends ChannelInboundHandlerAdapter {
                 //满足心跳检测的机会,发送心跳包请求去服务器
                 CsMessage csMessage = CsMessage.builder()
                         .messageType(MessageTypeEnum.HEARTBEAT_PING.getCode())
-                        .compress(CompressTypeEnum.GZIP.getCode())
+                        .compress(CompressTypeEnum.NONE.getCode())
                         .codec(SerializationTypeEnum.PROTO_STUFF.getCode())
                         .data(CsRpcConstants.PING)
                         .build();
@@ -80,6 +90,16 @@ public class CsNettyClientHandler extends ChannelInboundHandlerAdapter {
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         super.channelActive(ctx);
         log.info("客户端链接...正常");
+        //交换压缩字典
+        ChannelDictionaries.pushAll(ctx);
+        //握手,向服务端请求方法表
+        CsMessage handshake = CsMessage.builder()
+                .messageType(MessageTypeEnum.HANDSHAKE_REQUEST.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .codec(SerializationTypeEnum.PROTO_STUFF.getCode())
+                .data(new CsHandshake(Collections.emptyMap()))
+                .build();
+        ctx.writeAndFlush(handshake).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
         //表示连接的正常状体
         ctx.fireChannelActive();
     }
@@ -89,7 +109,8 @@ public class CsNettyClientHandler extends ChannelInboundHandlerAdapter {
         //触发此方法后 代表服务端关闭链接了
         super.channelInactive(ctx);
         log.info("服务端关闭了连接");
-        //清除缓存
+        //连接上等待响应的请求不会再有结果,立即失败
+        UnprocessedRequests.get(ctx.channel()).failAll(new CsRpcException("连接已断开:"+ctx.channel().remoteAddress()));
 
         //表示连接的关闭
         ctx.fireChannelInactive();
@@ -0,0 +1,34 @@
+package com.cs.rpc.netty.client.handler;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @author ：cs
+ * @description：握手时服务端下发的方法表,挂在channel的属性上
+ *      握手完成前以及方法表中没有的方法,请求按完整的接口名、方法名、参数类型发送
+ * @date ：2026/10/18 5:20
+ */
+public final class RemoteMethodTable {
+
+    public static final AttributeKey<Map<String, Integer>> METHOD_IDS = AttributeKey.valueOf("cs-rpc.method-ids");
+
+    private RemoteMethodTable() {
+    }
+
+    public static void set(Channel channel, Map<String, Integer> methodIds) {
+        channel.attr(METHOD_IDS).set(methodIds == null ? Collections.<String, Integer>emptyMap() : methodIds);
+    }
+
+    /**
+     * @param signature 方法签名,见CsHandshake.signature
+     * @return 方法id,握手还没有完成或者服务端没有这个方法时返回null
+     */
+    public static Integer lookup(Channel channel, String signature) {
+        Map<String, Integer> methodIds = channel.attr(METHOD_IDS).get();
+        return methodIds == null ? null : methodIds.get(signature);
+    }
+}
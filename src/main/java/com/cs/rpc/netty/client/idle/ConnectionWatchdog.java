@@ -1,105 +1,116 @@
 package com.cs.rpc.netty.client.idle;
 
 import com.cs.rpc.netty.client.cache.ChannelCache;
+import com.cs.rpc.netty.client.cache.ChannelPool;
+import com.cs.rpc.netty.client.cache.PooledChannel;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * 链路检测狗:一条逻辑连接对应一个检测狗,连接断开后按指数退避进行重连,
+ * 重连成功后把自己装到新的channel上,继续看护这条连接
+ */
 @ChannelHandler.Sharable//用来说明ChannelHandler是否可以在多个channel直接共享使用
 @Slf4j
-public abstract class ConnectionWatchdog extends ChannelInboundHandlerAdapter implements TimerTask,ChannelHandlerHolder,CacheClearHandler{
+public abstract class ConnectionWatchdog extends ChannelInboundHandlerAdapter implements TimerTask,CacheClearHandler{
 
     private final Bootstrap bootstrap;
     private final Timer timer;
     private final InetSocketAddress inetSocketAddress;
 
     private volatile boolean reconnect = true;
-    private int attempts;
+    private volatile int attempts;
 
-    private final CompletableFuture<Channel> completableFuture;
     private final ChannelCache channelCache;
 
 
     public ConnectionWatchdog(Bootstrap bootstrap,
                               Timer timer,
                               InetSocketAddress inetSocketAddress,
-                              CompletableFuture<Channel> completableFuture,
-                              boolean b,
                               ChannelCache channelCache) {
         this.bootstrap = bootstrap;
         this.timer = timer;
         this.inetSocketAddress = inetSocketAddress;
-        this.reconnect = reconnect;
-        this.completableFuture = completableFuture;
         this.channelCache = channelCache;
     }
 
+    /**
+     * 看护一个已经连接成功的channel
+     * channelActive事件在连接成功时已经触发过,所以这里直接重置重连次数
+     */
+    public void watch(Channel channel) {
+        attempts = 0;
+        channel.pipeline().addFirst(this);
+        if(!channel.isActive()){
+            //装上之前连接就已经断开了,不会再收到channelInactive
+            scheduleReconnect();
+        }
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         log.info("连接存活");
+        attempts = 0;
         //表示连接状体啊
         super.channelActive(ctx);
-        attempts = 0;
-        ctx.fireChannelActive();
-
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        log.info("连接关闭");;
+        log.info("连接关闭");
         //代表未连接,此时应该发生重试连接策略
         super.channelInactive(ctx);
-        if(reconnect){
-            log.info("连接关闭,将进行重连");
-            //是否重连
-            if(attempts < 12){
-                attempts++;
-                log.info("重连次数:{}",attempts);
-            }else {
-                //不重连,清除缓存
-                reconnect = false;
-                clear(inetSocketAddress);
-            }
-            //时间每次乘以2
-            int timeout = 2 << attempts;
-            //定时任务执行
-            timer.newTimeout(this,timeout, TimeUnit.SECONDS);
+        //被连接池主动回收的空闲连接不需要重连
+        PooledChannel pooledChannel = ctx.channel().attr(ChannelPool.POOLED_CHANNEL).get();
+        if(pooledChannel != null && pooledChannel.isEvicted()){
+            return;
         }
+        scheduleReconnect();
     }
 
-    @Override
-    public void run(Timeout timeout) throws Exception {
-        ChannelFuture future = null;
-        synchronized (bootstrap){
-            bootstrap.handler(new ChannelInitializer<SocketChannel>() {
-                @Override
-                protected void initChannel(SocketChannel ch) throws Exception {
-                    ch.pipeline().addLast(handlers());
-                }
-            });
-            future = bootstrap.connect(inetSocketAddress);
+    private void scheduleReconnect() {
+        if(!reconnect){
+            return;
         }
-
+        log.info("连接关闭,将进行重连");
+        //是否重连
+        if(attempts < 12){
+            attempts++;
+            log.info("重连次数:{}",attempts);
+        }else {
+            //不重连,清除缓存
+            reconnect = false;
+            clear(inetSocketAddress);
+            return;
+        }
+        //时间每次乘以2
+        int timeout = 2 << attempts;
         //定时任务执行
-        future.addListener(new ChannelFutureListener() {
+        timer.newTimeout(this,timeout, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+        //pipeline由bootstrap上的初始化器统一构建,这里只需要发起连接
+        bootstrap.connect(inetSocketAddress).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
                 if(future.isSuccess()){
-                    //重连成功
-                    completableFuture.complete(future.channel());
-                    //重连成功,链路激活放入
-                    channelCache.set(inetSocketAddress,future.channel());
+                    //重连成功,继续看护新的连接
+                    watch(future.channel());
+                    //重连成功,链路激活放入连接池,连接池已满时这个连接会被关闭并且不再重连
+                    if(channelCache.set(inetSocketAddress,future.channel()) == null){
+                        reconnect = false;
+                    }
                 }else {
-                    future.channel().pipeline().fireChannelInactive();
+                    scheduleReconnect();
                 }
             }
         });
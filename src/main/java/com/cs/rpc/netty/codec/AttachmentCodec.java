@@ -0,0 +1,103 @@
+package com.cs.rpc.netty.codec;
+
+import com.cs.rpc.exception.CsRpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author ：cs
+ * @description：v2协议中附件(每次调用的元数据)的编解码
+ *      [varint 个数] 然后每一项: [varint key序号][varint 值长度][值utf8]
+ *      常用的key预先编号,只写1个字节的序号;序号0表示后面跟着key本身:[0][varint key长度][key utf8]
+ *      KEYS只能在末尾追加,不能调整顺序,否则新旧版本对不上
+ * @date ：2026/10/18 8:10
+ */
+public final class AttachmentCodec {
+
+    /**
+     * 请求剩余的超时时间(毫秒),十进制字符串
+     */
+    public static final String TIMEOUT = "timeout";
+
+    private static final String[] KEYS = {
+            null, "traceId", "spanId", TIMEOUT, "routeKey", "zone", "tag", "application"
+    };
+    private static final Map<String, Integer> KEY_INDEX = new HashMap<>();
+    /**
+     * 附件个数上限,防止恶意数据
+     */
+    private static final int MAX_ATTACHMENTS = 64;
+
+    static {
+        for (int i = 1; i < KEYS.length; i++) {
+            KEY_INDEX.put(KEYS[i], i);
+        }
+    }
+
+    private AttachmentCodec() {
+    }
+
+    public static void write(ByteBuf out, Map<String, String> attachments) {
+        if (attachments == null || attachments.isEmpty()) {
+            out.writeByte(0);
+            return;
+        }
+        Varints.writeInt(out, attachments.size());
+        for (Map.Entry<String, String> entry : attachments.entrySet()) {
+            Integer index = KEY_INDEX.get(entry.getKey());
+            if (index != null) {
+                Varints.writeInt(out, index);
+            } else {
+                out.writeByte(0);
+                writeString(out, entry.getKey());
+            }
+            writeString(out, entry.getValue() == null ? "" : entry.getValue());
+        }
+    }
+
+    /**
+     * @return 没有附件时返回null
+     */
+    public static Map<String, String> read(ByteBuf in) {
+        int size = Varints.readInt(in);
+        if (size == 0) {
+            return null;
+        }
+        if (size < 0 || size > MAX_ATTACHMENTS) {
+            throw new CsRpcException("附件个数错误:" + size);
+        }
+        Map<String, String> attachments = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            int index = Varints.readInt(in);
+            String key;
+            if (index == 0) {
+                key = readString(in);
+            } else if (index > 0 && index < KEYS.length) {
+                key = KEYS[index];
+            } else {
+                //对端新增的key,本端不认识,跳过值
+                readString(in);
+                continue;
+            }
+            attachments.put(key, readString(in));
+        }
+        return attachments;
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        Varints.writeInt(out, ByteBufUtil.utf8Bytes(value));
+        ByteBufUtil.writeUtf8(out, value);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = Varints.readInt(in);
+        if (length < 0 || length > in.readableBytes()) {
+            throw new CsRpcException("附件长度错误:" + length);
+        }
+        return in.readCharSequence(length, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.cs.rpc.netty.codec;
+
+import com.cs.rpc.compress.CompressionDictionary;
+import com.cs.rpc.compress.DictionaryRegistry;
+import com.cs.rpc.constant.CompressTypeEnum;
+import com.cs.rpc.constant.MessageTypeEnum;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.message.CsMessage;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import io.netty.util.collection.IntObjectHashMap;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author ：cs
+ * @description：一个连接上交换过的压缩字典
+ *      sent:已经发给对端的本端字典id,同一个字典在一个连接上只发一次
+ *      received:对端发来的字典,按对端分配的id查找;每个服务只保留最新的两个版本,
+ *      旧版本留一个是为了字典更新时还在路上的消息仍然能解压
+ *      只在连接的EventLoop中(编解码器)读写,不需要加锁
+ * @date ：2026/10/18 3:50
+ */
+public class ChannelDictionaries {
+
+    public static final AttributeKey<ChannelDictionaries> CHANNEL_DICTIONARIES = AttributeKey.valueOf("cs-rpc.channel-dictionaries");
+
+    private final Set<Integer> sent = new HashSet<>();
+    private final IntObjectHashMap<CompressionDictionary> received = new IntObjectHashMap<>();
+
+    public static ChannelDictionaries get(Channel channel) {
+        ChannelDictionaries dictionaries = channel.attr(CHANNEL_DICTIONARIES).get();
+        if (dictionaries == null) {
+            dictionaries = new ChannelDictionaries();
+            ChannelDictionaries old = channel.attr(CHANNEL_DICTIONARIES).setIfAbsent(dictionaries);
+            if (old != null) {
+                dictionaries = old;
+            }
+        }
+        return dictionaries;
+    }
+
+    /**
+     * 建立连接时把本端所有服务当前的字典发给对端,对端收到第一条压缩消息前就有字典可用
+     */
+    public static void pushAll(ChannelHandlerContext ctx) {
+        List<CompressionDictionary> dictionaries = SingletonFactory.getInstance(DictionaryRegistry.class).all();
+        if (dictionaries.isEmpty()) {
+            return;
+        }
+        for (CompressionDictionary dictionary : dictionaries) {
+            CsMessage csMessage = CsMessage.builder()
+                    .messageType(MessageTypeEnum.DICTIONARY.getCode())
+                    .compress(CompressTypeEnum.NONE.getCode())
+                    .data(dictionary)
+                    .build();
+            ctx.write(csMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+        ctx.flush();
+    }
+
+    /**
+     * 标记字典已经发给对端
+     * @return 之前没有发过返回true
+     */
+    public boolean markSent(int id) {
+        return sent.add(id);
+    }
+
+    /**
+     * 保存对端发来的字典,同一个服务比它早两个版本以上的字典被删除
+     */
+    public void receive(CompressionDictionary dictionary) {
+        received.put(dictionary.getId(), dictionary);
+        Iterator<CompressionDictionary> iterator = received.values().iterator();
+        while (iterator.hasNext()) {
+            CompressionDictionary old = iterator.next();
+            if (old.getServiceKey().equals(dictionary.getServiceKey())
+                    && old.getVersion() <= dictionary.getVersion() - 2) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public CompressionDictionary lookup(int id) {
+        return received.get(id);
+    }
+}
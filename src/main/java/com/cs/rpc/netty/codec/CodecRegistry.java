@@ -0,0 +1,80 @@
+package com.cs.rpc.netty.codec;
+
+import com.cs.rpc.compress.Compress;
+import com.cs.rpc.constant.CompressTypeEnum;
+import com.cs.rpc.constant.SerializationTypeEnum;
+import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.serialize.Serializer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ServiceLoader;
+
+/**
+ * @author ：cs
+ * @description：序列化和压缩的注册表
+ *      启动时通过SPI只加载一次,按协议头中的类型码放入长度256的数组,编解码时直接用下标取,
+ *      不再每条消息都创建ServiceLoader和新的实例(ProtostuffSerializer的schema缓存也得以保留)
+ *      运行时可以再注册新的实现,注册时复制数组后整体替换,读取无锁
+ * @date ：2026/10/17 22:50
+ */
+@Slf4j
+public class CodecRegistry {
+
+    private volatile Serializer[] serializers = new Serializer[256];
+    private volatile Compress[] compresses = new Compress[256];
+
+    public CodecRegistry(){
+        for (Serializer serializer : ServiceLoader.load(Serializer.class)) {
+            SerializationTypeEnum type = SerializationTypeEnum.of(serializer.name());
+            if(type == null){
+                log.warn("序列化实现{}没有对应的类型码,忽略",serializer.getClass().getName());
+                continue;
+            }
+            registerSerializer(type.getCode(), serializer);
+        }
+        for (Compress compress : ServiceLoader.load(Compress.class)) {
+            CompressTypeEnum type = CompressTypeEnum.of(compress.name());
+            if(type == null){
+                log.warn("压缩实现{}没有对应的类型码,忽略",compress.getClass().getName());
+                continue;
+            }
+            registerCompress(type.getCode(), compress);
+        }
+    }
+
+    public Serializer getSerializer(byte codec) {
+        Serializer serializer = serializers[codec & 0xFF];
+        if(serializer == null){
+            throw new CsRpcException("无对应的序列化类型:"+codec);
+        }
+        return serializer;
+    }
+
+    public Compress getCompress(byte compressType) {
+        Compress compress = compresses[compressType & 0xFF];
+        if(compress == null){
+            throw new CsRpcException("无对应的压缩类型:"+compressType);
+        }
+        return compress;
+    }
+
+    /**
+     * 运行时注册序列化实现,相同类型码会覆盖
+     */
+    public synchronized void registerSerializer(byte codec, Serializer serializer) {
+        Serializer[] copy = serializers.clone();
+        copy[codec & 0xFF] = serializer;
+        serializers = copy;
+        log.info("注册序列化实现:{}->{}",codec,serializer.getClass().getName());
+    }
+
+    /**
+     * 运行时注册压缩实现,相同类型码会覆盖
+     */
+    public synchronized void registerCompress(byte compressType, Compress compress) {
+        Compress[] copy = compresses.clone();
+        copy[compressType & 0xFF] = compress;
+        compresses = copy;
+        log.info("注册压缩实现:{}->{}",compressType,compress.getClass().getName());
+    }
+}
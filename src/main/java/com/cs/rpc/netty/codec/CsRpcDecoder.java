@@ -1,20 +1,27 @@
 package com.cs.rpc.netty.codec;
 
 import com.cs.rpc.compress.Compress;
+import com.cs.rpc.compress.CompressionDictionary;
+import com.cs.rpc.compress.DeflateDictCompress;
 import com.cs.rpc.constant.CompressTypeEnum;
 import com.cs.rpc.constant.CsRpcConstants;
 import com.cs.rpc.constant.MessageTypeEnum;
-import com.cs.rpc.constant.SerializationTypeEnum;
 import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.message.CsHandshake;
 import com.cs.rpc.message.CsMessage;
 import com.cs.rpc.message.CsRequest;
 import com.cs.rpc.message.CsResponse;
 import com.cs.rpc.serialize.Serializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
 
-import java.util.ServiceLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author ：cs
@@ -41,12 +48,22 @@ import java.util.ServiceLoader;
  * 4B  magic code（魔法数）   1B version（版本）   4B full length（消息长度）    1B messageType（消息类型）
  * 1B compress（压缩类型） 1B codec（序列化类型）    4B  requestId（请求的Id）
  * body（object类型数据）
+ *
+ * v2协议(版本号为2)的头部是变长的:varint长度、flags、varint的64位requestId、附件,格式见CsRpcEncoder.encodeV2
+ * 解码时按版本号区分,同一个连接上v1和v2的帧都可以解析
  */
 public class CsRpcDecoder extends LengthFieldBasedFrameDecoder {
 
+    private final CodecRegistry codecRegistry = SingletonFactory.getInstance(CodecRegistry.class);
+
+    /**
+     * v2帧自己切分,需要自己检查长度上限
+     */
+    private final int maxFrameLength;
+
     public CsRpcDecoder(){
         //无参构造decoder 给出默认值
-        this(8*1024*1024,5,4,-9,0);
+        this(CsRpcConstants.MAX_FRAME_LENGTH,5,4,-9,0);
     }
 
     /**
@@ -60,133 +77,247 @@ public class CsRpcDecoder extends LengthFieldBasedFrameDecoder {
     public CsRpcDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength, int lengthAdjustment, int initialBytesToStrip) {
         //自定义构造 TCP数据报的解码模式
         super(maxFrameLength, lengthFieldOffset, lengthFieldLength, lengthAdjustment, initialBytesToStrip);
+        this.maxFrameLength = maxFrameLength;
     }
 
     @Override
     protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
-
-
+        //魔数后面的版本号决定帧格式:v1是固定位置的4字节长度,v2是varint长度
+        int versionIndex = in.readerIndex() + CsRpcConstants.MAGIC_NUMBER.length;
+        if(in.writerIndex() <= versionIndex){
+            return null;
+        }
         //继承原有类得到数据
-        Object decode = super.decode(ctx, in);
+        Object decode = in.getByte(versionIndex) == CsRpcConstants.VERSION_2 ? splitV2(in) : super.decode(ctx, in);
 
         //对数据进行解码
         if(decode instanceof ByteBuf){
             //将数据读取到数据缓冲区 将其称为帧
             ByteBuf frame = (ByteBuf)decode;
-            //对帧进行解码
-
-            //获得可读的数据长度
-            int length = frame.readableBytes();
-            //对数据帧进行判断,若可读长度小于自定义的TCP报长度,那么就说明数据帧长度不够
-            // 不满足自己定义的读取长度要求,抛出异常
-            if(length < CsRpcConstants.TOTAL_LENGTH){
-                throw new CsRpcException("帧数据长度过低");
+            //对帧进行解码,帧是从累积缓冲区切出来的,用完要释放
+            try {
+                //返回自己解码后的数据
+                return decodeFrame(ctx, frame);
+            } finally {
+                frame.release();
             }
-            //返回自己解码后的数据
-            return decodeFrame(frame);
         }
         return decode;
     }
 
+    /**
+     * 从累积缓冲区中切出一个完整的v2帧,数据不够时返回null
+     */
+    private ByteBuf splitV2(ByteBuf in) {
+        int start = in.readerIndex();
+        int index = start + CsRpcConstants.MAGIC_NUMBER.length + 1;
+        int end = in.writerIndex();
+        int length = 0;
+        int shift = 0;
+        int b;
+        do {
+            if(index >= end){
+                return null;
+            }
+            if(shift > 21){
+                throw new CorruptedFrameException("帧长度格式错误");
+            }
+            b = in.getByte(index++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        long frameLength = (long) (index - start) + length;
+        if(frameLength > maxFrameLength){
+            throw new TooLongFrameException("帧长度超过上限:" + frameLength);
+        }
+        if(end - start < frameLength){
+            return null;
+        }
+        ByteBuf frame = in.retainedSlice(start, (int) frameLength);
+        in.skipBytes((int) frameLength);
+        return frame;
+    }
+
     /**
      * 对数据进行解码,TCP协议自定义的关键部分
      * @param frame
      * @return
      */
-    private Object decodeFrame(ByteBuf frame) {
+    private Object decodeFrame(ChannelHandlerContext ctx, ByteBuf frame) {
 
         //1.魔法数:本质就是一个标记,标记是自己rpc传来的数据
         //      检测是否是按照我们定义TCP协议传来的数据
         checkMagicCode(frame);
         //2.检测版本
-        checkVersion(frame);
-        //3.数据长度读取
-        int fullLength = frame.readInt();
-        //4.messageType 消息类型获取
-        byte messageType = frame.readByte();
-        //5.序列化类型读取
-        byte codec = frame.readByte();
-        //6.压缩类型读取
-        byte compressType = frame.readByte();
-        //7.请求id读取
-        int requestId = frame.readInt();
-        //8.构建数据流对应的信息对象,方便jvm使用
-        CsMessage csMessage = CsMessage.builder()
-                .messageType(messageType)
-                .codec(codec)
-                .compress(compressType)
-                .requestId(requestId)
-                .build();
+        byte version = frame.readByte();
+        CsMessage csMessage;
+        int dataLength;
+        if(version == CsRpcConstants.VERSION){
+            //获得可读的数据长度
+            //对数据帧进行判断,若可读长度小于自定义的TCP报长度,那么就说明数据帧长度不够
+            // 不满足自己定义的读取长度要求,抛出异常
+            if(frame.readableBytes() < CsRpcConstants.TOTAL_LENGTH - CsRpcConstants.MAGIC_NUMBER.length - 1){
+                throw new CsRpcException("帧数据长度过低");
+            }
+            //3.数据长度读取
+            int fullLength = frame.readInt();
+            //4.messageType 消息类型获取
+            byte messageType = frame.readByte();
+            //5.序列化类型读取
+            byte codec = frame.readByte();
+            //6.压缩类型读取
+            byte compressType = frame.readByte();
+            //7.请求id读取
+            int requestId = frame.readInt();
+            //8.构建数据流对应的信息对象,方便jvm使用
+            csMessage = CsMessage.builder()
+                    .version(version)
+                    .messageType(messageType)
+                    .codec(codec)
+                    .compress(compressType)
+                    .requestId(requestId)
+                    .build();
+            dataLength = fullLength - CsRpcConstants.TOTAL_LENGTH;
+        }else if(version == CsRpcConstants.VERSION_2){
+            //长度在切帧时已经用过
+            Varints.readInt(frame);
+            byte messageType = frame.readByte();
+            byte codec = frame.readByte();
+            byte compressType = frame.readByte();
+            byte flags = frame.readByte();
+            long requestId = Varints.readLong(frame);
+            csMessage = CsMessage.builder()
+                    .version(version)
+                    .messageType(messageType)
+                    .codec(codec)
+                    .compress(compressType)
+                    .flags(flags)
+                    .requestId(requestId)
+                    .attachments(AttachmentCodec.read(frame))
+                    .build();
+            //剩下的都是数据体
+            dataLength = frame.readableBytes();
+        }else {
+            throw new CsRpcException("版本对不上,可能失效version");
+        }
+        byte messageType = csMessage.getMessageType();
+        byte codec = csMessage.getCodec();
+        byte compressType = csMessage.getCompress();
 
         //9.数据体解码
-        //获取数据长度
-        int dataLength =fullLength -  CsRpcConstants.TOTAL_LENGTH;
+        if(messageType == MessageTypeEnum.DICTIONARY.getCode()){
+            //字典帧只在连接内部使用,不往后传
+            ChannelDictionaries.get(ctx.channel()).receive(decodeDictionary(frame, dataLength));
+            return null;
+        }
         if(dataLength > 0){
             //有数据,就去数据提body读取数据
-            byte[] data = new byte[dataLength];
-            //1.将帧中数据体读到data中
-            frame.readBytes(data);
-            //2.根据压缩类型进行解压缩(用最为广泛的gzip)
+            //1.数据体直接使用帧中的切片,不复制
+            ByteBuf body = frame.readSlice(dataLength);
+            //2.根据压缩类型进行解压缩,不压缩时直接使用切片,否则解压到池化的临时buffer中
             //获得具体的压缩类对象(里面实现可以压缩数据的压缩类)
-            Compress compress = loadCompress(compressType);
-            data = compress.decompress(data);
-            //3.根据序列化类型反序列化
-            //用protostuff进行序列化和反序列化
-            //获得具体序列化类对象(序列化:数据流 <-- object 反序列化:数据流-->object)
-            Serializer serializer = loadSerializer(codec);
-            //这里要根据不同的业务进行反序列化
-            //  消费端发送请求   服务端响应数据
-            //  那么就有两种反序列化 将数据流反序列成 request 或者 response
-            //  所以我们要自定义两种类 CsRequest CsResponse
-            //如果信息类型是请求
-            if(MessageTypeEnum.REQUEST.getCode() == messageType){
-                CsRequest csRequest = (CsRequest)serializer.deserialize(data, CsRequest.class);
-                csMessage.setData(csRequest);
+            ByteBuf data = body;
+            if(compressType != CompressTypeEnum.NONE.getCode()){
+                Compress compress = loadCompress(compressType);
+                //解压后的长度在各压缩实现自己的长度头里,由实现按长度头预分配,这里只给一个默认的小buffer
+                data = ctx.alloc().heapBuffer();
+                try {
+                    if(compress instanceof DeflateDictCompress){
+                        ChannelDictionaries dictionaries = ChannelDictionaries.get(ctx.channel());
+                        ((DeflateDictCompress) compress).decompress(body, data, dictionaries::lookup);
+                    }else {
+                        compress.decompress(body, data);
+                    }
+                } catch (RuntimeException e) {
+                    data.release();
+                    throw e;
+                }
             }
-            if(MessageTypeEnum.RESPONSE.getCode() == messageType){
-                CsResponse csResponse = (CsResponse)serializer.deserialize(data, CsResponse.class);
-                csMessage.setData(csResponse);
+            try {
+                decodeBody(csMessage, codec, data);
+            } finally {
+                if(data != body){
+                    data.release();
+                }
             }
-
         }
 
         return csMessage;
 
     }
 
-    private Serializer loadSerializer(byte codec) {
-        //通过SPI实现服务发现
-        //  得到序列化类型的字符串名字
-        String name = SerializationTypeEnum.getName(codec);
-
-        ServiceLoader<Serializer> load = ServiceLoader.load(Serializer.class);
-        for (Serializer serializer : load) {
-            if(serializer.name().equals(name)){
-                return serializer;
-            }
+    private CompressionDictionary decodeDictionary(ByteBuf frame, int dataLength) {
+        if(dataLength < 10){
+            throw new CsRpcException("字典帧长度错误");
+        }
+        int id = frame.readInt();
+        int version = frame.readInt();
+        int keyLength = frame.readUnsignedShort();
+        if(keyLength > dataLength - 10){
+            throw new CsRpcException("字典帧长度错误");
         }
-        throw new CsRpcException("传来的数据解析中,无对应的序列化类型");
+        String serviceKey = frame.readCharSequence(keyLength, StandardCharsets.UTF_8).toString();
+        byte[] data = new byte[dataLength - 10 - keyLength];
+        frame.readBytes(data);
+        return new CompressionDictionary(id, serviceKey, version, data);
     }
 
-    private Compress loadCompress(byte compressType) {
-        //通过SPI实现服务发现
-        //  得到压缩类型的字符串名字
-        String name = CompressTypeEnum.getName(compressType);
-
-        ServiceLoader<Compress> load = ServiceLoader.load(Compress.class);
-        for (Compress compress : load) {
-            if(name.equals(compress.name())){
-                return compress;
+    /**
+     * 数据体反序列化,data的可读部分就是序列化后的数据
+     */
+    private void decodeBody(CsMessage csMessage, byte codec, ByteBuf data) {
+        byte messageType = csMessage.getMessageType();
+        //3.根据序列化类型反序列化
+        //用protostuff进行序列化和反序列化
+        //获得具体序列化类对象(序列化:数据流 <-- object 反序列化:数据流-->object)
+        Serializer serializer = loadSerializer(codec);
+        //这里要根据不同的业务进行反序列化
+        //  消费端发送请求   服务端响应数据
+        //  那么就有两种反序列化 将数据流反序列成 request 或者 response
+        //  所以我们要自定义两种类 CsRequest CsResponse
+        //如果信息类型是请求
+        if(MessageTypeEnum.REQUEST.getCode() == messageType){
+            CsRequest csRequest = (CsRequest)serializer.deserialize(data, CsRequest.class);
+            csMessage.setData(csRequest);
+            //把剩余超时时间换算成本地的deadline,排队等待的时间也会算在内
+            long timeout = timeout(csMessage, csRequest);
+            if(timeout > 0){
+                csMessage.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
             }
         }
-        return null;
+        if(MessageTypeEnum.RESPONSE.getCode() == messageType){
+            CsResponse csResponse = (CsResponse)serializer.deserialize(data, CsResponse.class);
+            csMessage.setData(csResponse);
+        }
+        if(MessageTypeEnum.HANDSHAKE_REQUEST.getCode() == messageType
+                || MessageTypeEnum.HANDSHAKE_RESPONSE.getCode() == messageType){
+            csMessage.setData(serializer.deserialize(data, CsHandshake.class));
+        }
     }
 
-    private void checkVersion(ByteBuf frame) {
-        byte b = frame.readByte();
-        if(b != CsRpcConstants.VERSION){
-            throw new CsRpcException("版本对不上,可能失效version");
+    /**
+     * 剩余超时时间:v2在附件中,v1在请求体中
+     */
+    private static long timeout(CsMessage csMessage, CsRequest csRequest) {
+        Map<String, String> attachments = csMessage.getAttachments();
+        String timeout = attachments == null ? null : attachments.get(AttachmentCodec.TIMEOUT);
+        if(timeout != null){
+            try {
+                return Long.parseLong(timeout);
+            } catch (NumberFormatException e) {
+                throw new CsRpcException("附件timeout格式错误:" + timeout);
+            }
         }
+        return csRequest.getTimeout() == null ? 0 : csRequest.getTimeout();
+    }
+
+    private Serializer loadSerializer(byte codec) {
+        //从注册表中按类型码直接取,不再每条消息都走SPI
+        return codecRegistry.getSerializer(codec);
+    }
+
+    private Compress loadCompress(byte compressType) {
+        return codecRegistry.getCompress(compressType);
     }
 
     private void checkMagicCode(ByteBuf frame) {
@@ -1,18 +1,26 @@
 package com.cs.rpc.netty.codec;
 
 import com.cs.rpc.compress.Compress;
+import com.cs.rpc.compress.CompressPolicy;
+import com.cs.rpc.compress.CompressionDictionary;
+import com.cs.rpc.compress.DeflateDictCompress;
+import com.cs.rpc.compress.DictionaryRegistry;
 import com.cs.rpc.constant.CompressTypeEnum;
 import com.cs.rpc.constant.CsRpcConstants;
-import com.cs.rpc.constant.SerializationTypeEnum;
+import com.cs.rpc.constant.MessageTypeEnum;
 import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.factory.SingletonFactory;
 import com.cs.rpc.message.CsMessage;
+import com.cs.rpc.message.CsRequest;
 import com.cs.rpc.serialize.Serializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
-import java.util.ServiceLoader;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author ：cs
@@ -21,15 +29,42 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class CsRpcEncoder extends MessageToByteEncoder<CsMessage> {
 
+    /**
+     * v2协议长度字段最多4个字节,帧长度小于256MB
+     */
+    private static final int MAX_LENGTH_BYTES = 4;
 
-    private static final AtomicInteger ATOMIC_INTEGER = new AtomicInteger(0);
+    private final CodecRegistry codecRegistry = SingletonFactory.getInstance(CodecRegistry.class);
+
+    private final CompressPolicy compressPolicy = SingletonFactory.getInstance(CompressPolicy.class);
+
+    private final DictionaryRegistry dictionaryRegistry = SingletonFactory.getInstance(DictionaryRegistry.class);
 
     @Override
     protected void encode(ChannelHandlerContext channelHandlerContext,
                           CsMessage csMessage,
                           ByteBuf out) throws Exception {
         //获得message对象,然后编码处理,编码为二进制流
+        if(csMessage.getMessageType() == MessageTypeEnum.DICTIONARY.getCode()){
+            //建立连接时主动推送的字典
+            CompressionDictionary dictionary = (CompressionDictionary) csMessage.getData();
+            ChannelDictionaries.get(channelHandlerContext.channel()).markSent(dictionary.getId());
+            encodeDictionary(dictionary, out);
+            return;
+        }
+
+        int version = csMessage.getVersion() != 0 ? csMessage.getVersion() : ProtocolVersion.get(channelHandlerContext.channel());
+        if(version == CsRpcConstants.VERSION_2){
+            encodeV2(channelHandlerContext, csMessage, out);
+        }else {
+            encodeV1(channelHandlerContext, csMessage, out);
+        }
+    }
 
+    /**
+     * v1协议,16字节固定头
+     */
+    private void encodeV1(ChannelHandlerContext channelHandlerContext, CsMessage csMessage, ByteBuf out) {
         //对以下信息进行编码
         // 4B  magic number（魔法数）
         // 1B version（版本）
@@ -46,23 +81,23 @@ public class CsRpcEncoder extends MessageToByteEncoder<CsMessage> {
         out.writeByte(csMessage.getMessageType());
         //序列化类型这里必须要先序列化后再压缩
         out.writeByte(csMessage.getCodec());
+        //压缩类型在序列化后由压缩策略决定,先记下位置
+        int compressIndex = out.writerIndex();
         out.writeByte(csMessage.getCompress());
-        out.writeInt(ATOMIC_INTEGER.getAndIncrement());
+        //requestId由连接分配,响应原样带回,用来关联请求和响应;本端分配的id不超过int范围
+        out.writeInt((int) csMessage.getRequestId());
 
-        //对数据进行处理
-        Object data = csMessage.getData();
         //header长度为16
         int fullLength = CsRpcConstants.HEAD_LENGTH;
-        //先序列化
-        Serializer serializer = loadSerializer(csMessage.getCodec());
-        byte[] body = serializer.serialize(data);
-        //再压缩数据
-        Compress compress = loadCompress(csMessage.getCompress());
-        body = compress.compress(body);
+        int bodyStart = out.writerIndex();
+        //v1协议头没有空位,剩余超时时间放在请求体中
+        if(csMessage.getData() instanceof CsRequest){
+            long remaining = remainingMillis(csMessage);
+            ((CsRequest) csMessage.getData()).setTimeout(remaining > 0 ? (int) remaining : null);
+        }
+        encodeBody(channelHandlerContext, csMessage, out, compressIndex);
         //数据流总长度
-        fullLength += body.length;
-        //写入处理好的数据
-        out.writeBytes(body);
+        fullLength += out.writerIndex() - bodyStart;
 
         //将数据长度写到tcp协议上数据格式,将长度填到空的位置
 
@@ -77,27 +112,160 @@ public class CsRpcEncoder extends MessageToByteEncoder<CsMessage> {
         out.writeInt(fullLength);
         //将坐标移动到流最后一位
         out.writerIndex(writerIndex);
+    }
 
+    /**
+     * v2协议
+     *   4B magic | 1B version=2 | varint length(之后的字节数) |
+     *   1B messageType | 1B codec | 1B compress | 1B flags | varint requestId | attachments | body
+ *   请求的剩余超时时间在附件timeout中
+     * 长度在最前面但要写完才知道,先按最大4字节预留,写完后长度写在预留位置的末尾,
+     * 魔数和版本往后挪到长度前面,再把读索引移到帧的开头,只移动5个字节,不移动数据体
+     */
+    private void encodeV2(ChannelHandlerContext channelHandlerContext, CsMessage csMessage, ByteBuf out) {
+        int frameStart = out.writerIndex();
+        out.writeBytes(CsRpcConstants.MAGIC_NUMBER);
+        out.writeByte(CsRpcConstants.VERSION_2);
+        int lengthIndex = out.writerIndex();
+        out.writerIndex(lengthIndex + MAX_LENGTH_BYTES);
+        int contentStart = out.writerIndex();
+        out.writeByte(csMessage.getMessageType());
+        out.writeByte(csMessage.getCodec());
+        int compressIndex = out.writerIndex();
+        out.writeByte(csMessage.getCompress());
+        out.writeByte(csMessage.getFlags());
+        Varints.writeLong(out, csMessage.getRequestId());
+        AttachmentCodec.write(out, attachments(csMessage));
+        encodeBody(channelHandlerContext, csMessage, out, compressIndex);
+
+        int length = out.writerIndex() - contentStart;
+        int lengthBytes = Varints.size(length);
+        if(lengthBytes > MAX_LENGTH_BYTES){
+            throw new CsRpcException("数据过长:" + length);
+        }
+        if(out.readerIndex() == frameStart){
+            int newStart = contentStart - lengthBytes - CsRpcConstants.MAGIC_NUMBER.length - 1;
+            Varints.setInt(out, contentStart - lengthBytes, length);
+            out.setBytes(newStart, CsRpcConstants.MAGIC_NUMBER);
+            out.setByte(newStart + CsRpcConstants.MAGIC_NUMBER.length, CsRpcConstants.VERSION_2);
+            out.readerIndex(newStart);
+        }else {
+            //out前面还有别的数据,不能移动读索引,长度按4字节补位写入
+            Varints.setPaddedInt(out, lengthIndex, length, MAX_LENGTH_BYTES);
+        }
     }
-    private Serializer loadSerializer(byte codecType) {
-        String serializerName = SerializationTypeEnum.getName(codecType);
-        ServiceLoader<Serializer> load = ServiceLoader.load(Serializer.class);
-        for (Serializer serializer : load) {
-            if (serializer.name().equals(serializerName)) {
-                return serializer;
-            }
+
+    /**
+     * v2请求的剩余超时时间作为附件timeout发送,不再放在请求体中
+     * 不修改消息原有的附件,同一个消息可能在别的连接上重发
+     */
+    private static Map<String, String> attachments(CsMessage csMessage) {
+        Map<String, String> attachments = csMessage.getAttachments();
+        if(!(csMessage.getData() instanceof CsRequest)){
+            return attachments;
+        }
+        ((CsRequest) csMessage.getData()).setTimeout(null);
+        long remaining = remainingMillis(csMessage);
+        if(remaining <= 0){
+            return attachments;
         }
-        throw new CsRpcException("无对应的序列化类型");
+        Map<String, String> withTimeout = attachments == null ? new HashMap<>(2) : new HashMap<>(attachments);
+        withTimeout.put(AttachmentCodec.TIMEOUT, Long.toString(remaining));
+        return withTimeout;
     }
 
-    private Compress loadCompress(byte compressType) {
-        String compressName = CompressTypeEnum.getName(compressType);
-        ServiceLoader<Compress> load = ServiceLoader.load(Compress.class);
-        for (Compress compress : load) {
-            if (compress.name().equals(compressName)) {
-                return compress;
+    /**
+     * 发送时剩余的超时时间(毫秒),没有超时返回0,已经超时也至少为1
+     */
+    private static long remainingMillis(CsMessage csMessage) {
+        if(csMessage.getDeadline() <= 0){
+            return 0;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(csMessage.getDeadline() - System.nanoTime());
+        return Math.min(Integer.MAX_VALUE, Math.max(1, remaining));
+    }
+
+    /**
+     * 数据体:先序列化再压缩,都直接在ByteBuf上进行,不产生中间的字节数组
+     * @param compressIndex 协议头中压缩类型的位置,决定不压缩时改为NONE
+     */
+    private void encodeBody(ChannelHandlerContext channelHandlerContext, CsMessage csMessage, ByteBuf out, int compressIndex) {
+        //对数据进行处理
+        Object data = csMessage.getData();
+        Serializer serializer = loadSerializer(csMessage.getCodec());
+        int bodyStart = out.writerIndex();
+        if(csMessage.getCompress() == CompressTypeEnum.NONE.getCode()){
+            //不压缩:直接序列化到out中
+            serializer.serialize(data, out);
+        }else {
+            //需要压缩:先序列化到池化的临时buffer中,按大小和方法的压缩率决定是否压缩
+            Compress compress = loadCompress(csMessage.getCompress());
+            ByteBuf serialized = channelHandlerContext.alloc().heapBuffer();
+            try {
+                serializer.serialize(data, serialized);
+                int rawLength = serialized.readableBytes();
+                if(compressPolicy.shouldCompress(csMessage.getMethodKey(), rawLength)){
+                    if(compress instanceof DeflateDictCompress){
+                        compressWithDictionary(channelHandlerContext, csMessage, (DeflateDictCompress) compress, serialized, out);
+                    }else {
+                        compress.compress(serialized, out);
+                    }
+                    compressPolicy.record(csMessage.getMethodKey(), rawLength, out.writerIndex() - bodyStart);
+                }else {
+                    //不划算,原样写入并把协议头中的压缩类型改为不压缩
+                    out.writeBytes(serialized);
+                    out.setByte(compressIndex, CompressTypeEnum.NONE.getCode());
+                }
+            } finally {
+                serialized.release();
             }
         }
-        throw new CsRpcException("无对应的压缩类型");
+    }
+
+    /**
+     * 用服务当前的字典压缩,字典还没有发给对端时先单独写一个字典帧,保证对端解压前已经收到字典
+     */
+    private void compressWithDictionary(ChannelHandlerContext ctx, CsMessage csMessage,
+                                        DeflateDictCompress compress, ByteBuf serialized, ByteBuf out) {
+        CompressionDictionary dictionary = dictionaryRegistry.sampleAndGet(csMessage.getServiceKey(), serialized);
+        if(dictionary != null && ChannelDictionaries.get(ctx.channel()).markSent(dictionary.getId())){
+            //out在encode返回后才写出,这里先写出的字典帧一定在消息前面
+            ByteBuf frame = ctx.alloc().buffer();
+            encodeDictionary(dictionary, frame);
+            ctx.write(frame);
+        }
+        compress.compress(serialized, out, dictionary);
+    }
+
+    /**
+     * 字典帧,不序列化不压缩,requestId为0
+     * body: [4B 字典id][4B 版本][2B 服务名长度][服务名utf8][字典内容]
+     */
+    static void encodeDictionary(CompressionDictionary dictionary, ByteBuf out) {
+        byte[] serviceKey = dictionary.getServiceKey().getBytes(StandardCharsets.UTF_8);
+        byte[] data = dictionary.getData();
+        int fullLength = CsRpcConstants.HEAD_LENGTH + 10 + serviceKey.length + data.length;
+        out.ensureWritable(fullLength);
+        out.writeBytes(CsRpcConstants.MAGIC_NUMBER);
+        out.writeByte(CsRpcConstants.VERSION);
+        out.writeInt(fullLength);
+        out.writeByte(MessageTypeEnum.DICTIONARY.getCode());
+        out.writeByte(0);
+        out.writeByte(CompressTypeEnum.NONE.getCode());
+        out.writeInt(0);
+        out.writeInt(dictionary.getId());
+        out.writeInt(dictionary.getVersion());
+        out.writeShort(serviceKey.length);
+        out.writeBytes(serviceKey);
+        out.writeBytes(data);
+    }
+
+    private Serializer loadSerializer(byte codecType) {
+        //从注册表中按类型码直接取,不再每条消息都走SPI
+        return codecRegistry.getSerializer(codecType);
+    }
+
+    private Compress loadCompress(byte compressType) {
+        return codecRegistry.getCompress(compressType);
     }
 }
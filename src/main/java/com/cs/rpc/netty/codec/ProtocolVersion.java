@@ -0,0 +1,34 @@
+package com.cs.rpc.netty.codec;
+
+import com.cs.rpc.constant.CsRpcConstants;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+/**
+ * @author ：cs
+ * @description：连接上协商好的协议版本,挂在channel的属性上
+ *      连接建立时按v1发送,握手时双方交换各自支持的最高版本,取较小的一个;
+ *      老版本的对端不认识握手,一直使用v1,滚动升级期间新老版本可以互相调用
+ *      响应使用和请求相同的版本
+ * @date ：2026/10/18 8:20
+ */
+public final class ProtocolVersion {
+
+    public static final AttributeKey<Integer> PROTOCOL_VERSION = AttributeKey.valueOf("cs-rpc.protocol-version");
+
+    private ProtocolVersion() {
+    }
+
+    public static int get(Channel channel) {
+        Integer version = channel.attr(PROTOCOL_VERSION).get();
+        return version == null ? CsRpcConstants.VERSION : version;
+    }
+
+    /**
+     * @param peerVersion 对端支持的最高版本,null表示对端是老版本
+     */
+    public static void negotiate(Channel channel, Integer peerVersion) {
+        int version = peerVersion == null ? CsRpcConstants.VERSION : Math.min(peerVersion, CsRpcConstants.MAX_VERSION);
+        channel.attr(PROTOCOL_VERSION).set(Math.max(version, CsRpcConstants.VERSION));
+    }
+}
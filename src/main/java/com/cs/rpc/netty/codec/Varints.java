@@ -0,0 +1,100 @@
+package com.cs.rpc.netty.codec;
+
+import com.cs.rpc.exception.CsRpcException;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * @author ：cs
+ * @description：无符号varint编解码(与protobuf相同):每字节低7位是数据,最高位为1表示后面还有字节
+ *      小于128的数只占1个字节,v2协议的长度、requestId、附件都用它编码
+ * @date ：2026/10/18 8:00
+ */
+public final class Varints {
+
+    private Varints() {
+    }
+
+    public static int size(int value) {
+        if ((value & ~0x7F) == 0) {
+            return 1;
+        }
+        if ((value & ~0x3FFF) == 0) {
+            return 2;
+        }
+        if ((value & ~0x1FFFFF) == 0) {
+            return 3;
+        }
+        if ((value & ~0xFFFFFFF) == 0) {
+            return 4;
+        }
+        return 5;
+    }
+
+    public static void writeInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static void writeLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte(((int) value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * 在index处写入,不改变写索引
+     * @return 写入的字节数
+     */
+    public static int setInt(ByteBuf out, int index, int value) {
+        int start = index;
+        while ((value & ~0x7F) != 0) {
+            out.setByte(index++, (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.setByte(index++, value);
+        return index - start;
+    }
+
+    /**
+     * 在index处写入固定width个字节(不足时用0x80补位,解码结果相同),不改变写索引
+     */
+    public static void setPaddedInt(ByteBuf out, int index, int value, int width) {
+        for (int i = 0; i < width - 1; i++) {
+            out.setByte(index + i, (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        if (value > 0x7F) {
+            throw new CsRpcException("varint超过" + width + "个字节");
+        }
+        out.setByte(index + width - 1, value);
+    }
+
+    public static int readInt(ByteBuf in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new CsRpcException("varint格式错误");
+    }
+
+    public static long readLong(ByteBuf in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new CsRpcException("varint格式错误");
+    }
+}
@@ -1,35 +1,78 @@
 package com.cs.rpc.netty.handler;
 
+import com.cs.rpc.compress.CompressPolicy;
+import com.cs.rpc.constant.CompressTypeEnum;
 import com.cs.rpc.constant.CsRpcConstants;
 import com.cs.rpc.constant.MessageTypeEnum;
+import com.cs.rpc.constant.ResponseCodeEnum;
 import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.message.CsHandshake;
 import com.cs.rpc.message.CsMessage;
 import com.cs.rpc.message.CsRequest;
 import com.cs.rpc.message.CsResponse;
+import com.cs.rpc.metrics.CsRpcMetrics;
+import com.cs.rpc.netty.codec.ChannelDictionaries;
+import com.cs.rpc.netty.codec.ProtocolVersion;
+import com.cs.rpc.server.CsServiceProvider;
+import com.cs.rpc.server.ServiceMethod;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelInboundHandler;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * @author ：cs
  * @description：消息处理类,对线程池的处理,继承通道处理适配器
+ *      处理器运行在IO线程上,只负责分发;请求交给业务线程池执行,连接保持打开,
+ *      同一连接上可以同时有多个请求在处理,响应按完成的先后写回,客户端用协议头中的requestId关联
  * @date ：2022/11/19 0:14
  */
 
 @Slf4j
 public class CsNettyServerHandler extends ChannelInboundHandlerAdapter {
     private CsRequestHandler csRequestHandler;
+    /**
+     * 调用方已经超时放弃,被跳过的请求数
+     */
+    private final LongAdder expiredCounter;
+    /**
+     * 线程池已满被拒绝的请求数
+     */
+    private final LongAdder rejectedCounter;
+    /**
+     * 业务线程池,执行服务方法
+     */
+    private final Executor businessExecutor;
+
+    private final CompressPolicy compressPolicy;
+
+    private final CsServiceProvider csServiceProvider;
 
-    public CsNettyServerHandler(){
+    public CsNettyServerHandler(Executor businessExecutor){
+        this.businessExecutor = businessExecutor;
         csRequestHandler = SingletonFactory.getInstance(CsRequestHandler.class);
+        CsRpcMetrics metrics = SingletonFactory.getInstance(CsRpcMetrics.class);
+        expiredCounter = metrics.counter("server.request.expired");
+        rejectedCounter = metrics.counter("server.request.rejected");
+        compressPolicy = SingletonFactory.getInstance(CompressPolicy.class);
+        csServiceProvider = SingletonFactory.getInstance(CsServiceProvider.class);
     }
 
 
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        //交换压缩字典
+        ChannelDictionaries.pushAll(ctx);
+        super.channelActive(ctx);
+    }
+
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         //触发心跳检测后执行此函数
@@ -38,8 +81,9 @@ public class CsNettyServerHandler extends ChannelInboundHandlerAdapter {
             IdleStateEvent stateEvent = (IdleStateEvent) evt;
             IdleState state = stateEvent.state();
             if(state == IdleState.READER_IDLE){
-                //事件的状态是 未读状态
-                log.info("收到心跳检测,超时未读取....");
+                //事件的状态是 未读状态,客户端3s一次心跳,长时间什么都没读到说明对端已经失联,关闭连接
+                log.info("收到心跳检测,超时未读取,关闭连接:{}",ctx.channel().remoteAddress());
+                ctx.close();
 
             }else {
                 super.userEventTriggered(ctx,evt);
@@ -69,26 +113,28 @@ public class CsNettyServerHandler extends ChannelInboundHandlerAdapter {
                     //返回心跳包
                     csMessage.setData(CsRpcConstants.PONG);
                     csMessage.setMessageType(MessageTypeEnum.HEARTBEAT_PONG.getCode());
+                    ctx.writeAndFlush(csMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                }
+                if(messageType == MessageTypeEnum.HANDSHAKE_REQUEST.getCode()){
+                    //握手:返回方法表,之后客户端的请求只带方法id;并按双方支持的最高版本确定协议版本
+                    CsHandshake handshake = (CsHandshake) csMessage.getData();
+                    ProtocolVersion.negotiate(ctx.channel(), handshake == null ? null : handshake.getVersion());
+                    csMessage.setMessageType(MessageTypeEnum.HANDSHAKE_RESPONSE.getCode());
+                    csMessage.setCompress(CompressTypeEnum.NONE.getCode());
+                    csMessage.setData(new CsHandshake(csServiceProvider.getMethodIds()));
+                    ctx.writeAndFlush(csMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
                 }
                 if(messageType == MessageTypeEnum.REQUEST.getCode()) {
-                    //如果是请求,那么就处理请求业务
-                    CsRequest csRequest = (CsRequest) csMessage.getData();
-                    //处理业务,使用反射找到方法 发起调用 获取代理类执行后的结果
-                    Object result = csRequestHandler.handler(csRequest);
-                    //给csMessage设置成response类型
-                    csMessage.setMessageType(MessageTypeEnum.RESPONSE.getCode());
-                    if (ctx.channel().isActive() && ctx.channel().isWritable()) {
-                        //如果通道保活 或 通道可写 将数据返回
-                        //创建返回response,将数据结果放入Message
-                        CsResponse csResponse = CsResponse.success(result, csRequest.getRequestId());
-                        //将response放入要返回的信息对象
-                        csMessage.setData(csResponse);
-                        log.info("返回调用服务后得到的结果:",csMessage);
-                    } else {
-                        csMessage.setData(CsResponse.fail("net fail,channel error"));
+                    //如果是请求,那么就交给业务线程池处理,IO线程继续读取同一连接上的后续请求
+                    try {
+                        businessExecutor.execute(() -> handleRequest(ctx, csMessage));
+                    } catch (RejectedExecutionException e) {
+                        rejectedCounter.increment();
+                        log.warn("业务线程池已满,拒绝请求");
+                        if(!isOneway(csMessage)){
+                            writeResponse(ctx, csMessage, CsResponse.fail(ResponseCodeEnum.SERVER_BUSY, "server busy"));
+                        }
                     }
-                    //将信息体写回到channel中,并添加一个监听器,保证数据要全部写完到通道中
-                    ctx.writeAndFlush(csMessage).addListener(ChannelFutureListener.CLOSE);
                 }
             }
         }catch (Exception e){
@@ -98,4 +144,62 @@ public class CsNettyServerHandler extends ChannelInboundHandlerAdapter {
             ReferenceCountUtil.release(msg);
         }
     }
+
+    /**
+     * 在业务线程中执行请求,完成后立即写回响应
+     */
+    private void handleRequest(ChannelHandlerContext ctx, CsMessage csMessage) {
+        CsRequest csRequest = (CsRequest) csMessage.getData();
+        ServiceMethod serviceMethod;
+        try {
+            //请求可能只带方法id,先找到服务方法
+            serviceMethod = csRequestHandler.resolve(csRequest);
+        } catch (Exception e) {
+            log.warn("处理请求出错:{}",e.getMessage());
+            if(!isOneway(csMessage)){
+                writeResponse(ctx, csMessage, CsResponse.fail(ResponseCodeEnum.NOT_FOUND, e.getMessage()));
+            }
+            return;
+        }
+        csMessage.setMethodKey(serviceMethod.getMethodKey());
+        csMessage.setServiceKey(serviceMethod.getServiceKey());
+        //调用方已经超时放弃了,不再处理
+        if(csMessage.getDeadline() > 0 && System.nanoTime() - csMessage.getDeadline() > 0){
+            expiredCounter.increment();
+            log.info("请求已超时,跳过处理:{}",serviceMethod.getMethodKey());
+            return;
+        }
+        //处理业务,调用服务方法 获取执行后的结果,失败时是带响应码的失败响应
+        CsResponse<Object> csResponse = csRequestHandler.handler(serviceMethod, csRequest);
+        //单向调用不返回响应,失败已经在handler中记录日志
+        if(isOneway(csMessage)){
+            return;
+        }
+        writeResponse(ctx, csMessage, csResponse);
+    }
+
+    private static boolean isOneway(CsMessage csMessage) {
+        return (csMessage.getFlags() & CsRpcConstants.FLAG_ONEWAY) != 0;
+    }
+
+    /**
+     * 写回响应,协议头中的requestId保持不变,连接不关闭
+     * 从业务线程调用时,netty会把写操作提交到连接的IO线程中执行
+     */
+    private void writeResponse(ChannelHandlerContext ctx, CsMessage csMessage, CsResponse<Object> csResponse) {
+        if (!ctx.channel().isActive()) {
+            log.info("连接已关闭,丢弃响应:{}",csMessage.getRequestId());
+            return;
+        }
+        //给csMessage设置成response类型
+        csMessage.setMessageType(MessageTypeEnum.RESPONSE.getCode());
+        //请求的附件(超时时间等)只对请求有意义,不带回
+        csMessage.setAttachments(null);
+        //请求可能因为太小没有压缩,响应按服务端自己的压缩策略决定
+        csMessage.setCompress(compressPolicy.getCompressType());
+        //将response放入要返回的信息对象
+        csMessage.setData(csResponse);
+        //写失败说明连接已经不可用,关闭连接
+        ctx.writeAndFlush(csMessage).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
 }
@@ -1,17 +1,19 @@
 package com.cs.rpc.netty.handler;
 
+import com.cs.rpc.constant.ResponseCodeEnum;
 import com.cs.rpc.exception.CsRpcException;
 import com.cs.rpc.factory.SingletonFactory;
 import com.cs.rpc.message.CsRequest;
+import com.cs.rpc.message.CsResponse;
 import com.cs.rpc.server.CsServiceProvider;
+import com.cs.rpc.server.ServiceMethod;
 import lombok.extern.slf4j.Slf4j;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 /**
  * @author ：cs
  * @description：请求处理
+ *      服务方法在发布时已经解析好并生成了调用句柄,请求按方法id(或方法签名)直接找到后调用;
+ *      失败时返回带响应码的失败响应,不再吞掉异常返回null
  * @date ：2022/11/21 15:57
  */
 @Slf4j
@@ -22,29 +24,38 @@ public class CsRequestHandler {
         csServiceProvider = SingletonFactory.getInstance(CsServiceProvider.class);
     }
 
-    public Object handler(CsRequest csRequest) {
-        //请求处理器,去处理数据
-
-        //从请求中获得请求的接口和版本
-        String interfaceName = csRequest.getInterfaceName();
-        String version = csRequest.getVersion();
-
+    /**
+     * 找到请求对应的服务方法
+     */
+    public ServiceMethod resolve(CsRequest csRequest) {
         //验证此请求是否已经注册上
-        Object service = csServiceProvider.getService(interfaceName + version);
-        if(service == null){
+        ServiceMethod serviceMethod = csServiceProvider.getServiceMethod(csRequest);
+        if(serviceMethod == null){
             throw new CsRpcException("没有找到可用服务提供方");
         }
+        return serviceMethod;
+    }
 
+    /**
+     * 调用服务方法
+     * @return 成功响应;参数不匹配返回400,服务方法抛出异常返回500并带上异常类名,虚拟机错误直接抛出
+     */
+    public CsResponse<Object> handler(ServiceMethod serviceMethod, CsRequest csRequest) {
+        Object[] parameters = csRequest.getParameters();
+        String error = serviceMethod.checkArguments(parameters);
+        if(error != null){
+            log.warn(error);
+            return CsResponse.fail(ResponseCodeEnum.BAD_REQUEST, error);
+        }
         try{
-            //获得TCP请求中的调用的方法和参数
-            Method method = service.getClass().getMethod(csRequest.getMethodName(), csRequest.getParamTypes());
-
-            Object invoke = method.invoke(service, csRequest.getParameters());
-            log.info(invoke+":请求处理得到一个invoke.传入的请求中的方法"+csRequest.getMethodName()+",参数为"+csRequest.getParamTypes());
-            return invoke;
-        }catch (InvocationTargetException | NoSuchMethodException | IllegalAccessException e) {
-            log.info("服务提供方,方法调用提供问题:",e);
+            Object result = serviceMethod.invoke(parameters);
+            return CsResponse.success(result, csRequest.getRequestId());
+        }catch (VirtualMachineError e) {
+            //内存溢出、栈溢出等虚拟机错误不能当作普通的失败响应,交给业务线程处理
+            throw e;
+        }catch (Throwable e) {
+            log.warn("服务方法{}抛出异常:", serviceMethod.getMethodKey(), e);
+            return CsResponse.fail(e);
         }
-        return null;
     }
 }
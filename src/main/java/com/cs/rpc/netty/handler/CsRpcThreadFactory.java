@@ -1,6 +1,8 @@
 package com.cs.rpc.netty.handler;
 
 import com.cs.rpc.server.CsServiceProvider;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
 
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -33,8 +35,14 @@ public class CsRpcThreadFactory implements ThreadFactory {
     //创建的线程以“N-thread-M”命名，N是该工厂的序号，M是线程号
     public Thread newThread(Runnable runnable) {
         //创建线程,每次创建完一个线程,线程数目自动加一
-        Thread t = new Thread(threadGroup, runnable,
-                namePrefix + threadNumber.getAndIncrement(), 0);
+        //使用FastThreadLocalThread,线程结束时清理FastThreadLocal,按线程缓存的资源(如zlib的native内存)随之立即释放
+        Thread t = new FastThreadLocalThread(threadGroup, () -> {
+            try {
+                runnable.run();
+            } finally {
+                FastThreadLocal.removeAll();
+            }
+        }, namePrefix + threadNumber.getAndIncrement());
         t.setDaemon(true);
         t.setPriority(Thread.NORM_PRIORITY);
         return t;
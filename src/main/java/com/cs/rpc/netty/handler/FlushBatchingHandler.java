@@ -0,0 +1,106 @@
+package com.cs.rpc.netty.handler;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.metrics.CsRpcMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.flush.FlushConsolidationHandler;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author ：cs
+ * @description：合并flush的处理器(可选),放在编码器之前(靠近head),看到的是编码后的ByteBuf
+ *      合并逻辑直接使用netty的FlushConsolidationHandler:
+ *      1.正在读取时,推迟到channelReadComplete
+ *      2.否则推迟到当前EventLoop中已提交的任务之后(同一轮里其他线程提交的写一起发出)
+ *      3.积压的flush次数达到maxMessages时立即flush
+ *      在此基础上只增加了字节阈值:自上次flush以来写入的字节数达到maxBytes时立即flush,避免大消息堆积在缓冲区
+ *      一次真正的flush对应一次write系统调用,统计 {prefix}.flush.requested / {prefix}.flush.actual 即可得到每个请求的系统调用数
+ * @date ：2026/10/17 22:10
+ */
+public class FlushBatchingHandler extends FlushConsolidationHandler {
+
+    private final int maxBytes;
+
+    private final LongAdder requestedCounter;
+    private final FlushTracker flushTracker;
+
+    /**
+     * @param prefix 指标名前缀,client或server
+     * @param maxMessages 积压多少条消息后立即flush
+     * @param maxBytes 积压多少字节后立即flush
+     */
+    public FlushBatchingHandler(String prefix, int maxMessages, int maxBytes) {
+        super(Math.max(1, maxMessages), true);
+        this.maxBytes = Math.max(1, maxBytes);
+        CsRpcMetrics metrics = SingletonFactory.getInstance(CsRpcMetrics.class);
+        this.requestedCounter = metrics.counter(prefix + ".flush.requested");
+        this.flushTracker = new FlushTracker(metrics.counter(prefix + ".flush.actual"));
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        super.handlerAdded(ctx);
+        //父类推迟执行的flush直接发往下一个处理器,这里拦截不到,所以在靠近head的一侧统计字节数和真正发出的flush
+        ctx.pipeline().addBefore(ctx.name(), ctx.name() + ".tracker", flushTracker);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        if (ctx.pipeline().context(flushTracker) != null) {
+            ctx.pipeline().remove(flushTracker);
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        ctx.write(msg, promise);
+        if (flushTracker.pendingBytes >= maxBytes) {
+            //字节数达到阈值,不等父类合并直接flush,父类之后的flush没有数据可写,不会产生系统调用
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        requestedCounter.increment();
+        super.flush(ctx);
+    }
+
+    /**
+     * 记录自上次flush以来写入的字节数,并统计有数据要写的flush(即真正的write系统调用)
+     */
+    private static final class FlushTracker extends ChannelOutboundHandlerAdapter {
+
+        private final LongAdder actualCounter;
+        private boolean pendingWrites;
+        private long pendingBytes;
+
+        private FlushTracker(LongAdder actualCounter) {
+            this.actualCounter = actualCounter;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            pendingWrites = true;
+            if (msg instanceof ByteBuf) {
+                pendingBytes += ((ByteBuf) msg).readableBytes();
+            }
+            ctx.write(msg, promise);
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            if (pendingWrites) {
+                pendingWrites = false;
+                pendingBytes = 0;
+                actualCounter.increment();
+            }
+            ctx.flush();
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package com.cs.rpc.netty.handler;
 
 
+import com.cs.rpc.config.CsRpcConfig;
 import com.cs.rpc.netty.codec.CsRpcDecoder;
 import com.cs.rpc.netty.codec.CsRpcEncoder;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.timeout.IdleStateHandler;
-import io.netty.util.concurrent.DefaultEventExecutorGroup;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -17,11 +18,14 @@ import java.util.concurrent.TimeUnit;
  */
 public class NettyServerInitiator extends ChannelInitializer<SocketChannel> {
 
-    private DefaultEventExecutorGroup eventExecutors;
+    private Executor businessExecutor;
 
-    public NettyServerInitiator(DefaultEventExecutorGroup eventExecutors){
+    private CsRpcConfig csRpcConfig;
+
+    public NettyServerInitiator(Executor businessExecutor, CsRpcConfig csRpcConfig){
         //初始化线程池
-        this.eventExecutors = eventExecutors;
+        this.businessExecutor = businessExecutor;
+        this.csRpcConfig = csRpcConfig;
     }
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
@@ -31,11 +35,17 @@ public class NettyServerInitiator extends ChannelInitializer<SocketChannel> {
 
         //添加心跳检测处理器: 10s没有读操作,那么触发心跳检测事件(需要我们去实现)
         ch.pipeline().addLast(new IdleStateHandler(10,0,0, TimeUnit.SECONDS));
+        //flush合并(可选):放在编码器之前,业务线程写回的响应在同一轮EventLoop中合并成一次系统调用
+        if (csRpcConfig.isFlushBatching()) {
+            ch.pipeline().addLast("flushBatching",
+                    new FlushBatchingHandler("server", csRpcConfig.getFlushMaxMessages(), csRpcConfig.getFlushMaxBytes()));
+        }
         //解码器 接收到数据流后，按照自定义的协议进行解析(负责将消息从字节或其他序列形式转成指定的消息对象)
         ch.pipeline ().addLast ( "decoder",new CsRpcDecoder() );
         //编码器 发送数据的时候，按照自定义的协议进行构建并发送(将消息对象转成字节或其他序列形式在网络上传输)
         ch.pipeline ().addLast ( "encoder",new CsRpcEncoder());
-        //消息处理器，线程池处理
-        ch.pipeline ().addLast ( eventExecutors,"handler",new CsNettyServerHandler());
+        //消息处理器，运行在IO线程上,请求交给业务线程池处理
+        //  (不再绑定DefaultEventExecutorGroup,那样一个连接固定在一个线程上,请求只能串行处理)
+        ch.pipeline ().addLast ( "handler",new CsNettyServerHandler(businessExecutor));
     }
 }
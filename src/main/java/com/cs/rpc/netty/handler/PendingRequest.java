@@ -0,0 +1,90 @@
+package com.cs.rpc.netty.handler;
+
+import com.cs.rpc.exception.CsRpcTimeoutException;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.message.CsResponse;
+import com.cs.rpc.metrics.CsRpcMetrics;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author ：cs
+ * @description：一个等待响应的请求
+ *      从发起调用时开始计时(包含建连和排队时间),超时后立即让请求失败,
+ *      如果已经登记到某个连接的UnprocessedRequests中,再到该连接的EventLoop中移除
+ * @date ：2026/10/17 20:40
+ */
+public class PendingRequest implements TimerTask {
+
+    /**
+     * 超时检测的时间轮,精度10ms,加入和取消都是O(1)
+     */
+    private static final HashedWheelTimer TIMEOUT_TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("cs-rpc-timeout", true), 10, TimeUnit.MILLISECONDS);
+
+    private static final LongAdder TIMEOUT_COUNTER = SingletonFactory.getInstance(CsRpcMetrics.class).counter("client.request.timeout");
+
+    private final CompletableFuture<CsResponse<Object>> future;
+    private final long timeoutMillis;
+    private volatile Timeout timeout;
+    /**
+     * 登记后才有值,只在连接的EventLoop中写入
+     */
+    private volatile UnprocessedRequests owner;
+    private volatile int requestId;
+
+    public PendingRequest(CompletableFuture<CsResponse<Object>> future, long timeoutMillis) {
+        this.future = future;
+        this.timeoutMillis = timeoutMillis;
+        if (timeoutMillis > 0) {
+            this.timeout = TIMEOUT_TIMER.newTimeout(this, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+        if (future.completeExceptionally(new CsRpcTimeoutException("请求超时:" + timeoutMillis + "ms"))) {
+            TIMEOUT_COUNTER.increment();
+            UnprocessedRequests unprocessedRequests = owner;
+            if (unprocessedRequests != null) {
+                unprocessedRequests.removeLater(requestId, this);
+            }
+        }
+    }
+
+    void registered(UnprocessedRequests owner, int requestId) {
+        this.requestId = requestId;
+        this.owner = owner;
+    }
+
+    void complete(CsResponse<Object> response) {
+        cancelTimeout();
+        future.complete(response);
+    }
+
+    void fail(Throwable cause) {
+        cancelTimeout();
+        future.completeExceptionally(cause);
+    }
+
+    private void cancelTimeout() {
+        Timeout t = timeout;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    public CompletableFuture<CsResponse<Object>> getFuture() {
+        return future;
+    }
+}
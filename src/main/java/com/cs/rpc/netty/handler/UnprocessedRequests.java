@@ -2,35 +2,116 @@ package com.cs.rpc.netty.handler;
 
 
 import com.cs.rpc.message.CsResponse;
-
-
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.collection.IntObjectHashMap;
 
 /**
  * @author ：cs
  * @description：用于存放和管理未被处理的request
+ *      每个连接一张表,挂在channel的属性上,用协议头中的int requestId关联请求和响应;
+ *      表只在连接的EventLoop中读写,不需要加锁,底层是以int为key的开放寻址哈希表
  * @date ：2022/11/21 21:13
  */
 
 
 public class UnprocessedRequests {
-    private static final Map<String, CompletableFuture<CsResponse<Object>>> UNPROCESSED_RESPONSE_FUTURES = new ConcurrentHashMap<>();
 
-    public UnprocessedRequests(){
+    public static final AttributeKey<UnprocessedRequests> UNPROCESSED_REQUESTS = AttributeKey.valueOf("cs-rpc.unprocessed-requests");
+
+    private final Channel channel;
+    private final IntObjectHashMap<PendingRequest> pendingRequests = new IntObjectHashMap<>();
+    /**
+     * 0保留给不需要响应的消息(心跳等)
+     */
+    private int nextRequestId;
 
+    public UnprocessedRequests(Channel channel){
+        this.channel = channel;
     }
-    public void put(String requestId, CompletableFuture<CsResponse<Object>> future) {
-        UNPROCESSED_RESPONSE_FUTURES.put(requestId, future);
+
+    public static UnprocessedRequests get(Channel channel) {
+        UnprocessedRequests unprocessedRequests = channel.attr(UNPROCESSED_REQUESTS).get();
+        if (unprocessedRequests == null) {
+            unprocessedRequests = new UnprocessedRequests(channel);
+            UnprocessedRequests old = channel.attr(UNPROCESSED_REQUESTS).setIfAbsent(unprocessedRequests);
+            if (old != null) {
+                unprocessedRequests = old;
+            }
+        }
+        return unprocessedRequests;
     }
 
-    public void complete(CsResponse<Object> rpcResponse) {
-        CompletableFuture<CsResponse<Object>> future = UNPROCESSED_RESPONSE_FUTURES.remove(rpcResponse.getRequestId());
-        if (null != future) {
-            future.complete(rpcResponse);
-        } else {
-            throw new IllegalStateException();
+    /**
+     * 登记请求,分配本连接内唯一的requestId,必须在连接的EventLoop中调用
+     * @return 登记前已经超时的请求不保留,返回0
+     */
+    public int put(PendingRequest pendingRequest) {
+        int requestId;
+        do {
+            requestId = ++nextRequestId;
+            if (requestId <= 0) {
+                nextRequestId = 0;
+                requestId = ++nextRequestId;
+            }
+        } while (pendingRequests.containsKey(requestId));
+        pendingRequests.put(requestId, pendingRequest);
+        pendingRequest.registered(this, requestId);
+        if (pendingRequest.isDone()) {
+            //超时线程在登记之前完成了请求,看不到登记,不会来移除
+            pendingRequests.remove(requestId);
+            return 0;
         }
+        return requestId;
+    }
+
+    public void remove(int requestId) {
+        pendingRequests.remove(requestId);
+    }
+
+    /**
+     * 超时线程中调用,切换到EventLoop后移除
+     */
+    void removeLater(int requestId, PendingRequest pendingRequest) {
+        channel.eventLoop().execute(() -> {
+            if (pendingRequests.get(requestId) == pendingRequest) {
+                pendingRequests.remove(requestId);
+            }
+        });
+    }
+
+    /**
+     * 收到响应,必须在连接的EventLoop中调用
+     * @return 请求已经超时被移除时返回false
+     */
+    public boolean complete(long requestId, CsResponse<Object> rpcResponse) {
+        //本端分配的id都在int范围内,v2协议中是64位,超出范围的一定不是本端的请求
+        if (requestId <= 0 || requestId > Integer.MAX_VALUE) {
+            return false;
+        }
+        PendingRequest pendingRequest = pendingRequests.remove((int) requestId);
+        if (null != pendingRequest) {
+            pendingRequest.complete(rpcResponse);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 连接断开,让连接上所有等待中的请求立即失败
+     */
+    public void failAll(Throwable cause) {
+        if (pendingRequests.isEmpty()) {
+            return;
+        }
+        PendingRequest[] requests = pendingRequests.values().toArray(new PendingRequest[0]);
+        pendingRequests.clear();
+        for (PendingRequest pendingRequest : requests) {
+            pendingRequest.fail(cause);
+        }
+    }
+
+    public int size() {
+        return pendingRequests.size();
     }
 }
@@ -0,0 +1,105 @@
+package com.cs.rpc.proxy;
+
+import com.cs.rpc.annotation.CsMethod;
+import com.cs.rpc.annotation.CsReference;
+import com.cs.rpc.annotation.CsRouteKey;
+import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.loadbalance.LoadBalancer;
+import com.cs.rpc.loadbalance.LoadBalancerRegistry;
+import com.cs.rpc.message.CsHandshake;
+import lombok.Getter;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * @author ：cs
+ * @description：远程方法的元数据,每个方法只解析一次,缓存后在每次调用时复用
+ * @date ：2026/10/17 17:02
+ */
+@Getter
+public class CsMethodMetadata {
+
+    private final String interfaceName;
+    private final String methodName;
+    private final Class<?>[] paramTypes;
+    private final String version;
+    /**
+     * 返回值声明为CompletableFuture/CompletionStage,调用不阻塞,直接返回future
+     */
+    private final boolean async;
+    /**
+     * 返回值类型,异步调用时同步签名的方法返回它的默认值
+     */
+    private final Class<?> returnType;
+    /**
+     * 调用超时时间(毫秒),0表示不超时
+     */
+    private final long timeout;
+    /**
+     * 接口#方法,用于按方法统计(压缩率等)
+     */
+    private final String methodKey;
+    /**
+     * 单向调用,不等待响应
+     */
+    private final boolean oneway;
+    /**
+     * 方法签名,按握手下发的方法表找到方法id
+     */
+    private final String signature;
+    /**
+     * CsReference上选择的负载均衡
+     */
+    private final LoadBalancer loadBalancer;
+    /**
+     * CsRouteKey标注的参数下标,没有时为-1
+     */
+    private final int routeKeyIndex;
+
+    public CsMethodMetadata(Method method, CsReference csReference) {
+        this.interfaceName = method.getDeclaringClass().getName();
+        this.methodName = method.getName();
+        this.methodKey = interfaceName + "#" + methodName;
+        this.paramTypes = method.getParameterTypes();
+        this.version = csReference.version();
+        this.signature = CsHandshake.signature(interfaceName + version, methodName, paramTypes);
+        this.loadBalancer = SingletonFactory.getInstance(LoadBalancerRegistry.class).get(csReference.loadBalance());
+        this.routeKeyIndex = routeKeyIndex(method);
+        this.returnType = method.getReturnType();
+        this.async = CompletionStage.class.isAssignableFrom(method.getReturnType());
+        CsMethod csMethod = method.getAnnotation(CsMethod.class);
+        boolean oneway = csMethod != null && csMethod.oneway() || csReference.oneway();
+        if(csMethod != null && csMethod.oneway() && method.getReturnType() != void.class){
+            throw new CsRpcException("单向调用的方法必须返回void:" + method);
+        }
+        //CsReference上的配置只对返回void的方法生效
+        this.oneway = oneway && method.getReturnType() == void.class;
+        this.timeout = csMethod != null && csMethod.timeout() >= 0 ? csMethod.timeout() : Math.max(0, csReference.timeout());
+    }
+
+    /**
+     * 本次调用的路由键
+     */
+    public Object routeKey(Object[] args) {
+        return routeKeyIndex < 0 || args == null ? null : args[routeKeyIndex];
+    }
+
+    private static int routeKeyIndex(Method method) {
+        int index = -1;
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof CsRouteKey) {
+                    if (index >= 0) {
+                        throw new CsRpcException("只能有一个参数标注CsRouteKey:" + method);
+                    }
+                    index = i;
+                }
+            }
+        }
+        return index;
+    }
+}
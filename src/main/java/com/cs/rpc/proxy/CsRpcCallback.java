@@ -0,0 +1,14 @@
+package com.cs.rpc.proxy;
+
+/**
+ * @author ：cs
+ * @description：异步调用的回调
+ *      回调在netty的IO线程中执行,不要在回调里做阻塞操作
+ * @date ：2026/10/17 17:10
+ */
+public interface CsRpcCallback<T> {
+
+    void onSuccess(T result);
+
+    void onFailure(Throwable cause);
+}
@@ -2,7 +2,10 @@ package com.cs.rpc.proxy;
 
 import com.cs.rpc.annotation.CsMapping;
 import com.cs.rpc.annotation.CsReference;
+import com.cs.rpc.constant.ResponseCodeEnum;
+import com.cs.rpc.exception.CsRpcCircuitOpenException;
 import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.exception.CsRpcRemoteException;
 import com.cs.rpc.factory.SingletonFactory;
 import com.cs.rpc.message.CsRequest;
 import com.cs.rpc.message.CsResponse;
@@ -13,8 +16,11 @@ import org.springframework.web.client.RestTemplate;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.UUID;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,6 +41,14 @@ import java.util.regex.Pattern;
 public class CsRpcClientProxy implements InvocationHandler {
     private CsReference csReference;
     private NettyClient nettyClient;
+    /**
+     * 缓存方法的元数据,避免每次调用都反射解析
+     */
+    private final Map<Method, CsMethodMetadata> metadataCache = new ConcurrentHashMap<>();
+    /**
+     * 单向调用在CsRpcContext.call中调用时交出的结果
+     */
+    private static final CompletableFuture<Object> ONEWAY_RESULT = CompletableFuture.completedFuture(null);
 
 
     public CsRpcClientProxy(){
@@ -53,49 +67,111 @@ public class CsRpcClientProxy implements InvocationHandler {
     @Override
     public Object invoke(Object o, Method method, Object[] args) throws Throwable {
         //客服端,消费者发起请求
-        log.info("rpc 服务消费方 发起调用,invoke被激活");
-
-        //对invoke进行实现:发送调用服务请求
-
-        //1. 构建请求数据MsRequest
-        //2. 调用Netty客户端
-        //3. 通过客户端向服务端发送请求
-        //4. 接收数据
-
-        //拿到注解中信息
-        //String host = csReference.host();//已经用nacos进行服务注册
-        //int port = csReference.port();
-        String version = csReference.version();
+        //拿到方法的元数据(接口名,方法名,参数类型,版本等),每个方法只解析一次
+        return invoke(getMetadata(method), args);
+    }
 
-        log.info(method+":此方法已经被代理实现");
-        //构建一个请求
-        String requestId = UUID.randomUUID().toString();
+    /**
+     * 发起远程调用,JDK代理和生成的存根(CsRpcStub)都走这里
+     * 1. 构建请求数据CsRequest
+     * 2. 调用Netty客户端,向服务端发送请求
+     * 3. 接收数据
+     */
+    public Object invoke(CsMethodMetadata metadata, Object[] args) throws Throwable {
+        //构建一个请求,requestId由连接在发送时分配,写在协议头中
         CsRequest csRequest = CsRequest.builder()
                 .group("cs-rpc")
-                .interfaceName(method.getDeclaringClass().getName())
-                .methodName(method.getName())
-                .version(version)
+                .interfaceName(metadata.getInterfaceName())
+                .methodName(metadata.getMethodName())
+                .version(metadata.getVersion())
                 .parameters(args)
-                .paramTypes(method.getParameterTypes())
-                .requestId(requestId)
+                .paramTypes(metadata.getParamTypes())
                 .build();
 
 
+        //单向调用:发出后立即返回,不等待响应
+        if(metadata.isOneway()){
+            try {
+                nettyClient.sendOneway(csRequest, metadata);
+            } catch (CsRpcException e) {
+                return rejected(metadata, e);
+            }
+            CsRpcContext.offerFuture(ONEWAY_RESULT);
+            return null;
+        }
+
         //通过客户端向服务端发送请求,然后返回一个response结果管理线程池
-        Object sendRequest = nettyClient.sendRequest(csRequest);
+        Object sendRequest;
+        try {
+            sendRequest = nettyClient.sendRequest(csRequest, metadata);
+        } catch (CsRpcException e) {
+            return rejected(metadata, e);
+        }
         //强转一下,方便使用
         CompletableFuture<CsResponse<Object>> resultCompletableFuture = (CompletableFuture<CsResponse<Object>>)sendRequest;
-        //从结果线程池中找到服务端对应的返回
-        CsResponse<Object> csResponse = resultCompletableFuture.get();
+        //收到响应后直接在netty的IO线程中完成,不占用调用线程
+        CompletableFuture<Object> dataFuture = resultCompletableFuture.thenApply(csResponse -> getData(csResponse));
 
+        //方法返回值是CompletableFuture/CompletionStage,直接返回future
+        if(metadata.isAsync()){
+            return dataFuture;
+        }
+        //同步签名的方法在CsRpcContext.call中调用,交出future后返回默认值
+        if(CsRpcContext.offerFuture(dataFuture)){
+            return CsRpcContext.defaultValue(metadata.getReturnType());
+        }
+        //同步调用,阻塞等待结果
+        try {
+            return dataFuture.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
 
+    /**
+     * 选不出服务提供方(没有可用实例、熔断),请求没有发出:
+     * 异步签名返回失败的future,在CsRpcContext.call中调用时交出失败的future,同步调用直接抛出
+     * 熔断时同步调用抛出共享的异常,不分配对象;返回CompletionStage时给共享的只读stage,
+     * 返回CompletableFuture时调用方可以修改,每次新建
+     */
+    private static Object rejected(CsMethodMetadata metadata, CsRpcException e) {
+        CsRpcCircuitOpenException circuitOpen = e instanceof CsRpcCircuitOpenException ? (CsRpcCircuitOpenException) e : null;
+        if(metadata.isAsync()){
+            if(circuitOpen == null){
+                return failedFuture(e);
+            }
+            return metadata.getReturnType() == CompletionStage.class ? circuitOpen.getFailedStage() : circuitOpen.newFailedFuture();
+        }
+        if(CsRpcContext.offerFuture(circuitOpen == null ? failedFuture(e) : circuitOpen.newFailedFuture())){
+            return CsRpcContext.defaultValue(metadata.getReturnType());
+        }
+        throw e;
+    }
+
+    private static CompletableFuture<Object> failedFuture(Throwable e) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    private Object getData(CsResponse<Object> csResponse) {
         if(csResponse == null){
             throw new CsRpcException("服务调用失败");
         }
-        if(!requestId.equals(csResponse.getRequestId())){
-            throw new CsRpcException("响应结果和请求不一致");
+        //服务端处理失败或繁忙时返回失败响应,连接仍然可用
+        if(csResponse.getCode() != null && csResponse.getCode() != ResponseCodeEnum.SUCCESS.getCode()){
+            throw new CsRpcRemoteException(csResponse.getCode(), csResponse.getExceptionClass(),
+                    "服务调用失败:"+csResponse.getMessage());
         }
-        return  csResponse.getData();
+        return csResponse.getData();
+    }
+
+    CsMethodMetadata getMetadata(Method method) {
+        CsMethodMetadata metadata = metadataCache.get(method);
+        if(metadata == null){
+            metadata = metadataCache.computeIfAbsent(method, m -> new CsMethodMetadata(m, csReference));
+        }
+        return metadata;
     }
 
     /**
@@ -106,4 +182,16 @@ public class CsRpcClientProxy implements InvocationHandler {
     public <T> T getProxy(Class<T> interfaceClass){
         return (T)Proxy.newProxyInstance(interfaceClass.getClassLoader(),new Class<?>[]{interfaceClass},this);
     }
+
+    /**
+     * 通过接口生成存根类对象,调用不经过反射分发;接口不是public或者生成失败时退回JDK动态代理
+     */
+    public <T> T getStub(Class<T> interfaceClass){
+        try {
+            return CsRpcStubGenerator.newStub(interfaceClass, this);
+        } catch (CsRpcException e) {
+            log.warn("生成存根失败,使用JDK动态代理:{}", e.getMessage());
+            return getProxy(interfaceClass);
+        }
+    }
 }
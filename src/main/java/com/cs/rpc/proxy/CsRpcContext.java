@@ -0,0 +1,104 @@
+package com.cs.rpc.proxy;
+
+import com.cs.rpc.exception.CsRpcException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * @author ：cs
+ * @description：异步调用上下文
+ *      接口方法签名是同步的(不能改成CompletableFuture)时,可以用这里的方法异步调用:
+ *      <pre>
+ *      CompletableFuture&lt;Goods&gt; future = CsRpcContext.call(() -&gt; goodsService.findGoods(id));
+ *      CsRpcContext.call(() -&gt; goodsService.findGoods(id), callback);
+ *      </pre>
+ *      call中只能发起一次远程调用,远程方法会立刻返回默认值,真正的结果通过future或回调拿到
+ * @date ：2026/10/17 17:12
+ */
+public final class CsRpcContext {
+
+    private static final ThreadLocal<CsRpcContext> LOCAL = new ThreadLocal<>();
+
+    private boolean async;
+    private CompletableFuture<?> future;
+
+    private CsRpcContext() {
+    }
+
+    /**
+     * 异步调用,返回结果的future
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> call(Supplier<T> invocation) {
+        CsRpcContext context = new CsRpcContext();
+        context.async = true;
+        LOCAL.set(context);
+        try {
+            invocation.get();
+        } finally {
+            LOCAL.remove();
+        }
+        if (context.future == null) {
+            throw new CsRpcException("异步调用中没有发起远程调用");
+        }
+        return (CompletableFuture<T>) context.future;
+    }
+
+    /**
+     * 异步调用,结果通过回调通知
+     */
+    public static <T> void call(Supplier<T> invocation, CsRpcCallback<? super T> callback) {
+        call(invocation).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                callback.onFailure(throwable);
+            } else {
+                callback.onSuccess(result);
+            }
+        });
+    }
+
+    /**
+     * 当前线程是否处于异步调用中,是的话由代理交出future,并清除标记,只对第一次远程调用生效
+     */
+    static boolean offerFuture(CompletableFuture<?> future) {
+        CsRpcContext context = LOCAL.get();
+        if (context == null || !context.async) {
+            return false;
+        }
+        context.async = false;
+        context.future = future;
+        return true;
+    }
+
+    /**
+     * 异步调用时远程方法立即返回的默认值,基本类型不能返回null
+     */
+    static Object defaultValue(Class<?> returnType) {
+        if (!returnType.isPrimitive() || returnType == void.class) {
+            return null;
+        }
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == char.class) {
+            return '\0';
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        if (returnType == float.class) {
+            return 0F;
+        }
+        if (returnType == double.class) {
+            return 0D;
+        }
+        if (returnType == byte.class) {
+            return (byte) 0;
+        }
+        if (returnType == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,28 @@
+package com.cs.rpc.proxy;
+
+/**
+ * @author ：cs
+ * @description：生成的客户端存根的父类
+ *      存根类由CsRpcStubGenerator按接口生成,每个接口方法直接调用invoke(方法下标,参数),
+ *      方法元数据在创建存根时解析好按下标存放,调用时不再查找
+ * @date ：2026/10/18 7:00
+ */
+public abstract class CsRpcStub {
+
+    private final CsRpcClientProxy proxy;
+    private final CsMethodMetadata[] methods;
+
+    protected CsRpcStub(CsRpcClientProxy proxy, CsMethodMetadata[] methods) {
+        this.proxy = proxy;
+        this.methods = methods;
+    }
+
+    protected final Object invoke(int index, Object[] args) throws Throwable {
+        return proxy.invoke(methods[index], args);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "@" + Integer.toHexString(hashCode());
+    }
+}
@@ -0,0 +1,188 @@
+package com.cs.rpc.proxy;
+
+import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.utils.AsmUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author ：cs
+ * @description：运行时用ASM(spring-core中自带)为CsReference接口生成存根类,代替JDK动态代理
+ *      生成的类继承CsRpcStub并实现接口,每个抽象方法的实现是:参数装箱放入数组 -> invoke(下标,参数) -> 拆箱/强转返回,
+ *      没有Method对象、没有InvocationHandler分发、没有按Method查缓存;default方法和Object的方法不生成,直接继承
+ *      存根类按接口缓存,同一个接口的不同引用(版本、超时不同)共用存根类,各自持有自己的方法元数据
+ *      受检异常不会像JDK代理那样包装成UndeclaredThrowableException,原样抛出
+ * @date ：2026/10/18 7:05
+ */
+@Slf4j
+public final class CsRpcStubGenerator {
+
+    private static final String STUB_SUPER = Type.getInternalName(CsRpcStub.class);
+    private static final String INVOKE_DESC = "(I[Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final String CONSTRUCTOR_DESC = "(" + Type.getDescriptor(CsRpcClientProxy.class)
+            + Type.getDescriptor(CsMethodMetadata[].class) + ")V";
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final Map<Class<?>, StubClass> STUB_CLASSES = new ConcurrentHashMap<>();
+
+    private CsRpcStubGenerator() {
+    }
+
+    /**
+     * 创建存根对象
+     * @param interfaceClass 远程接口,必须是public的
+     * @param proxy 真正发起调用的代理,方法元数据从这里取
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T newStub(Class<T> interfaceClass, CsRpcClientProxy proxy) {
+        StubClass stubClass = STUB_CLASSES.computeIfAbsent(interfaceClass, CsRpcStubGenerator::generate);
+        CsMethodMetadata[] metadata = new CsMethodMetadata[stubClass.methods.length];
+        for (int i = 0; i < metadata.length; i++) {
+            metadata[i] = proxy.getMetadata(stubClass.methods[i]);
+        }
+        try {
+            return (T) stubClass.constructor.newInstance(proxy, metadata);
+        } catch (ReflectiveOperationException e) {
+            throw new CsRpcException("创建存根出错:" + interfaceClass.getName(), e);
+        }
+    }
+
+    private static StubClass generate(Class<?> interfaceClass) {
+        if (!interfaceClass.isInterface() || !Modifier.isPublic(interfaceClass.getModifiers())) {
+            throw new CsRpcException("只能为public接口生成存根:" + interfaceClass.getName());
+        }
+        Method[] methods = remoteMethods(interfaceClass);
+        String className = CsRpcStub.class.getName() + "$" + interfaceClass.getSimpleName() + "$" + COUNTER.incrementAndGet();
+        String internalName = className.replace('.', '/');
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, internalName, null,
+                STUB_SUPER, new String[]{Type.getInternalName(interfaceClass)});
+
+        //构造方法:直接调用父类
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, STUB_SUPER, "<init>", CONSTRUCTOR_DESC, false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (int i = 0; i < methods.length; i++) {
+            generateMethod(cw, methods[i], i);
+        }
+        cw.visitEnd();
+
+        try {
+            Class<?> stubClass = new StubClassLoader(interfaceClass.getClassLoader()).define(className, cw.toByteArray());
+            Constructor<?> constructor = stubClass.getConstructor(CsRpcClientProxy.class, CsMethodMetadata[].class);
+            log.info("生成存根类:{},方法数:{}", className, methods.length);
+            return new StubClass(constructor, methods);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new CsRpcException("生成存根类出错:" + interfaceClass.getName(), e);
+        }
+    }
+
+    /**
+     * return (R) invoke(index, new Object[]{arg0, arg1, ...});
+     */
+    private static void generateMethod(ClassWriter cw, Method method, int index) {
+        String descriptor = Type.getMethodDescriptor(method);
+        Class<?>[] exceptionTypes = method.getExceptionTypes();
+        String[] exceptions = new String[exceptionTypes.length];
+        for (int i = 0; i < exceptionTypes.length; i++) {
+            exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+        }
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, method.getName(), descriptor, null, exceptions);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        AsmUtil.pushInt(mv, index);
+        Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        if (argumentTypes.length == 0) {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        } else {
+            AsmUtil.pushInt(mv, argumentTypes.length);
+            mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
+            int slot = 1;
+            for (int i = 0; i < argumentTypes.length; i++) {
+                Type type = argumentTypes[i];
+                mv.visitInsn(Opcodes.DUP);
+                AsmUtil.pushInt(mv, i);
+                mv.visitVarInsn(type.getOpcode(Opcodes.ILOAD), slot);
+                AsmUtil.box(mv, type);
+                mv.visitInsn(Opcodes.AASTORE);
+                slot += type.getSize();
+            }
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STUB_SUPER, "invoke", INVOKE_DESC, false);
+        Type returnType = Type.getReturnType(descriptor);
+        if (returnType.getSort() == Type.VOID) {
+            mv.visitInsn(Opcodes.POP);
+            mv.visitInsn(Opcodes.RETURN);
+        } else {
+            AsmUtil.unbox(mv, returnType);
+            mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 需要远程调用的方法:接口(包括父接口)的抽象方法,去掉重复签名和Object中已有的方法
+     */
+    private static Method[] remoteMethods(Class<?> interfaceClass) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (Method method : interfaceClass.getMethods()) {
+            if (!Modifier.isAbstract(method.getModifiers()) || isObjectMethod(method)) {
+                continue;
+            }
+            methods.putIfAbsent(method.getName() + Type.getMethodDescriptor(method), method);
+        }
+        List<Method> list = new ArrayList<>(methods.values());
+        return list.toArray(new Method[0]);
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static final class StubClass {
+        private final Constructor<?> constructor;
+        private final Method[] methods;
+
+        private StubClass(Constructor<?> constructor, Method[] methods) {
+            this.constructor = constructor;
+            this.methods = methods;
+        }
+    }
+
+    private static final class StubClassLoader extends ClassLoader {
+
+        private StubClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.cs.rpc.serialize;
 
 import com.cs.rpc.constant.SerializationTypeEnum;
+import com.cs.rpc.exception.CsRpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.protostuff.ByteArrayInput;
+import io.protostuff.ByteBufferInput;
 import io.protostuff.LinkedBuffer;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 import io.protostuff.runtime.RuntimeSchema;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -18,8 +24,10 @@ public class ProtostuffSerializer implements Serializer{
     /**
      * 避免每次序列化都重新申请Buffer空间,用来暂时存放对象序列化之后的数据
      * 如果你设置的空间不足，会自动扩展的，但这个大小还是要设置一个合适的值，设置大了浪费空间，设置小了会自动扩展浪费时间
+     * 序列化器由CodecRegistry全局共享,buffer从LinkedBufferPool中按线程和大小级别获取,
+     * 大小按每个类上一次序列化的大小来估计
      */
-    private LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    private final Map<Class<?>, Integer> sizeHints = new ConcurrentHashMap<>();
 
     /**
      * 缓存类对应的Schema，由于构造schema需要获得对象的类和字段信息，会用到反射机制
@@ -35,13 +43,16 @@ public class ProtostuffSerializer implements Serializer{
     public byte[] serialize(Object obj) {
         Class clazz = obj.getClass();
         Schema schema = getSchema(clazz);
-        byte[] data;
+        byte[] data = null;
+        LinkedBuffer buffer = LinkedBufferPool.acquire(sizeHint(clazz));
         try {
             //序列化操作，将对象转换为字节数组
             data = ProtostuffIOUtil.toByteArray(obj, schema, buffer);
         } finally {
-            //使用完清空buffer
-            buffer.clear();
+            //使用完清空buffer并归还
+            int written = data == null ? 0 : data.length;
+            LinkedBufferPool.release(buffer, written);
+            updateSizeHint(clazz, written);
         }
         return data;
     }
@@ -54,6 +65,68 @@ public class ProtostuffSerializer implements Serializer{
         return obj;
     }
 
+    /**
+     * 直接写入ByteBuf:数据先写入线程内复用的LinkedBuffer,满了就写到ByteBuf中,不产生中间数组
+     */
+    @Override
+    public void serialize(Object obj, ByteBuf out) {
+        Class clazz = obj.getClass();
+        Schema schema = getSchema(clazz);
+        LinkedBuffer buffer = LinkedBufferPool.acquire(sizeHint(clazz));
+        int written = 0;
+        try {
+            written = ProtostuffIOUtil.writeTo(new ByteBufOutputStream(out), obj, schema, buffer);
+        } catch (IOException e) {
+            throw new CsRpcException("序列化出错",e);
+        } finally {
+            //使用完清空buffer并归还
+            LinkedBufferPool.release(buffer, written);
+            updateSizeHint(clazz, written);
+        }
+    }
+
+    /**
+     * 直接从ByteBuf读取:堆内存读底层数组,直接内存读nio视图,都不复制数据
+     */
+    @Override
+    public Object deserialize(ByteBuf in, Class<?> clazz) {
+        Schema schema = getSchema(clazz);
+        Object obj = schema.newMessage();
+        try {
+            if(in.hasArray()){
+                ByteArrayInput input = new ByteArrayInput(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(), true);
+                schema.mergeFrom(input, obj);
+                input.checkLastTagWas(0);
+            }else {
+                ByteBufferInput input = new ByteBufferInput(in.nioBuffer(), true);
+                schema.mergeFrom(input, obj);
+                input.checkLastTagWas(0);
+            }
+        } catch (IOException e) {
+            throw new CsRpcException("反序列化出错",e);
+        }
+        in.skipBytes(in.readableBytes());
+        return obj;
+    }
+
+    private int sizeHint(Class<?> clazz) {
+        Integer hint = sizeHints.get(clazz);
+        return hint == null ? 0 : hint;
+    }
+
+    /**
+     * 只在大小级别变化时写入,避免每次序列化都写共享的map
+     */
+    private void updateSizeHint(Class<?> clazz, int written) {
+        if(written <= 0){
+            return;
+        }
+        Integer hint = sizeHints.get(clazz);
+        if(hint == null || LinkedBufferPool.sizeClass(hint) != LinkedBufferPool.sizeClass(written)){
+            sizeHints.put(clazz, written);
+        }
+    }
+
     /**
      * @description 获取Schema
      * @param clazz
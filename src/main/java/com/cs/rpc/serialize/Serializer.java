@@ -1,5 +1,7 @@
 package com.cs.rpc.serialize;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * 序列化接口，所有序列化类都要实现这个接口
  */
@@ -25,4 +27,29 @@ public interface Serializer {
      * @return 反序列化的对象
      */
     Object deserialize(byte[] bytes, Class<?> clazz);
+
+    /**
+     * 序列化,直接写入ByteBuf
+     * 默认先序列化成字节数组再写入,实现类可以覆盖,省掉中间数组
+     *
+     * @param obj 要序列化的对象
+     * @param out 写入的目标
+     */
+    default void serialize(Object obj, ByteBuf out) {
+        out.writeBytes(serialize(obj));
+    }
+
+    /**
+     * 反序列化,直接从ByteBuf读取
+     * 默认先读成字节数组再反序列化,实现类可以覆盖,省掉中间数组
+     *
+     * @param in 可读部分为序列化后的数据
+     * @param clazz 目标类
+     * @return 反序列化的对象
+     */
+    default Object deserialize(ByteBuf in, Class<?> clazz) {
+        byte[] bytes = new byte[in.readableBytes()];
+        in.readBytes(bytes);
+        return deserialize(bytes, clazz);
+    }
 }
@@ -1,22 +1,31 @@
 package com.cs.rpc.server;
 
 import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.constant.CsRpcConstants;
 import com.cs.rpc.annotation.CsService;
 import com.cs.rpc.config.CsRpcConfig;
 import com.cs.rpc.exception.CsRpcException;
 import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.message.CsHandshake;
+import com.cs.rpc.message.CsRequest;
 import com.cs.rpc.nacos.NacosTemplate;
 import com.cs.rpc.netty.NettyServer;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.Method;
 import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author ：cs
  * @description：服务提供类
+ *      发布服务时为接口的每个方法分配方法id(按签名排序,同一进程内不变),
+ *      握手时把方法表下发给客户端,请求按方法id直接找到方法
  * @date ：2022/11/17 3:12
  */
 @Slf4j
@@ -24,6 +33,14 @@ public class CsServiceProvider {
 
     private CsRpcConfig csRpcConfig;
     private final Map<String,Object> serviceMap;
+    /**
+     * key:方法签名 value:服务方法
+     */
+    private final Map<String,ServiceMethod> methodsBySignature = new ConcurrentHashMap<>();
+    /**
+     * 下标为方法id,0不使用;发布服务时整体替换,读取不加锁
+     */
+    private volatile ServiceMethod[] methodsById = new ServiceMethod[1];
     private NacosTemplate nacosTemplate;
 
     public void setCsRpcConfig(CsRpcConfig csRpcConfig) {
@@ -70,6 +87,7 @@ public class CsServiceProvider {
         log.info("发布了服务:{}",interfaceName);
         //将服务已经放入到CsServiceProvider的map中,provide已经记录了
         serviceMap.put(interfaceName+version,service);
+        registerMethods(interfaceName, interfaceName+version, service);
         //判断配置是否写入
         if(csRpcConfig == null){
             throw new CsRpcException("EnableRPC未被配置或开启");
@@ -88,6 +106,13 @@ public class CsServiceProvider {
             instance.setClusterName("cs-rpc");
             //将服务名和版本写道实例中
             instance.setServiceName(interfaceName+version);
+            //将所在地区和标签写到实例的元数据中,消费端据此优先调用同地区的实例
+            if(!csRpcConfig.getZone().isEmpty()){
+                instance.addMetadata(CsRpcConstants.METADATA_ZONE, csRpcConfig.getZone());
+            }
+            if(!csRpcConfig.getTag().isEmpty()){
+                instance.addMetadata(CsRpcConstants.METADATA_TAG, csRpcConfig.getTag());
+            }
             //将实例注册到nacos
             nacosTemplate.registerServer(csRpcConfig.getNacosGroup(),instance);
 
@@ -101,5 +126,51 @@ public class CsServiceProvider {
         return serviceMap.get(serviceName);
     }
 
+    /**
+     * 为服务接口的方法分配方法id
+     */
+    private synchronized void registerMethods(String interfaceName, String serviceKey, Object service) {
+        Method[] methods = service.getClass().getInterfaces()[0].getMethods();
+        Arrays.sort(methods, Comparator.comparing(m -> CsHandshake.signature(serviceKey, m.getName(), m.getParameterTypes())));
+        ServiceMethod[] newMethods = Arrays.copyOf(methodsById, methodsById.length + methods.length);
+        int id = methodsById.length;
+        for (Method method : methods) {
+            ServiceMethod serviceMethod = new ServiceMethod(id, serviceKey, interfaceName, service, method);
+            if (methodsBySignature.putIfAbsent(serviceMethod.getSignature(), serviceMethod) != null) {
+                //同一个服务重复发布,保留原来的方法id
+                continue;
+            }
+            newMethods[id++] = serviceMethod;
+        }
+        methodsById = Arrays.copyOf(newMethods, id);
+    }
+
+    /**
+     * 找到请求对应的服务方法:有方法id时直接按下标查找,否则按方法签名查找
+     * @return 找不到返回null
+     */
+    public ServiceMethod getServiceMethod(CsRequest csRequest) {
+        Integer methodId = csRequest.getMethodId();
+        if (methodId != null) {
+            ServiceMethod[] methods = methodsById;
+            return methodId > 0 && methodId < methods.length ? methods[methodId] : null;
+        }
+        String serviceKey = csRequest.getInterfaceName() + csRequest.getVersion();
+        return methodsBySignature.get(CsHandshake.signature(serviceKey, csRequest.getMethodName(), csRequest.getParamTypes()));
+    }
+
+    /**
+     * 握手时下发的方法表
+     */
+    public Map<String, Integer> getMethodIds() {
+        Map<String, Integer> methodIds = new HashMap<>();
+        for (ServiceMethod serviceMethod : methodsById) {
+            if (serviceMethod != null) {
+                methodIds.put(serviceMethod.getSignature(), serviceMethod.getId());
+            }
+        }
+        return methodIds;
+    }
+
 
 }
@@ -0,0 +1,15 @@
+package com.cs.rpc.server;
+
+/**
+ * @author ：cs
+ * @description：服务方法调用器,每个服务方法一个,由ServiceInvokerGenerator生成
+ * @date ：2026/10/18 9:40
+ */
+public interface ServiceInvoker {
+
+    /**
+     * 调用服务方法,服务方法抛出的异常原样抛出
+     * @param args 已经检查过个数和类型的参数
+     */
+    Object invoke(Object[] args) throws Throwable;
+}
@@ -0,0 +1,144 @@
+package com.cs.rpc.server;
+
+import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.utils.AsmUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author ：cs
+ * @description：运行时用ASM为服务方法生成调用器,和客户端存根(CsRpcStubGenerator)同样的做法
+ *      生成的类持有具体类型的服务对象,invoke里逐个取出参数拆箱/强转后直接invokeinterface调用接口方法,返回值装箱,
+ *      调用点只有一个接收者类型,JIT可以把服务方法内联进来;不需要Method.invoke的访问检查和参数复制,
+ *      也不像保存在实例字段里的MethodHandle那样无法常量折叠
+ *      声明方法的接口(或类)不是public时生成的类访问不到,退回MethodHandle
+ * @date ：2026/10/18 9:40
+ */
+@Slf4j
+public final class ServiceInvokerGenerator {
+
+    private static final String INVOKER_INTERFACE = Type.getInternalName(ServiceInvoker.class);
+    private static final String INVOKE_DESC = "([Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final String CONSTRUCTOR_DESC = "(Ljava/lang/Object;)V";
+    private static final MethodType HANDLE_TYPE = MethodType.methodType(Object.class, Object[].class);
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private ServiceInvokerGenerator() {
+    }
+
+    /**
+     * 创建服务方法的调用器
+     * @param service 服务对象
+     * @param method 服务接口的方法
+     */
+    public static ServiceInvoker newInvoker(Object service, Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(declaringClass.getModifiers()) || !Modifier.isPublic(method.getModifiers())) {
+            return handleInvoker(service, method);
+        }
+        try {
+            return (ServiceInvoker) generate(method).getConstructor(Object.class).newInstance(service);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new CsRpcException("生成服务方法调用器出错:" + method, e);
+        }
+    }
+
+    private static Class<?> generate(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        String owner = Type.getInternalName(declaringClass);
+        String className = ServiceInvoker.class.getName() + "$" + declaringClass.getSimpleName()
+                + "$" + method.getName() + "$" + COUNTER.incrementAndGet();
+        String internalName = className.replace('.', '/');
+        String targetDesc = Type.getDescriptor(declaringClass);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, internalName, null,
+                "java/lang/Object", new String[]{INVOKER_INTERFACE});
+        cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "target", targetDesc, null, null).visitEnd();
+
+        //构造方法:this.target = (接口) target
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, internalName, "target", targetDesc);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        //invoke:return box(target.method((A0) args[0], (A1) args[1], ...))
+        String descriptor = Type.getMethodDescriptor(method);
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "invoke", INVOKE_DESC, null,
+                new String[]{"java/lang/Throwable"});
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, internalName, "target", targetDesc);
+        Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        for (int i = 0; i < argumentTypes.length; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            AsmUtil.pushInt(mv, i);
+            mv.visitInsn(Opcodes.AALOAD);
+            AsmUtil.unbox(mv, argumentTypes[i]);
+        }
+        boolean isInterface = declaringClass.isInterface();
+        mv.visitMethodInsn(isInterface ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL, owner, method.getName(),
+                descriptor, isInterface);
+        Type returnType = Type.getReturnType(descriptor);
+        if (returnType.getSort() == Type.VOID) {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        } else {
+            AsmUtil.box(mv, returnType);
+        }
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        ClassLoader parent = declaringClass.getClassLoader();
+        Class<?> invokerClass = new InvokerClassLoader(parent == null ? ServiceInvoker.class.getClassLoader() : parent)
+                .define(className, cw.toByteArray());
+        log.debug("生成服务方法调用器:{}", className);
+        return invokerClass;
+    }
+
+    /**
+     * 非public的接口:已经绑定服务对象、展开参数数组的MethodHandle
+     */
+    private static ServiceInvoker handleInvoker(Object service, Method method) {
+        MethodHandle handle;
+        try {
+            method.setAccessible(true);
+            handle = MethodHandles.lookup().unreflect(method)
+                    .bindTo(service)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(HANDLE_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new CsRpcException("生成服务方法调用句柄出错:" + method, e);
+        }
+        return args -> (Object) handle.invokeExact(args);
+    }
+
+    private static final class InvokerClassLoader extends ClassLoader {
+
+        private InvokerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.cs.rpc.server;
+
+import com.cs.rpc.message.CsHandshake;
+import lombok.Getter;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * @author ：cs
+ * @description：发布的一个服务方法,服务发布时创建,请求按方法id或方法签名直接找到,不再每次反射查找方法
+ *      调用使用发布时生成的调用器(ServiceInvokerGenerator),直接调用接口方法,没有Method.invoke每次的访问检查和参数复制
+ * @date ：2026/10/18 5:05
+ */
+@Getter
+public class ServiceMethod {
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private final int id;
+    /**
+     * 服务名(interfaceName+version)
+     */
+    private final String serviceKey;
+    /**
+     * 接口#方法,用于按方法统计
+     */
+    private final String methodKey;
+    private final String signature;
+    private final Object service;
+    private final Method method;
+    private final Class<?>[] paramTypes;
+    /**
+     * 基本类型换成包装类型,用于检查参数
+     */
+    private final Class<?>[] argumentTypes;
+    private final ServiceInvoker invoker;
+
+    public ServiceMethod(int id, String serviceKey, String interfaceName, Object service, Method method) {
+        this.id = id;
+        this.serviceKey = serviceKey;
+        this.methodKey = interfaceName + "#" + method.getName();
+        this.signature = CsHandshake.signature(serviceKey, method.getName(), method.getParameterTypes());
+        this.service = service;
+        this.method = method;
+        this.paramTypes = method.getParameterTypes();
+        this.argumentTypes = new Class<?>[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            argumentTypes[i] = paramTypes[i].isPrimitive()
+                    ? MethodType.methodType(paramTypes[i]).wrap().returnType() : paramTypes[i];
+        }
+        this.invoker = ServiceInvokerGenerator.newInvoker(service, method);
+    }
+
+    /**
+     * 检查参数个数和类型,不匹配时返回错误信息,匹配返回null
+     * 调用前检查,调用中抛出的异常都可以认为是服务方法自己的异常
+     */
+    public String checkArguments(Object[] args) {
+        int length = args == null ? 0 : args.length;
+        if (length != paramTypes.length) {
+            return "参数个数不匹配:" + methodKey + ",需要" + paramTypes.length + "个,实际" + length + "个";
+        }
+        for (int i = 0; i < length; i++) {
+            Object arg = args[i];
+            if (arg == null) {
+                if (paramTypes[i].isPrimitive()) {
+                    return "参数类型不匹配:" + methodKey + ",第" + (i + 1) + "个参数不能为null";
+                }
+            } else if (!argumentTypes[i].isInstance(arg)) {
+                return "参数类型不匹配:" + methodKey + ",第" + (i + 1) + "个参数需要" + paramTypes[i].getName()
+                        + ",实际" + arg.getClass().getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 调用服务方法,参数需要先通过checkArguments检查
+     */
+    public Object invoke(Object[] args) throws Throwable {
+        return invoker.invoke(args == null ? EMPTY_ARGS : args);
+    }
+}
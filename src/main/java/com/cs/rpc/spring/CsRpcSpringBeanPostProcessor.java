@@ -3,8 +3,14 @@ package com.cs.rpc.spring;
 import com.cs.rpc.annotation.CsReference;
 import com.cs.rpc.annotation.CsService;
 import com.cs.rpc.annotation.EnableRpc;
+import com.cs.rpc.breaker.CircuitBreakerRegistry;
+import com.cs.rpc.compress.CompressPolicy;
 import com.cs.rpc.config.CsRpcConfig;
+import com.cs.rpc.constant.CompressTypeEnum;
+import com.cs.rpc.exception.CsRpcException;
 import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.loadbalance.LocalityRouter;
+import com.cs.rpc.loadbalance.OutlierEjector;
 import com.cs.rpc.nacos.NacosTemplate;
 import com.cs.rpc.netty.client.NettyClient;
 import com.cs.rpc.proxy.CsRpcClientProxy;
@@ -80,9 +86,37 @@ public class CsRpcSpringBeanPostProcessor implements BeanPostProcessor, BeanFact
                 csRpcConfig.setNacosHost(enableRpc.nacosHost());
                 csRpcConfig.setProviderPort(enableRpc.serverPort());
                 csRpcConfig.setNacosPort(enableRpc.nacosPort());
+                csRpcConfig.setConnectionsPerProvider(enableRpc.connectionsPerProvider());
+                csRpcConfig.setConnectionIdleTimeout(enableRpc.connectionIdleTimeout());
+                csRpcConfig.setFlushBatching(enableRpc.flushBatching());
+                csRpcConfig.setFlushMaxMessages(enableRpc.flushMaxMessages());
+                csRpcConfig.setFlushMaxBytes(enableRpc.flushMaxBytes());
+                csRpcConfig.setCompressType(enableRpc.compressType());
+                csRpcConfig.setCompressThreshold(enableRpc.compressThreshold());
+                csRpcConfig.setCompressAdaptive(enableRpc.compressAdaptive());
+                csRpcConfig.setClientStub(enableRpc.clientStub());
+                csRpcConfig.setOutlierEjection(enableRpc.outlierEjection());
+                csRpcConfig.setZone(enableRpc.zone());
+                csRpcConfig.setTag(enableRpc.tag());
+                csRpcConfig.setLocalityThreshold(enableRpc.localityThreshold());
+                csRpcConfig.setCircuitBreaker(enableRpc.circuitBreaker());
+                csRpcConfig.setBreakerFailureRate(enableRpc.breakerFailureRate());
+                csRpcConfig.setBreakerSlowCallMillis(enableRpc.breakerSlowCallMillis());
                 //将配置写入消费端,服务提供端 以及nacos服务端
                 nettyClient.setCsRpcConfig(csRpcConfig);
                 csServiceProvider.setCsRpcConfig(csRpcConfig);
+                CompressTypeEnum compressType = CompressTypeEnum.of(csRpcConfig.getCompressType());
+                if(compressType == null){
+                    throw new CsRpcException("不支持的压缩类型:"+csRpcConfig.getCompressType());
+                }
+                CompressPolicy compressPolicy = SingletonFactory.getInstance(CompressPolicy.class);
+                compressPolicy.setCompressType(compressType.getCode());
+                compressPolicy.configure(csRpcConfig.getCompressThreshold(), csRpcConfig.isCompressAdaptive(), 0.9);
+                SingletonFactory.getInstance(OutlierEjector.class).setEnabled(csRpcConfig.isOutlierEjection());
+                SingletonFactory.getInstance(LocalityRouter.class).configure(csRpcConfig.getZone(),
+                        csRpcConfig.getTag(), csRpcConfig.getLocalityThreshold());
+                SingletonFactory.getInstance(CircuitBreakerRegistry.class).configure(csRpcConfig.isCircuitBreaker(),
+                        csRpcConfig.getBreakerFailureRate(), csRpcConfig.getBreakerSlowCallMillis());
                 //初始化nacos服务
                 nacosTemplate.init(csRpcConfig.getNacosHost(),csRpcConfig.getNacosPort());
             }
@@ -125,7 +159,10 @@ public class CsRpcSpringBeanPostProcessor implements BeanPostProcessor, BeanFact
                 //创建代理类
                 CsRpcClientProxy csRpcClientProxy = new CsRpcClientProxy(csReference,nettyClient);
                 //以添加了CsReference注解的接口类型作为参数 调用内部方法 :通过接口类来生成代理对象
-                Object proxy = csRpcClientProxy.getProxy(declaredField.getType());
+                //开启clientStub时生成存根类,调用不经过InvocationHandler的反射分发
+                Object proxy = csRpcConfig != null && csRpcConfig.isClientStub()
+                        ? csRpcClientProxy.getStub(declaredField.getType())
+                        : csRpcClientProxy.getProxy(declaredField.getType());
 
                 //当isAccessible()的结果是false时不允许通过反射访问该字段
                 //开启属性可以通过反射获取
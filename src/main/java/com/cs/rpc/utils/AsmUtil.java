@@ -0,0 +1,79 @@
+package com.cs.rpc.utils;
+
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+/**
+ * @author ：cs
+ * @description：生成字节码时共用的指令,客户端存根和服务端调用器都用
+ * @date ：2026/10/18 9:40
+ */
+public class AsmUtil {
+
+    private AsmUtil() {
+    }
+
+    /**
+     * 压入int常量
+     */
+    public static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        }
+    }
+
+    /**
+     * 栈顶的基本类型装箱,引用类型不变
+     */
+    public static void box(MethodVisitor mv, Type type) {
+        String wrapper = wrapper(type);
+        if (wrapper != null) {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, wrapper, "valueOf",
+                    "(" + type.getDescriptor() + ")L" + wrapper + ";", false);
+        }
+    }
+
+    /**
+     * 栈顶的Object拆箱成基本类型,引用类型强转
+     */
+    public static void unbox(MethodVisitor mv, Type type) {
+        String wrapper = wrapper(type);
+        if (wrapper == null) {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, type.getSort() == Type.ARRAY ? type.getDescriptor() : type.getInternalName());
+            return;
+        }
+        mv.visitTypeInsn(Opcodes.CHECKCAST, wrapper);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapper, type.getClassName() + "Value", "()" + type.getDescriptor(), false);
+    }
+
+    /**
+     * 基本类型对应的包装类,不是基本类型返回null
+     */
+    public static String wrapper(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return "java/lang/Boolean";
+            case Type.CHAR:
+                return "java/lang/Character";
+            case Type.BYTE:
+                return "java/lang/Byte";
+            case Type.SHORT:
+                return "java/lang/Short";
+            case Type.INT:
+                return "java/lang/Integer";
+            case Type.FLOAT:
+                return "java/lang/Float";
+            case Type.LONG:
+                return "java/lang/Long";
+            case Type.DOUBLE:
+                return "java/lang/Double";
+            default:
+                return null;
+        }
+    }
+}
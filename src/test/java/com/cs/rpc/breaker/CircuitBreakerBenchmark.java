@@ -0,0 +1,67 @@
+package com.cs.rpc.breaker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author ：cs
+ * @description：熔断器的开销(JMH):关闭状态下一次许可+记录结果,打开状态下拒绝一次调用
+ *      带GC profiler运行,gc.alloc.rate.norm是每次操作分配的字节数,拒绝时应为0
+ *      运行: java -cp test-classes:classes:依赖 com.cs.rpc.breaker.CircuitBreakerBenchmark
+ * @date ：2026/10/18 14:40
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CircuitBreakerBenchmark {
+
+    private CircuitBreakerRegistry registry;
+    private InetSocketAddress address;
+
+    @Setup
+    public void setup() {
+        registry = new CircuitBreakerRegistry();
+        address = new InetSocketAddress("127.0.0.1", 13567);
+        CircuitBreaker open = registry.get(address, "demo#open()");
+        for (int i = 0; i < CircuitBreaker.MIN_CALLS; i++) {
+            open.onResult(open.acquire(), 1000, false);
+        }
+    }
+
+    @Benchmark
+    public long closed() {
+        CircuitBreaker breaker = registry.get(address, "demo#closed()");
+        long permit = breaker.acquire();
+        breaker.onResult(permit, 1000, true);
+        return permit;
+    }
+
+    @Benchmark
+    public Object openReject() {
+        CircuitBreaker breaker = registry.get(address, "demo#open()");
+        return breaker.acquire() < 0 ? breaker.getRejection() : null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CircuitBreakerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.cs.rpc.breaker;
+
+import com.cs.rpc.exception.CsRpcCircuitOpenException;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ：cs
+ * @description：熔断器注册表的清理,以及打开时共享的拒绝异常不会被调用方修改
+ * @date ：2026/10/18 14:40
+ */
+public class CircuitBreakerRegistryTest {
+
+    private final InetSocketAddress a = new InetSocketAddress("127.0.0.1", 31001);
+    private final InetSocketAddress b = new InetSocketAddress("127.0.0.1", 31002);
+
+    @Test
+    public void retainDropsBreakersOfProvidersThatLeftDiscovery() {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry();
+        CircuitBreaker keep = registry.get(a, "demo#m()");
+        CircuitBreaker drop = registry.get(b, "demo#m()");
+        assertSame(keep, registry.get(a, "demo#m()"));
+
+        registry.retain(Collections.singleton(a));
+        assertSame(keep, registry.get(a, "demo#m()"));
+        //重新上线后是新的熔断器
+        CircuitBreaker recreated = registry.get(b, "demo#m()");
+        assertNotSame(drop, recreated);
+        assertEquals(CircuitBreaker.State.CLOSED, recreated.getState());
+    }
+
+    @Test
+    public void openBreakerRejectsWithSharedImmutableException() {
+        CircuitBreaker breaker = openBreaker();
+        assertTrue(breaker.acquire() < 0);
+        CsRpcCircuitOpenException rejection = breaker.getRejection();
+        assertSame(rejection, breaker.getRejection());
+
+        //不记录堆栈,调用方也改不了
+        assertEquals(0, rejection.getStackTrace().length);
+        rejection.setStackTrace(new Throwable().getStackTrace());
+        assertEquals(0, rejection.getStackTrace().length);
+        rejection.addSuppressed(new RuntimeException("other"));
+        assertEquals(0, rejection.getSuppressed().length);
+        try {
+            rejection.initCause(new RuntimeException("cause"));
+            fail();
+        } catch (IllegalStateException expected) {
+            assertNull(rejection.getCause());
+        }
+    }
+
+    @Test
+    public void failedFuturesAreNotShared() throws InterruptedException {
+        CsRpcCircuitOpenException rejection = openBreaker().getRejection();
+        CompletableFuture<Object> first = rejection.newFailedFuture();
+        CompletableFuture<Object> second = rejection.newFailedFuture();
+        assertNotSame(first, second);
+        //一个调用方修改自己的future不影响其他调用方
+        first.obtrudeValue("hijacked");
+        assertFailedWith(rejection, second);
+        assertFailedWith(rejection, rejection.newFailedFuture());
+    }
+
+    @Test
+    public void failedStageIsReadOnly() throws InterruptedException {
+        CsRpcCircuitOpenException rejection = openBreaker().getRejection();
+        CompletionStage<Object> stage = rejection.getFailedStage();
+        assertSame(stage, rejection.getFailedStage());
+        //只读的stage不能被当作CompletableFuture修改
+        if (stage instanceof CompletableFuture) {
+            try {
+                ((CompletableFuture<Object>) stage).complete("hijacked");
+                fail();
+            } catch (UnsupportedOperationException expected) {
+                //minimalCompletionStage不支持修改
+            }
+        }
+        CompletableFuture<Object> copy = stage.toCompletableFuture();
+        copy.obtrudeValue("hijacked");
+        assertFailedWith(rejection, rejection.getFailedStage().toCompletableFuture());
+    }
+
+    private static void assertFailedWith(CsRpcCircuitOpenException rejection, CompletableFuture<Object> future)
+            throws InterruptedException {
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(rejection, e.getCause());
+        }
+    }
+
+    private CircuitBreaker openBreaker() {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry();
+        CircuitBreaker breaker = registry.get(a, "demo#open()");
+        for (int i = 0; i < CircuitBreaker.MIN_CALLS; i++) {
+            breaker.onResult(breaker.acquire(), 1000, false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
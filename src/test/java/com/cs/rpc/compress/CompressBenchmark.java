@@ -0,0 +1,86 @@
+package com.cs.rpc.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author ：cs
+ * @description：LZ4与GZIP的吞吐对比(JMH),数据为类似序列化后对象的数据,走编解码器实际使用的ByteBuf接口
+ *      运行: java -cp test-classes:classes:依赖 com.cs.rpc.compress.CompressBenchmark
+ *      吞吐(MB/s) = size / 每次操作的耗时
+ * @date ：2026/10/18 11:00
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressBenchmark {
+
+    @Param({"lz4", "gzip"})
+    private String codec;
+
+    @Param({"16384", "1048576"})
+    private int size;
+
+    private Compress compress;
+    private ByteBuf raw;
+    private ByteBuf compressed;
+    private ByteBuf out;
+
+    @Setup
+    public void setup() {
+        compress = "lz4".equals(codec) ? new Lz4Compress() : new GzipCompress();
+        raw = Unpooled.buffer(size).writeBytes(CompressTestData.serializedLike(new Random(1), size));
+        compressed = Unpooled.buffer();
+        compress.compress(raw, compressed);
+        raw.readerIndex(0);
+        out = Unpooled.buffer(size * 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        raw.release();
+        compressed.release();
+        out.release();
+    }
+
+    @Benchmark
+    public int compress() {
+        raw.readerIndex(0);
+        out.clear();
+        compress.compress(raw, out);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public int decompress() {
+        compressed.readerIndex(0);
+        out.clear();
+        compress.decompress(compressed, out);
+        return out.writerIndex();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CompressBenchmark.class.getSimpleName()).build()).run();
+    }
+}
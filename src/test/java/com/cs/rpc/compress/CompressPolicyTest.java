@@ -0,0 +1,107 @@
+package com.cs.rpc.compress;
+
+import com.cs.rpc.constant.CompressTypeEnum;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ：cs
+ * @description：压缩策略:小数据不压缩,压缩率差的方法在足够样本后停止压缩,探测到效果变好后恢复,阈值按压缩类型自动选择
+ *      抽样和探测是随机的,断言只依赖确定的部分(样本数上限、探测比例的量级)
+ * @date ：2026/10/18 17:40
+ */
+public class CompressPolicyTest {
+
+    private static final String METHOD = "demo#list()";
+    private static final int LARGE = 4096;
+
+    @Test
+    public void skipsBelowThreshold() {
+        CompressPolicy policy = new CompressPolicy();
+        policy.configure(100, true, 0.9);
+        assertFalse(policy.shouldCompress(METHOD, 99));
+        assertTrue(policy.shouldCompress(METHOD, 100));
+        assertFalse(policy.shouldCompress(null, 99));
+    }
+
+    @Test
+    public void thresholdFollowsCompressTypeUnlessConfigured() {
+        CompressPolicy policy = new CompressPolicy();
+        policy.configure(-1, true, 0.9);
+        assertFalse(policy.shouldCompress(null, 1023));
+        assertTrue(policy.shouldCompress(null, 1024));
+
+        //带字典的deflate对小消息也有效
+        policy.setCompressType(CompressTypeEnum.DEFLATE_DICT.getCode());
+        assertFalse(policy.shouldCompress(null, 63));
+        assertTrue(policy.shouldCompress(null, 64));
+
+        //显式配置的阈值不随压缩类型变化
+        policy.configure(200, true, 0.9);
+        assertFalse(policy.shouldCompress(null, 199));
+        policy.setCompressType(CompressTypeEnum.GZIP.getCode());
+        assertTrue(policy.shouldCompress(null, 200));
+
+        policy.configure(-1, true, 0.9);
+        assertFalse(policy.shouldCompress(null, 1023));
+    }
+
+    @Test
+    public void disablesOnlyAfterMinSamples() {
+        CompressPolicy policy = new CompressPolicy();
+        policy.configure(0, true, 0.9);
+        //15次记录最多15个样本,不足MIN_SAMPLES,压缩率再差也不停止
+        for (int i = 0; i < 15; i++) {
+            policy.record(METHOD, LARGE, LARGE);
+        }
+        assertEquals(1000, compressed(policy, 1000));
+
+        for (int i = 0; i < 10000; i++) {
+            policy.record(METHOD, LARGE, LARGE);
+        }
+        //停止后只有约1/256的探测
+        int probes = compressed(policy, 10000);
+        assertTrue("探测次数:" + probes, probes > 0 && probes < 200);
+        //其他方法不受影响
+        assertTrue(policy.shouldCompress("demo#other()", LARGE));
+    }
+
+    @Test
+    public void reenablesWhenProbesImprove() {
+        CompressPolicy policy = new CompressPolicy();
+        policy.configure(0, true, 0.9);
+        for (int i = 0; i < 10000; i++) {
+            policy.record(METHOD, LARGE, LARGE);
+        }
+        assertTrue(compressed(policy, 1000) < 1000);
+
+        //停止压缩后每次探测都计入,压缩率降到maxRatio以下立即恢复
+        for (int i = 0; i < 10; i++) {
+            policy.record(METHOD, LARGE, LARGE / 4);
+        }
+        assertEquals(1000, compressed(policy, 1000));
+    }
+
+    @Test
+    public void nonAdaptiveNeverDisables() {
+        CompressPolicy policy = new CompressPolicy();
+        policy.configure(0, false, 0.9);
+        for (int i = 0; i < 10000; i++) {
+            policy.record(METHOD, LARGE, LARGE);
+        }
+        assertEquals(1000, compressed(policy, 1000));
+    }
+
+    private static int compressed(CompressPolicy policy, int calls) {
+        int compressed = 0;
+        for (int i = 0; i < calls; i++) {
+            if (policy.shouldCompress(METHOD, LARGE)) {
+                compressed++;
+            }
+        }
+        return compressed;
+    }
+}
@@ -0,0 +1,55 @@
+package com.cs.rpc.compress;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * @author ：cs
+ * @description：压缩测试和基准测试用的数据:随机数据、少量字符的重复数据、类似序列化后对象的数据
+ * @date ：2026/10/18 10:50
+ */
+final class CompressTestData {
+
+    private static final String[] WORDS = {"interfaceName", "methodName", "com.cs.rpc.", "version", "1.0", "parameters", "\u0012\u0008"};
+
+    private CompressTestData() {
+    }
+
+    static byte[] random(Random random, int length) {
+        switch (random.nextInt(3)) {
+            case 0:
+                byte[] data = new byte[length];
+                random.nextBytes(data);
+                return data;
+            case 1:
+                return lowEntropy(random, length);
+            default:
+                return serializedLike(random, length);
+        }
+    }
+
+    static byte[] lowEntropy(Random random, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(3));
+        }
+        return data;
+    }
+
+    /**
+     * 类似序列化后的对象:重复的字段名加随机的值
+     */
+    static byte[] serializedLike(Random random, int length) {
+        byte[] data = new byte[length];
+        int i = 0;
+        while (i < length) {
+            byte[] word = random.nextInt(4) == 0
+                    ? new byte[]{(byte) random.nextInt(256)}
+                    : WORDS[random.nextInt(WORDS.length)].getBytes(StandardCharsets.UTF_8);
+            int n = Math.min(word.length, length - i);
+            System.arraycopy(word, 0, data, i, n);
+            i += n;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,88 @@
+package com.cs.rpc.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author ：cs
+ * @description：小消息上带字典的deflate与gzip的单条耗时对比(JMH),压缩率见DeflateDictCompressTest
+ * @date ：2026/10/18 11:40
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeflateDictBenchmark {
+
+    private final GzipCompress gzip = new GzipCompress();
+    private final DeflateDictCompress dict = new DeflateDictCompress();
+    private CompressionDictionary dictionary;
+    private ByteBuf[] messages;
+    private ByteBuf[] compressed;
+    private ByteBuf out;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<byte[]> samples = OrderSamples.serialized(1128, 42);
+        dictionary = new CompressionDictionary(1, "order", 1,
+                DictionaryTrainer.train(samples.subList(0, 128), DictionaryTrainer.DICTIONARY_SIZE));
+        messages = new ByteBuf[1000];
+        compressed = new ByteBuf[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = Unpooled.wrappedBuffer(samples.get(128 + i));
+            compressed[i] = Unpooled.buffer();
+            dict.compress(messages[i].duplicate(), compressed[i], dictionary);
+        }
+        out = Unpooled.buffer(4096);
+    }
+
+    private int next() {
+        int i = next;
+        next = i + 1 == messages.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public int gzipCompress() {
+        out.clear();
+        gzip.compress(messages[next()].duplicate(), out);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public int dictCompress() {
+        out.clear();
+        dict.compress(messages[next()].duplicate(), out, dictionary);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public int dictDecompress() {
+        out.clear();
+        dict.decompress(compressed[next()].duplicate(), out, id -> dictionary);
+        return out.writerIndex();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DeflateDictBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.cs.rpc.compress;
+
+import com.cs.rpc.exception.CsRpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ：cs
+ * @description：带字典的deflate:往返、压缩率、缺少字典和超过声明长度的数据
+ * @date ：2026/10/18 11:40
+ */
+public class DeflateDictCompressTest {
+
+    private final DeflateDictCompress compress = new DeflateDictCompress();
+
+    @Test
+    public void dictionaryBeatsGzipOnSmallMessages() {
+        List<byte[]> messages = OrderSamples.serialized(1000, 42);
+        CompressionDictionary dictionary = new CompressionDictionary(1, "order", 1,
+                DictionaryTrainer.train(messages.subList(0, 128), DictionaryTrainer.DICTIONARY_SIZE));
+        GzipCompress gzip = new GzipCompress();
+        long raw = 0;
+        long gzipBytes = 0;
+        long dictBytes = 0;
+        for (byte[] message : messages.subList(128, messages.size())) {
+            raw += message.length;
+            gzipBytes += gzip.compress(message).length;
+            ByteBuf out = Unpooled.buffer();
+            compress.compress(Unpooled.wrappedBuffer(message), out, dictionary);
+            dictBytes += out.readableBytes();
+            ByteBuf back = Unpooled.buffer();
+            compress.decompress(out, back, id -> id == 1 ? dictionary : null);
+            assertArrayEquals(message, ByteBufUtil.getBytes(back));
+        }
+        assertTrue("字典压缩率:" + (double) dictBytes / raw + " gzip:" + (double) gzipBytes / raw,
+                dictBytes < gzipBytes * 0.7);
+    }
+
+    @Test(expected = CsRpcException.class)
+    public void missingDictionaryIsAnError() {
+        CompressionDictionary dictionary = new CompressionDictionary(7, "order", 1, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        ByteBuf out = Unpooled.buffer();
+        compress.compress(Unpooled.wrappedBuffer(new byte[100]), out, dictionary);
+        compress.decompress(out, Unpooled.buffer(), id -> null);
+    }
+
+    @Test
+    public void stopsAsSoonAsOutputExceedsDeclaredLength() {
+        //64MB的0压缩后只有几十KB,头部却声明原始长度为1000
+        byte[] zeros = new byte[64 * 1024 * 1024];
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(zeros);
+        deflater.finish();
+        byte[] deflated = new byte[1024 * 1024];
+        int length = deflater.deflate(deflated);
+        deflater.end();
+        ByteBuf bomb = Unpooled.buffer().writeInt(0).writeInt(1000).writeBytes(deflated, 0, length);
+        ByteBuf out = Unpooled.buffer(0);
+        try {
+            compress.decompress(bomb, out);
+            fail("应该拒绝超过声明长度的数据");
+        } catch (CsRpcException expected) {
+            assertTrue("已解压:" + out.writerIndex(), out.writerIndex() <= 1001);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.cs.rpc.compress;
+
+import com.cs.rpc.exception.CsRpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ：cs
+ * @description：gzip压缩的往返测试,以及解压数据量受尾部声明长度的限制
+ * @date ：2026/10/18 11:20
+ */
+public class GzipCompressTest {
+
+    private final GzipCompress gzip = new GzipCompress();
+
+    @Test
+    public void roundTripsAndReadsStandardGzip() throws IOException {
+        Random random = new Random(29);
+        for (int i = 0; i < 200; i++) {
+            byte[] data = CompressTestData.random(random, random.nextInt(64 * 1024));
+            assertArrayEquals(data, gzip.decompress(gzip.compress(data)));
+            assertArrayEquals(data, gzip.decompress(jdkGzip(data)));
+        }
+    }
+
+    @Test
+    public void stopsAsSoonAsOutputExceedsDeclaredLength() throws IOException {
+        //64MB的0压缩后只有几十KB,尾部却声明原始长度为1000
+        byte[] bomb = jdkGzip(new byte[64 * 1024 * 1024]);
+        int declared = 1000;
+        int end = bomb.length;
+        bomb[end - 4] = (byte) declared;
+        bomb[end - 3] = (byte) (declared >>> 8);
+        bomb[end - 2] = 0;
+        bomb[end - 1] = 0;
+        ByteBuf out = Unpooled.buffer(0);
+        try {
+            gzip.decompress(Unpooled.wrappedBuffer(bomb), out);
+            fail("应该拒绝超过声明长度的数据");
+        } catch (CsRpcException expected) {
+            //最多比声明的长度多解压1个字节
+            assertTrue("已解压:" + out.writerIndex(), out.writerIndex() <= declared + 1);
+        } finally {
+            out.release();
+        }
+    }
+
+    static byte[] jdkGzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,149 @@
+package com.cs.rpc.compress;
+
+import com.cs.rpc.constant.CsRpcConstants;
+import com.cs.rpc.exception.CsRpcException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ：cs
+ * @description：LZ4压缩的往返模糊测试
+ * @date ：2026/10/18 10:50
+ */
+public class Lz4CompressTest {
+
+    private final Lz4Compress lz4 = new Lz4Compress();
+
+    @Test
+    public void roundTripsRandomInputs() {
+        Random random = new Random(13);
+        for (int i = 0; i < 5000; i++) {
+            byte[] data = CompressTestData.random(random, random.nextInt(i < 100 ? 32 : 64 * 1024));
+            assertArrayEquals("长度:" + data.length, data, lz4.decompress(lz4.compress(data)));
+        }
+    }
+
+    @Test
+    public void roundTripsThroughHeapAndDirectByteBufs() {
+        Random random = new Random(17);
+        for (int i = 0; i < 1000; i++) {
+            byte[] data = CompressTestData.random(random, random.nextInt(64 * 1024));
+            for (boolean directIn : new boolean[]{false, true}) {
+                for (boolean directOut : new boolean[]{false, true}) {
+                    ByteBuf in = directIn ? Unpooled.directBuffer(data.length) : Unpooled.buffer(data.length);
+                    in.writeBytes(data);
+                    ByteBuf compressed = directOut ? Unpooled.directBuffer() : Unpooled.buffer();
+                    ByteBuf back = directIn ? Unpooled.buffer() : Unpooled.directBuffer();
+                    try {
+                        lz4.compress(in, compressed);
+                        assertEquals(0, in.readableBytes());
+                        lz4.decompress(compressed, back);
+                        assertEquals(0, compressed.readableBytes());
+                        assertArrayEquals(data, ByteBufUtil.getBytes(back));
+                    } finally {
+                        in.release();
+                        compressed.release();
+                        back.release();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void byteArrayAndByteBufFormatsAreTheSame() {
+        byte[] data = CompressTestData.random(new Random(19), 32 * 1024);
+        ByteBuf compressed = Unpooled.buffer();
+        lz4.compress(Unpooled.wrappedBuffer(data), compressed);
+        assertArrayEquals(data, lz4.decompress(ByteBufUtil.getBytes(compressed)));
+    }
+
+    @Test
+    public void decodesAStandardLz4Block() {
+        //4B原始长度 + 只有字面量的LZ4块:token 0x50表示5个字面量
+        byte[] frame = {0, 0, 0, 5, 0x50, 'h', 'e', 'l', 'l', 'o'};
+        assertEquals("hello", new String(lz4.decompress(frame), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void corruptInputOnlyRaisesCsRpcException() {
+        Random random = new Random(23);
+        for (int i = 0; i < 5000; i++) {
+            byte[] compressed = lz4.compress(CompressTestData.random(random, 1 + random.nextInt(8 * 1024)));
+            byte[] broken = compressed.clone();
+            if (random.nextBoolean()) {
+                broken[4 + random.nextInt(broken.length - 4)] ^= (byte) (1 + random.nextInt(255));
+            } else {
+                broken = Arrays.copyOf(broken, 4 + random.nextInt(broken.length - 4));
+            }
+            try {
+                lz4.decompress(broken);
+            } catch (CsRpcException expected) {
+                //损坏的数据只能解出错误结果或抛出CsRpcException
+            }
+        }
+    }
+
+    @Test
+    public void rejectsIllegalDeclaredLength() {
+        for (byte[] frame : new byte[][]{{1, 2}, {(byte) 0x80, 0, 0, 0, 0x10}, {0x7f, 0, 0, 0, 0x10}}) {
+            try {
+                lz4.decompress(frame);
+                fail("应该拒绝:" + Arrays.toString(frame));
+            } catch (CsRpcException expected) {
+                //期望的结果
+            }
+        }
+    }
+
+    @Test
+    public void rejectsOversizedDeclarationBeforeAllocating() {
+        //声明的长度超过压缩数据的255倍
+        assertRejected(declared(1024 * 1024, 4));
+        //压缩比合法但超过最大帧长度
+        assertRejected(declared(CsRpcConstants.MAX_FRAME_LENGTH + 1, 64 * 1024));
+    }
+
+    @Test
+    public void highlyCompressibleDataIsWithinTheRatioBound() {
+        byte[] zeros = new byte[CsRpcConstants.MAX_FRAME_LENGTH];
+        byte[] compressed = lz4.compress(zeros);
+        assertArrayEquals(zeros, lz4.decompress(compressed));
+    }
+
+    /**
+     * 4B声明的原始长度 + srcLength字节的压缩数据(内容无关,应该在解压之前就被拒绝)
+     */
+    private static byte[] declared(int length, int srcLength) {
+        byte[] frame = new byte[4 + srcLength];
+        Unpooled.wrappedBuffer(frame).setInt(0, length);
+        return frame;
+    }
+
+    private void assertRejected(byte[] frame) {
+        try {
+            lz4.decompress(frame);
+            fail("应该拒绝");
+        } catch (CsRpcException expected) {
+            //期望的结果
+        }
+        //输出缓冲最多只能写16字节,先申请内存再检查会抛出IndexOutOfBoundsException
+        ByteBuf out = Unpooled.buffer(0, 16);
+        try {
+            lz4.decompress(Unpooled.wrappedBuffer(frame), out);
+            fail("应该拒绝");
+        } catch (CsRpcException expected) {
+            assertEquals(0, out.capacity());
+        }
+    }
+}
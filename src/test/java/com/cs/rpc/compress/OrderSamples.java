@@ -0,0 +1,52 @@
+package com.cs.rpc.compress;
+
+import com.cs.rpc.serialize.ProtostuffSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author ：cs
+ * @description：字典压缩测试用的小消息:序列化后的订单,字段名和枚举值大量重复,单条只有一百多字节
+ * @date ：2026/10/18 11:40
+ */
+final class OrderSamples {
+
+    private static final String[] STATUS = {"CREATED", "PAID", "SHIPPED", "FINISHED", "CANCELED"};
+
+    private OrderSamples() {
+    }
+
+    static List<byte[]> serialized(int count, long seed) {
+        ProtostuffSerializer serializer = new ProtostuffSerializer();
+        Random random = new Random(seed);
+        List<byte[]> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Order order = new Order(
+                    "ORD" + (100000000L + random.nextInt(900000000)),
+                    "user-" + random.nextInt(100000),
+                    STATUS[random.nextInt(STATUS.length)],
+                    "上海市浦东新区张江路" + random.nextInt(1000) + "号",
+                    random.nextInt(100000) / 100.0,
+                    1760000000000L - random.nextInt(1000000));
+            messages.add(serializer.serialize(order));
+        }
+        return messages;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    static class Order {
+        private String orderNo;
+        private String userId;
+        private String status;
+        private String address;
+        private double amount;
+        private long createTime;
+    }
+}
@@ -0,0 +1,24 @@
+package com.cs.rpc.constant;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ：cs
+ * @description：哪些响应算服务提供方的失败:500和503算,400、404是调用方的问题不算,老版本没有响应码的是成功
+ * @date ：2026/10/18 19:10
+ */
+public class ResponseCodeEnumTest {
+
+    @Test
+    public void onlyServerSideErrorsCountAsProviderFailures() {
+        assertTrue(ResponseCodeEnum.isProviderFailure(ResponseCodeEnum.SERVICE_EXCEPTION.getCode()));
+        assertTrue(ResponseCodeEnum.isProviderFailure(ResponseCodeEnum.SERVER_BUSY.getCode()));
+        assertFalse(ResponseCodeEnum.isProviderFailure(ResponseCodeEnum.SUCCESS.getCode()));
+        assertFalse(ResponseCodeEnum.isProviderFailure(ResponseCodeEnum.BAD_REQUEST.getCode()));
+        assertFalse(ResponseCodeEnum.isProviderFailure(ResponseCodeEnum.NOT_FOUND.getCode()));
+        assertFalse(ResponseCodeEnum.isProviderFailure(null));
+    }
+}
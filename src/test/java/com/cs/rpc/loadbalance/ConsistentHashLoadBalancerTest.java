@@ -0,0 +1,186 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.nacos.ServiceInstances;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ：cs
+ * @description：一致性哈希:分布均匀、提供方离开/加入时只有约1/N的键移动且只移动受影响的键、增量重建和全量构建结果一致
+ * @date ：2026/10/18 14:00
+ */
+public class ConsistentHashLoadBalancerTest {
+
+    private static final int PROVIDERS = 10;
+    private static final int KEYS = 200_000;
+
+    @Test
+    public void keysAreSpreadEvenly() {
+        ConsistentHashLoadBalancer.Ring ring = ConsistentHashLoadBalancer.Ring.build(null, instances(providers(PROVIDERS)));
+        Map<InetSocketAddress, Integer> load = new HashMap<>();
+        for (int k = 0; k < KEYS; k++) {
+            load.merge(ring.locate(key(k)), 1, Integer::sum);
+        }
+        assertEquals(PROVIDERS, load.size());
+        //每个提供方160个虚拟节点,分到的比例标准差约为1/sqrt(160)≈8%,10个里最大的偏差不超过25%
+        double mean = (double) KEYS / PROVIDERS;
+        for (int count : load.values()) {
+            assertTrue("偏差过大:" + count, Math.abs(count - mean) / mean < 0.25);
+        }
+    }
+
+    @Test
+    public void onlyKeysOfLeavingProviderMove() {
+        ServiceInstances instances = instances(providers(PROVIDERS));
+        ConsistentHashLoadBalancer.Ring ring = ConsistentHashLoadBalancer.Ring.build(null, instances);
+        InetSocketAddress leaving = instances.getAddresses()[3];
+        ConsistentHashLoadBalancer.Ring removed = ConsistentHashLoadBalancer.Ring.build(ring, instances.without(leaving));
+
+        int moved = 0;
+        for (int k = 0; k < KEYS; k++) {
+            InetSocketAddress before = ring.locate(key(k));
+            InetSocketAddress after = removed.locate(key(k));
+            if (!after.equals(before)) {
+                moved++;
+                assertEquals("不属于离开的提供方的键发生了移动", leaving, before);
+            } else {
+                assertNotEquals(leaving, after);
+            }
+        }
+        assertRemapAboutOneOverN(moved, PROVIDERS);
+    }
+
+    @Test
+    public void onlyKeysTakenByNewProviderMove() {
+        List<Instance> list = providers(PROVIDERS - 1);
+        ServiceInstances instances = instances(list);
+        ConsistentHashLoadBalancer.Ring ring = ConsistentHashLoadBalancer.Ring.build(null, instances);
+        list.add(provider("10.0.0.100"));
+        ServiceInstances joined = instances(list);
+        ConsistentHashLoadBalancer.Ring added = ConsistentHashLoadBalancer.Ring.build(ring, joined);
+        InetSocketAddress newcomer = joined.getAddresses()[joined.size() - 1];
+
+        int moved = 0;
+        for (int k = 0; k < KEYS; k++) {
+            InetSocketAddress after = added.locate(key(k));
+            if (!after.equals(ring.locate(key(k)))) {
+                moved++;
+                assertEquals("移动的键没有分到新的提供方", newcomer, after);
+            }
+        }
+        assertRemapAboutOneOverN(moved, PROVIDERS);
+    }
+
+    @Test
+    public void incrementalBuildEqualsFullBuild() {
+        List<Instance> list = providers(PROVIDERS);
+        ConsistentHashLoadBalancer.Ring ring = ConsistentHashLoadBalancer.Ring.build(null, instances(list));
+
+        //一个离开、一个加入
+        list.remove(3);
+        list.add(provider("10.0.0.100"));
+        ring = assertSameAsFullBuild(ring, instances(list));
+        //权重变化
+        list.get(0).setWeight(2.5);
+        ring = assertSameAsFullBuild(ring, instances(list));
+        //没有变化
+        ring = assertSameAsFullBuild(ring, instances(list));
+        //只剩一个
+        assertSameAsFullBuild(ring, instances(list.subList(0, 1)));
+    }
+
+    @Test
+    public void weightScalesVirtualNodes() {
+        List<Instance> list = providers(2);
+        list.get(1).setWeight(3);
+        ConsistentHashLoadBalancer.Ring ring = ConsistentHashLoadBalancer.Ring.build(null, instances(list));
+        int heavy = 0;
+        InetSocketAddress heavyAddress = instances(list).getAddresses()[1];
+        for (InetSocketAddress owner : ring.owners) {
+            if (owner.equals(heavyAddress)) {
+                heavy++;
+            }
+        }
+        assertEquals(480, heavy);
+        assertEquals(640, ring.points.length);
+    }
+
+    @Test
+    public void sameRouteKeySelectsSameProviderUntilSnapshotChanges() {
+        ConsistentHashLoadBalancer loadBalancer = new ConsistentHashLoadBalancer();
+        List<Instance> list = providers(PROVIDERS);
+        ServiceInstances instances = instances(list);
+        Map<Integer, InetSocketAddress> selected = new HashMap<>();
+        for (int k = 0; k < 1000; k++) {
+            selected.put(k, loadBalancer.select("demo", instances, "user-" + k));
+        }
+        for (int k = 0; k < 1000; k++) {
+            assertSame(selected.get(k), loadBalancer.select("demo", instances, "user-" + k));
+        }
+        //新的快照重建环,离开的提供方不再被选中
+        InetSocketAddress leaving = instances.getAddresses()[0];
+        ServiceInstances without = instances.without(leaving);
+        for (int k = 0; k < 1000; k++) {
+            InetSocketAddress address = loadBalancer.select("demo", without, "user-" + k);
+            assertNotEquals(leaving, address);
+            if (!selected.get(k).equals(leaving)) {
+                assertEquals(selected.get(k), address);
+            }
+        }
+        //没有路由键时在实例中随机选择
+        assertTrue(without.indexOf(loadBalancer.select("demo", without, null)) >= 0);
+    }
+
+    private static ConsistentHashLoadBalancer.Ring assertSameAsFullBuild(ConsistentHashLoadBalancer.Ring old,
+                                                                        ServiceInstances instances) {
+        ConsistentHashLoadBalancer.Ring incremental = ConsistentHashLoadBalancer.Ring.build(old, instances);
+        ConsistentHashLoadBalancer.Ring full = ConsistentHashLoadBalancer.Ring.build(null, instances);
+        assertArrayEquals(full.points, incremental.points);
+        assertArrayEquals(full.owners, incremental.owners);
+        return incremental;
+    }
+
+    /**
+     * 移动的比例在理想值1/N上下30%以内
+     */
+    private static void assertRemapAboutOneOverN(int moved, int providers) {
+        double fraction = (double) moved / KEYS;
+        double ideal = 1.0 / providers;
+        assertTrue("移动比例:" + fraction, Math.abs(fraction - ideal) < ideal * 0.3);
+    }
+
+    private static long key(int k) {
+        return ConsistentHashLoadBalancer.hash("user-" + k);
+    }
+
+    private static List<Instance> providers(int count) {
+        List<Instance> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(provider("10.0.0." + (i + 1)));
+        }
+        return list;
+    }
+
+    private static Instance provider(String ip) {
+        Instance instance = new Instance();
+        instance.setIp(ip);
+        instance.setPort(13567);
+        return instance;
+    }
+
+    private static ServiceInstances instances(List<Instance> list) {
+        return ServiceInstances.of(new ArrayList<>(list));
+    }
+}
@@ -0,0 +1,199 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.nacos.ServiceInstances;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * @author ：cs
+ * @description：负载均衡的本地模拟测试(离散事件模拟,虚拟时间,结果可重复)
+ *      每个提供方8个处理线程,超出的请求排队;请求按泊松过程到达,总负载约为总处理能力的70%
+ *      1.处理能力不同:5个权重相同的提供方,一个慢2倍,一个慢5倍
+ *      2.GC停顿:5个相同的提供方,其中一个每2秒停顿300ms
+ *      3.错误:5个相同的提供方,其中一个60%的请求快速失败
+ *      输出各提供方分到的请求比例、失败比例和延迟的p50/p99/p999
+ * @date ：2026/10/18 9:40
+ */
+public class LoadBalanceSimulator {
+
+    private static final int THREADS = 8;
+    private static final double UTILIZATION = 0.7;
+    private static final int REQUESTS = 500_000;
+
+    private static int nextPort = 20000;
+
+    private final String label;
+    private final LoadBalancer loadBalancer;
+    private final boolean ejection;
+    private final double[] serviceMillis;
+    /**
+     * 停顿周期和停顿时长(毫秒),周期为0表示不停顿
+     */
+    private final double[] pausePeriod;
+    private final double[] pauseMillis;
+    private final double[] failRate;
+
+    LoadBalanceSimulator(String label, LoadBalancer loadBalancer, boolean ejection,
+                         double[] serviceMillis, double[] pausePeriod, double[] pauseMillis, double[] failRate) {
+        this.label = label;
+        this.loadBalancer = loadBalancer;
+        this.ejection = ejection;
+        this.serviceMillis = serviceMillis;
+        this.pausePeriod = pausePeriod;
+        this.pauseMillis = pauseMillis;
+        this.failRate = failRate;
+    }
+
+    public static void main(String[] args) {
+        double[] none = new double[5];
+        double[] same = {1, 1, 1, 1, 1};
+
+        System.out.println("== 处理能力不同 ==");
+        double[] skewed = {1, 1, 1, 2, 5};
+        for (LoadBalancer loadBalancer : loadBalancers()) {
+            new LoadBalanceSimulator(loadBalancer.name(), loadBalancer, false, skewed, none, none, none).run(null);
+        }
+        double[] weights = new double[skewed.length];
+        for (int i = 0; i < skewed.length; i++) {
+            weights[i] = 1 / skewed[i];
+        }
+        new LoadBalanceSimulator("weighted", new RoundRobinLoadBalancer(), false, skewed, none, none, none).run(weights);
+
+        System.out.println("== GC停顿 ==");
+        double[] period = {0, 0, 0, 0, 2000};
+        double[] pause = {0, 0, 0, 0, 300};
+        for (LoadBalancer loadBalancer : loadBalancers()) {
+            new LoadBalanceSimulator(loadBalancer.name(), loadBalancer, false, same, period, pause, none).run(null);
+            new LoadBalanceSimulator(loadBalancer.name() + "+eject", loadBalancer, true, same, period, pause, none).run(null);
+        }
+
+        System.out.println("== 错误 ==");
+        double[] failing = {0, 0, 0, 0, 0.6};
+        for (LoadBalancer loadBalancer : loadBalancers()) {
+            new LoadBalanceSimulator(loadBalancer.name(), loadBalancer, false, same, none, none, failing).run(null);
+            new LoadBalanceSimulator(loadBalancer.name() + "+eject", loadBalancer, true, same, none, none, failing).run(null);
+        }
+    }
+
+    private static LoadBalancer[] loadBalancers() {
+        return new LoadBalancer[]{new RandomLoadBalancer(), new RoundRobinLoadBalancer(),
+                new PowerOfTwoLoadBalancer(), new LatencyAwareLoadBalancer()};
+    }
+
+    void run(double[] weights) {
+        int n = serviceMillis.length;
+        //每次模拟用新的端口,提供方的统计互不影响
+        int port = nextPort++;
+        List<Instance> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Instance instance = new Instance();
+            instance.setIp("127.0.0." + (i + 1));
+            instance.setPort(port);
+            if (weights != null) {
+                instance.setWeight(weights[i]);
+            }
+            list.add(instance);
+        }
+        ServiceInstances instances = ServiceInstances.of(list);
+        InetSocketAddress[] addresses = instances.getAddresses();
+        ProviderStatsRegistry registry = SingletonFactory.getInstance(ProviderStatsRegistry.class);
+        OutlierEjector ejector = SingletonFactory.getInstance(OutlierEjector.class);
+        String serviceName = "simulate" + port;
+
+        double capacity = 0;
+        for (double millis : serviceMillis) {
+            capacity += THREADS / millis;
+        }
+        double meanInterval = 1 / (capacity * UTILIZATION);
+        Random random = new Random(42);
+        //完成事件:[完成时间,提供方下标,请求下标,到达时间,是否失败]
+        PriorityQueue<double[]> completions = new PriorityQueue<>((x, y) -> Double.compare(x[0], y[0]));
+        int[] idle = new int[n];
+        Arrays.fill(idle, THREADS);
+        List<List<double[]>> queues = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            queues.add(new ArrayList<>());
+        }
+        int[] heads = new int[n];
+        long[] counts = new long[n];
+        double[] latencies = new double[REQUESTS];
+        long failures = 0;
+        double now = 0;
+        for (int r = 0; r <= REQUESTS; r++) {
+            now = r < REQUESTS ? now + exp(random, meanInterval) : Double.MAX_VALUE;
+            //先处理到达时间之前完成的请求
+            while (!completions.isEmpty() && completions.peek()[0] <= now) {
+                double[] done = completions.poll();
+                int p = (int) done[1];
+                double latency = done[0] - done[3];
+                latencies[(int) done[2]] = latency;
+                failures += (long) done[4];
+                registry.get(addresses[p]).end(nanos(done[0]), nanos(latency), done[4] == 0);
+                List<double[]> queue = queues.get(p);
+                if (heads[p] < queue.size()) {
+                    double[] waiting = queue.get(heads[p]++);
+                    completions.add(process(random, p, done[0], waiting[1], waiting[0]));
+                } else {
+                    idle[p]++;
+                }
+            }
+            if (r == REQUESTS) {
+                break;
+            }
+            ServiceInstances candidates = ejection ? ejector.filter(serviceName, instances, nanos(now)) : instances;
+            InetSocketAddress address = candidates.size() == 1
+                    ? candidates.getAddresses()[0] : loadBalancer.select(serviceName, candidates);
+            int p = instances.indexOf(address);
+            counts[p]++;
+            registry.get(address).begin();
+            if (idle[p] > 0) {
+                idle[p]--;
+                completions.add(process(random, p, now, r, now));
+            } else {
+                queues.get(p).add(new double[]{now, r});
+            }
+        }
+        Arrays.sort(latencies);
+        StringBuilder share = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            share.append(String.format("%5.1f%%", 100.0 * counts[i] / REQUESTS));
+        }
+        System.out.printf("%-18s share[%s ] fail %5.2f%% p50 %7.2fms p99 %9.2fms p999 %9.2fms%n", label, share,
+                100.0 * failures / REQUESTS, latencies[REQUESTS / 2], latencies[(int) (REQUESTS * 0.99)],
+                latencies[(int) (REQUESTS * 0.999)]);
+    }
+
+    /**
+     * 提供方p在start时刻开始处理一个请求,返回完成事件
+     * 失败的请求很快返回;处理期间遇到停顿时完成时间顺延
+     */
+    private double[] process(Random random, int p, double start, double request, double arrival) {
+        boolean fail = random.nextDouble() < failRate[p];
+        double service = fail ? 0.1 : exp(random, serviceMillis[p]);
+        double end = start + service;
+        if (pausePeriod[p] > 0) {
+            double pauseStart = Math.floor(start / pausePeriod[p]) * pausePeriod[p] + pausePeriod[p] / 2;
+            if (start >= pauseStart && start < pauseStart + pauseMillis[p]) {
+                end = pauseStart + pauseMillis[p] + service;
+            } else if (start < pauseStart && end > pauseStart) {
+                end += pauseMillis[p];
+            }
+        }
+        return new double[]{end, p, request, arrival, fail ? 1 : 0};
+    }
+
+    private static double exp(Random random, double mean) {
+        return -Math.log(1 - random.nextDouble()) * mean;
+    }
+
+    private static long nanos(double millis) {
+        return (long) (millis * 1_000_000);
+    }
+}
@@ -0,0 +1,134 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.constant.CsRpcConstants;
+import com.cs.rpc.nacos.ServiceInstances;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author ：cs
+ * @description：按标签和地区路由:3个地区各4个实例,地区a另有一个灰度实例,客户端在地区a,溢出阈值70%
+ * @date ：2026/10/18 14:20
+ */
+public class LocalityRouterTest {
+
+    private final LocalityRouter router = new LocalityRouter();
+    private List<Instance> list;
+    private ServiceInstances instances;
+
+    @Before
+    public void setUp() {
+        list = new ArrayList<>();
+        for (String zone : new String[]{"a", "b", "c"}) {
+            for (int i = 0; i < 4; i++) {
+                list.add(instance("10.0." + zone.charAt(0) % 10 + "." + (i + 1), zone, null));
+            }
+        }
+        list.add(instance("10.0.9.1", "a", "gray"));
+        instances = ServiceInstances.of(list);
+        router.configure("a", "", 0.7);
+    }
+
+    @Test
+    public void routesToLocalZoneWhenHealthy() {
+        ServiceInstances routed = router.route("demo", instances);
+        assertEquals(4, routed.size());
+        assertAllInZone(routed, "a");
+    }
+
+    @Test
+    public void spillsOverBelowThresholdAndRecovers() {
+        //剔除1个:本地区可用3/4=75%,仍在本地区
+        ServiceInstances oneDown = instances.without(instances.getAddresses()[0]);
+        ServiceInstances routed = router.route("demo", oneDown);
+        assertEquals(3, routed.size());
+        assertAllInZone(routed, "a");
+
+        //剔除2个:2/4=50%低于70%,溢出到所有地区(不带标签的实例)
+        ServiceInstances twoDown = oneDown.without(instances.getAddresses()[1]);
+        assertEquals(10, router.route("demo", twoDown).size());
+
+        //恢复
+        routed = router.route("demo", instances);
+        assertEquals(4, routed.size());
+        assertAllInZone(routed, "a");
+    }
+
+    @Test
+    public void unhealthyInstancesCountAgainstLocalZone() {
+        list.get(0).setHealthy(false);
+        list.get(1).setHealthy(false);
+        ServiceInstances withUnhealthy = ServiceInstances.of(list);
+        assertEquals(11, withUnhealthy.size());
+        assertEquals(10, router.route("demo", withUnhealthy).size());
+    }
+
+    @Test
+    public void localZoneWithoutInstancesSpillsOver() {
+        router.configure("d", "", 0.7);
+        assertEquals(12, router.route("demo", instances).size());
+    }
+
+    @Test
+    public void taggedClientOnlyCallsTaggedInstances() {
+        router.configure("a", "gray", 0.7);
+        ServiceInstances routed = router.route("demo", instances);
+        assertEquals(1, routed.size());
+        assertEquals("gray", routed.getInstances()[0].getMetadata().get(CsRpcConstants.METADATA_TAG));
+
+        //没有这个标签的实例时退回到不带标签的实例
+        router.configure("a", "blue", 0.7);
+        routed = router.route("demo", instances);
+        assertEquals(4, routed.size());
+        assertAllInZone(routed, "a");
+    }
+
+    @Test
+    public void untaggedClientCallsTaggedInstancesOnlyWhenNothingElse() {
+        List<Instance> tagged = new ArrayList<>();
+        tagged.add(instance("10.1.0.1", "a", "gray"));
+        tagged.add(instance("10.1.0.2", "b", "blue"));
+        assertEquals(1, router.route("tagged", ServiceInstances.of(tagged)).size());
+    }
+
+    @Test
+    public void withoutZoneOnlyFiltersByTag() {
+        router.configure("", "", 0.7);
+        assertEquals(12, router.route("demo", instances).size());
+    }
+
+    @Test
+    public void routeIsCachedPerSnapshot() {
+        ServiceInstances routed = router.route("demo", instances);
+        assertSame(routed, router.route("demo", instances));
+        //配置变化后重新计算
+        router.configure("b", "", 0.7);
+        ServiceInstances zoneB = router.route("demo", instances);
+        assertEquals(4, zoneB.size());
+        assertAllInZone(zoneB, "b");
+    }
+
+    private static void assertAllInZone(ServiceInstances routed, String zone) {
+        for (Instance instance : routed.getInstances()) {
+            assertEquals(zone, instance.getMetadata().get(CsRpcConstants.METADATA_ZONE));
+        }
+    }
+
+    private static Instance instance(String ip, String zone, String tag) {
+        Instance instance = new Instance();
+        instance.setIp(ip);
+        instance.setPort(13567);
+        instance.addMetadata(CsRpcConstants.METADATA_ZONE, zone);
+        if (tag != null) {
+            instance.addMetadata(CsRpcConstants.METADATA_TAG, tag);
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,134 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.nacos.ServiceInstances;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ：cs
+ * @description：异常点剔除:错误率和延迟异常的提供方剔除,同一服务最多剔除一半,剔除时间按退避翻倍,到期后重新参与选择
+ *      时间都由测试传入,样本直接写入ProviderStats;每个用例使用不同的端口和服务名,互不影响
+ * @date ：2026/10/18 16:10
+ */
+public class OutlierEjectorTest {
+
+    private final ProviderStatsRegistry registry = SingletonFactory.getInstance(ProviderStatsRegistry.class);
+    private final OutlierEjector ejector = new OutlierEjector();
+
+    @Test
+    public void unreachableProviderIsReadmittedAfterBackoff() {
+        ServiceInstances instances = instances(31001, 3);
+        InetSocketAddress unreachable = instances.getAddresses()[1];
+        registry.get(unreachable).eject();
+        long now = System.nanoTime();
+
+        ServiceInstances filtered = ejector.filter("unreachable", instances, now);
+        assertEquals(2, filtered.size());
+        assertTrue(filtered.indexOf(unreachable) < 0);
+        //nacos推送的快照不变
+        assertEquals(3, instances.size());
+
+        //第一次剔除1秒,到期后重新参与选择
+        assertSame(instances, ejector.filter("unreachable", instances, now + TimeUnit.SECONDS.toNanos(2)));
+    }
+
+    @Test
+    public void ejectsErroringProvider() {
+        ServiceInstances instances = instances(31101, 3);
+        long now = System.nanoTime();
+        //每5次失败4次,连续失败不到5次,只能由错误率判定
+        for (int i = 0; i < 20; i++) {
+            for (InetSocketAddress address : instances.getAddresses()) {
+                boolean erroring = address.equals(instances.getAddresses()[0]);
+                sample(address, now, 1, !erroring || i % 5 == 4);
+            }
+        }
+        ServiceInstances filtered = ejector.filter("erroring", instances, now);
+        assertEquals(2, filtered.size());
+        assertTrue(filtered.indexOf(instances.getAddresses()[0]) < 0);
+    }
+
+    @Test
+    public void ejectsSlowProvider() {
+        ServiceInstances instances = instances(31201, 5);
+        long now = System.nanoTime();
+        InetSocketAddress slow = instances.getAddresses()[2];
+        for (int i = 0; i < 20; i++) {
+            for (InetSocketAddress address : instances.getAddresses()) {
+                sample(address, now, address.equals(slow) ? 50 : 1, true);
+            }
+        }
+        ServiceInstances filtered = ejector.filter("slow", instances, now);
+        assertEquals(4, filtered.size());
+        assertTrue(filtered.indexOf(slow) < 0);
+    }
+
+    @Test
+    public void ejectsAtMostHalfOfTheService() {
+        ServiceInstances instances = instances(31301, 5);
+        long now = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            for (InetSocketAddress address : instances.getAddresses()) {
+                sample(address, now, 1, i % 5 == 4);
+            }
+        }
+        //全部异常时5个实例最多剔除2个
+        assertEquals(3, ejector.filter("all-erroring", instances, now).size());
+        int ejected = 0;
+        for (InetSocketAddress address : instances.getAddresses()) {
+            if (registry.get(address).isEjected(now)) {
+                ejected++;
+            }
+        }
+        assertEquals(2, ejected);
+    }
+
+    @Test
+    public void ejectionBacksOffAndReadmits() {
+        ServiceInstances instances = instances(31401, 3);
+        InetSocketAddress address = instances.getAddresses()[0];
+        ProviderStats stats = registry.get(address);
+        long second = TimeUnit.SECONDS.toNanos(1);
+        long now = System.nanoTime();
+
+        stats.eject(now);
+        assertEquals(2, ejector.filter("backoff", instances, now + second / 2).size());
+        assertSame(instances, ejector.filter("backoff", instances, now + second + 1));
+
+        //恢复后马上再次剔除,时间翻倍为2秒
+        now += second + 1;
+        stats.eject(now);
+        assertEquals(2, ejector.filter("backoff", instances, now + second * 3 / 2).size());
+        assertSame(instances, ejector.filter("backoff", instances, now + second * 2 + 1));
+    }
+
+    /**
+     * 一次完成的请求,开始和完成都在now
+     */
+    private void sample(InetSocketAddress address, long now, long latencyMillis, boolean success) {
+        ProviderStats stats = registry.get(address);
+        stats.begin();
+        stats.end(now, TimeUnit.MILLISECONDS.toNanos(latencyMillis), success);
+    }
+
+    static ServiceInstances instances(int firstPort, int count) {
+        List<Instance> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Instance instance = new Instance();
+            instance.setIp("127.0.0.1");
+            instance.setPort(firstPort + i);
+            list.add(instance);
+        }
+        return ServiceInstances.of(list);
+    }
+}
@@ -0,0 +1,75 @@
+package com.cs.rpc.loadbalance;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.nacos.ServiceInstances;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ：cs
+ * @description：两次随机选择:比较(inflight+1)/权重,忙的实例只要被比较就会输,权重高的实例在同样忙时胜出
+ * @date ：2026/10/18 18:40
+ */
+public class PowerOfTwoLoadBalancerTest {
+
+    private final ProviderStatsRegistry registry = SingletonFactory.getInstance(ProviderStatsRegistry.class);
+    private final PowerOfTwoLoadBalancer loadBalancer = new PowerOfTwoLoadBalancer();
+    private ServiceInstances instances;
+    private int busy;
+
+    @After
+    public void tearDown() {
+        //还原占用的inflight,单例中的状态不影响其他用例
+        InetSocketAddress address = instances.getAddresses()[0];
+        for (int i = 0; i < busy; i++) {
+            registry.get(address).end();
+        }
+    }
+
+    @Test
+    public void busyInstanceLosesEveryComparison() {
+        instances = RoundRobinLoadBalancerTest.instances(1, 1, 1);
+        occupy(5);
+        Map<InetSocketAddress, Integer> counts = select(3000);
+        //三个实例中任取两个总有一个是空闲的
+        assertNull(counts.get(instances.getAddresses()[0]));
+        //两个空闲实例各自约一半
+        int idle = counts.get(instances.getAddresses()[1]);
+        assertTrue("选中次数:" + idle, idle > 1200 && idle < 1800);
+    }
+
+    @Test
+    public void higherWeightWinsAtEqualLoad() {
+        instances = RoundRobinLoadBalancerTest.instances(1, 2);
+        Map<InetSocketAddress, Integer> counts = select(1000);
+        assertEquals(1000, (int) counts.get(instances.getAddresses()[1]));
+
+        //权重2的实例上多2个请求后(3/2)输给空闲的权重1的实例(1/1)
+        instances = RoundRobinLoadBalancerTest.instances(2, 1);
+        occupy(2);
+        assertEquals(1000, (int) select(1000).get(instances.getAddresses()[1]));
+    }
+
+    private void occupy(int inflight) {
+        for (int i = 0; i < inflight; i++) {
+            registry.get(instances.getAddresses()[0]).begin();
+        }
+        busy += inflight;
+    }
+
+    private Map<InetSocketAddress, Integer> select(int times) {
+        Map<InetSocketAddress, Integer> counts = new HashMap<>();
+        for (int i = 0; i < times; i++) {
+            counts.merge(loadBalancer.select("demo", instances), 1, Integer::sum);
+        }
+        return counts;
+    }
+}
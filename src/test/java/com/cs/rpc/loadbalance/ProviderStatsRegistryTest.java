@@ -0,0 +1,57 @@
+package com.cs.rpc.loadbalance;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.metrics.CsRpcMetrics;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ：cs
+ * @description：提供方状态的清理:下线的提供方从统计和指标中去掉,重新上线后从新的统计开始
+ * @date ：2026/10/18 13:40
+ */
+public class ProviderStatsRegistryTest {
+
+    private final InetSocketAddress a = new InetSocketAddress("127.0.0.1", 30001);
+    private final InetSocketAddress b = new InetSocketAddress("127.0.0.1", 30002);
+    private final InetSocketAddress c = new InetSocketAddress("127.0.0.1", 30003);
+
+    @Test
+    public void retainDropsProvidersThatLeftDiscovery() {
+        ProviderStatsRegistry registry = new ProviderStatsRegistry();
+        ProviderStats statsA = registry.get(a);
+        ProviderStats statsC = registry.get(c);
+        statsC.begin();
+        registry.get(b);
+        assertEquals(3, inflight().size());
+        assertEquals(1, (int) inflight().get(c.toString()));
+
+        registry.retain(new HashSet<>(Arrays.asList(a, b)));
+        Map<String, Integer> inflight = inflight();
+        assertEquals(2, inflight.size());
+        assertFalse(inflight.containsKey(c.toString()));
+        assertSame(statsA, registry.get(a));
+
+        //重新上线后是新的统计
+        ProviderStats newC = registry.get(c);
+        assertNotSame(statsC, newC);
+        assertEquals(0, newC.inflight());
+        assertTrue(inflight().containsKey(c.toString()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Integer> inflight() {
+        return (Map<String, Integer>) SingletonFactory.getInstance(CsRpcMetrics.class)
+                .snapshot().get("client.provider.inflight");
+    }
+}
@@ -0,0 +1,71 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.nacos.ServiceInstances;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author ：cs
+ * @description：一致性哈希环全量构建和增量重建的耗时对比(JMH),10个提供方中一个离开、一个加入
+ *      运行: java -cp test-classes:classes:依赖 com.cs.rpc.loadbalance.RingBuildBenchmark
+ * @date ：2026/10/18 14:00
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RingBuildBenchmark {
+
+    private ConsistentHashLoadBalancer.Ring old;
+    private ServiceInstances joined;
+
+    @Setup
+    public void setup() {
+        List<Instance> list = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Instance instance = new Instance();
+            instance.setIp("10.0.0." + (i + 1));
+            instance.setPort(13567);
+            list.add(instance);
+        }
+        old = ConsistentHashLoadBalancer.Ring.build(null, ServiceInstances.of(list));
+        Instance joining = new Instance();
+        joining.setIp("10.0.0.100");
+        joining.setPort(13567);
+        list.remove(3);
+        list.add(joining);
+        joined = ServiceInstances.of(list);
+    }
+
+    @Benchmark
+    public ConsistentHashLoadBalancer.Ring fullBuild() {
+        return ConsistentHashLoadBalancer.Ring.build(null, joined);
+    }
+
+    @Benchmark
+    public ConsistentHashLoadBalancer.Ring incrementalBuild() {
+        return ConsistentHashLoadBalancer.Ring.build(old, joined);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RingBuildBenchmark.class.getSimpleName()).build()).run();
+    }
+}
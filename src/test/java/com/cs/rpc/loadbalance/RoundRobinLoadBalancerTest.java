@@ -0,0 +1,87 @@
+package com.cs.rpc.loadbalance;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.cs.rpc.nacos.ServiceInstances;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author ：cs
+ * @description：加权轮询:每个周期内按权重精确分配,权重为0的实例不选,快照替换后按新的权重
+ * @date ：2026/10/18 18:20
+ */
+public class RoundRobinLoadBalancerTest {
+
+    private final RoundRobinLoadBalancer loadBalancer = new RoundRobinLoadBalancer();
+
+    @Test
+    public void sharesFollowWeightsExactlyPerCycle() {
+        ServiceInstances instances = instances(1, 2, 3);
+        //一个周期6次,从随机位置开始,整周期内的分配仍然精确
+        Map<InetSocketAddress, Integer> counts = select(instances, 6000);
+        assertEquals(1000, (int) counts.get(instances.getAddresses()[0]));
+        assertEquals(2000, (int) counts.get(instances.getAddresses()[1]));
+        assertEquals(3000, (int) counts.get(instances.getAddresses()[2]));
+    }
+
+    @Test
+    public void heavyInstanceIsSpreadAcrossTheCycle() {
+        ServiceInstances instances = instances(3, 1, 1);
+        InetSocketAddress heavy = instances.getAddresses()[0];
+        //平滑加权轮询:3:1:1的周期是a b a c a,跨周期时最多连续两次,不会连续三次
+        int run = 0;
+        for (int i = 0; i < 50; i++) {
+            run = heavy.equals(loadBalancer.select("smooth", instances)) ? run + 1 : 0;
+            assertFalse("连续选中:" + run, run > 2);
+        }
+    }
+
+    @Test
+    public void zeroWeightIsNeverSelectedAndEqualWeightsRotate() {
+        ServiceInstances instances = instances(1, 0, 1);
+        Map<InetSocketAddress, Integer> counts = select(instances, 100);
+        assertNull(counts.get(instances.getAddresses()[1]));
+        assertEquals(50, (int) counts.get(instances.getAddresses()[0]));
+
+        ServiceInstances equal = instances(2, 2, 2);
+        for (int count : select(equal, 300).values()) {
+            assertEquals(100, count);
+        }
+    }
+
+    @Test
+    public void newSnapshotUsesNewWeights() {
+        assertEquals(3000, (int) select(instances(1, 3), 4000).get(instances(1, 3).getAddresses()[1]));
+        ServiceInstances reweighted = instances(3, 1);
+        assertEquals(3000, (int) select(reweighted, 4000).get(reweighted.getAddresses()[0]));
+    }
+
+    private Map<InetSocketAddress, Integer> select(ServiceInstances instances, int times) {
+        Map<InetSocketAddress, Integer> counts = new HashMap<>();
+        for (int i = 0; i < times; i++) {
+            counts.merge(loadBalancer.select("demo", instances), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    static ServiceInstances instances(double... weights) {
+        List<Instance> list = new ArrayList<>();
+        for (int i = 0; i < weights.length; i++) {
+            Instance instance = new Instance();
+            instance.setIp("127.0.0.1");
+            instance.setPort(33001 + i);
+            instance.setWeight(weights[i]);
+            list.add(instance);
+        }
+        return ServiceInstances.of(list);
+    }
+}
@@ -0,0 +1,157 @@
+package com.cs.rpc.netty.client;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.nacos.ServiceDiscovery;
+import com.cs.rpc.netty.client.cache.ChannelCache;
+import com.cs.rpc.netty.client.cache.PooledChannel;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ：cs
+ * @description：异步建连:同一地址并发的acquire只建一次连接,建连失败时所有等待者都失败
+ *      建连前先卡住客户端的事件循环,保证所有acquire都挂在同一次还没完成的建连上
+ * @date ：2026/10/18 16:30
+ */
+public class ConnectionManagerTest {
+
+    private static final int WAITERS = 16;
+
+    private final AtomicInteger connects = new AtomicInteger();
+    private EventLoopGroup serverGroup;
+    private EventLoopGroup clientGroup;
+    private HashedWheelTimer timer;
+    private Channel serverChannel;
+    private ChannelCache channelCache;
+    private ConnectionManager connectionManager;
+
+    @Before
+    public void setUp() throws Exception {
+        serverGroup = new NioEventLoopGroup(1);
+        clientGroup = new NioEventLoopGroup(1);
+        timer = new HashedWheelTimer();
+        serverChannel = new ServerBootstrap().group(serverGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter())
+                .bind("127.0.0.1", 0).sync().channel();
+        Bootstrap bootstrap = new Bootstrap().group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        connects.incrementAndGet();
+                    }
+                });
+        channelCache = new ChannelCache();
+        connectionManager = new ConnectionManager(bootstrap, timer, channelCache, SingletonFactory.getInstance(ServiceDiscovery.class));
+    }
+
+    @After
+    public void tearDown() {
+        serverChannel.close();
+        timer.stop();
+        clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+        serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void concurrentAcquiresShareOneConnect() throws Exception {
+        InetSocketAddress address = (InetSocketAddress) serverChannel.localAddress();
+        List<CompletableFuture<PooledChannel>> futures = acquireWhileLoopBlocked(address);
+
+        PooledChannel first = futures.get(0).get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<PooledChannel> future : futures) {
+            assertSame(first, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, connects.get());
+        assertEquals(WAITERS, first.pending());
+        assertSame(first, channelCache.get(address));
+        channelCache.remove(address);
+    }
+
+    @Test
+    public void failedConnectFailsAllWaiters() throws Exception {
+        InetSocketAddress address;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            address = new InetSocketAddress("127.0.0.1", socket.getLocalPort());
+        }
+        List<CompletableFuture<PooledChannel>> futures = acquireWhileLoopBlocked(address);
+
+        for (CompletableFuture<PooledChannel> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("连接不上时不应该拿到连接");
+            } catch (ExecutionException expected) {
+                assertTrue(future.isCompletedExceptionally());
+            }
+        }
+        assertEquals(1, connects.get());
+        assertNull(channelCache.get(address));
+
+        //失败的建连不会残留,下一次acquire重新建连
+        CompletableFuture<PooledChannel> retry = connectionManager.acquire(address);
+        try {
+            retry.get(5, TimeUnit.SECONDS);
+            fail("连接不上时不应该拿到连接");
+        } catch (ExecutionException expected) {
+            assertEquals(2, connects.get());
+        }
+    }
+
+    /**
+     * 卡住客户端事件循环期间发起所有acquire,建连的结果只能在所有acquire之后处理
+     */
+    private List<CompletableFuture<PooledChannel>> acquireWhileLoopBlocked(InetSocketAddress address) throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        clientGroup.next().execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<PooledChannel>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < WAITERS; i++) {
+                futures.add(connectionManager.acquire(address));
+            }
+            for (CompletableFuture<PooledChannel> future : futures) {
+                assertFalse(future.isDone());
+            }
+        } finally {
+            release.countDown();
+        }
+        return futures;
+    }
+}
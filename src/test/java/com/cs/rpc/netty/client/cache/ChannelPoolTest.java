@@ -0,0 +1,121 @@
+package com.cs.rpc.netty.client.cache;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ：cs
+ * @description：连接池:选择等待响应最少的连接,被回收的连接不会再被占用
+ * @date ：2026/10/18 16:50
+ */
+public class ChannelPoolTest {
+
+    private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 32001);
+
+    @Test
+    public void selectsLeastPending() {
+        ChannelPool pool = new ChannelPool(address, 2);
+        PooledChannel busy = pool.offer(new EmbeddedChannel());
+        PooledChannel idle = pool.offer(new EmbeddedChannel());
+        assertNull(pool.offer(new EmbeddedChannel()));
+        assertTrue(busy.acquire());
+        assertTrue(busy.acquire());
+        assertTrue(idle.acquire());
+        assertSame(idle, pool.select());
+
+        idle.acquire();
+        idle.acquire();
+        assertSame(busy, pool.select());
+        assertEquals(5, pool.pending());
+    }
+
+    @Test
+    public void reapSkipsBusyAndEvictsIdle() {
+        ChannelPool pool = new ChannelPool(address, 2);
+        PooledChannel busy = pool.offer(new EmbeddedChannel());
+        PooledChannel idle = pool.offer(new EmbeddedChannel());
+        assertTrue(busy.acquire());
+
+        assertEquals(1, pool.reapIdle(0, System.nanoTime() + 1));
+        assertTrue(idle.isEvicted());
+        assertFalse(idle.getChannel().isOpen());
+        assertFalse(idle.acquire());
+        assertSame(busy, pool.select());
+        assertEquals(1, pool.active());
+        assertTrue(pool.hasFreeSlot());
+
+        //请求完成后才能回收
+        busy.release();
+        assertEquals(1, pool.reapIdle(0, System.nanoTime() + 1));
+        assertNull(pool.select());
+    }
+
+    /**
+     * 回收线程不停地回收空闲连接并补充新连接,请求线程不停地选择、占用、释放,
+     * 占用成功的连接在释放前都不能是已回收的
+     */
+    @Test
+    public void evictedSlotIsNeverHandedOut() throws Exception {
+        ChannelPool pool = new ChannelPool(address, 4);
+        for (int i = 0; i < 4; i++) {
+            pool.offer(new EmbeddedChannel());
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger acquired = new AtomicInteger();
+        AtomicInteger reaped = new AtomicInteger();
+        AtomicReference<String> violation = new AtomicReference<>();
+        int workers = 4;
+        CountDownLatch done = new CountDownLatch(workers + 1);
+        for (int w = 0; w < workers; w++) {
+            new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        PooledChannel pooledChannel = pool.select();
+                        if (pooledChannel == null || !pooledChannel.acquire()) {
+                            continue;
+                        }
+                        acquired.incrementAndGet();
+                        if (pooledChannel.isEvicted()) {
+                            violation.compareAndSet(null, "占用期间连接被回收");
+                        }
+                        pooledChannel.release();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        new Thread(() -> {
+            try {
+                while (running.get()) {
+                    reaped.addAndGet(pool.reapIdle(0, System.nanoTime() + 1));
+                    while (pool.hasFreeSlot() && pool.offer(new EmbeddedChannel()) != null) {
+                        //补满连接池
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        }).start();
+
+        Thread.sleep(500);
+        running.set(false);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNull(violation.get());
+        assertTrue(acquired.get() > 0);
+        assertTrue(reaped.get() > 0);
+    }
+}
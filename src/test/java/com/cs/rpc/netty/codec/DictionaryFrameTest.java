@@ -0,0 +1,250 @@
+package com.cs.rpc.netty.codec;
+
+import com.cs.rpc.compress.CompressPolicy;
+import com.cs.rpc.compress.CompressionDictionary;
+import com.cs.rpc.compress.DeflateDictCompress;
+import com.cs.rpc.compress.DictionaryRegistry;
+import com.cs.rpc.constant.CompressTypeEnum;
+import com.cs.rpc.constant.CsRpcConstants;
+import com.cs.rpc.constant.MessageTypeEnum;
+import com.cs.rpc.constant.SerializationTypeEnum;
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.message.CsMessage;
+import com.cs.rpc.message.CsRequest;
+import com.cs.rpc.serialize.ProtostuffSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author ：cs
+ * @description：字典帧的编解码:首次使用前随消息发送字典、每个连接只发一次、接收方每个服务只保留两个版本
+ * @date ：2026/10/18 12:10
+ */
+public class DictionaryFrameTest {
+
+    /**
+     * v1帧头中消息类型的位置: 4B magic + 1B version + 4B length
+     */
+    private static final int MESSAGE_TYPE_INDEX = 9;
+    private static final int COMPRESS_INDEX = 11;
+
+    private final CompressPolicy compressPolicy = SingletonFactory.getInstance(CompressPolicy.class);
+    private final DictionaryRegistry dictionaryRegistry = SingletonFactory.getInstance(DictionaryRegistry.class);
+    private final ProtostuffSerializer serializer = new ProtostuffSerializer();
+
+    @Before
+    public void setUp() {
+        //小消息也压缩,并且不按压缩率停止压缩
+        compressPolicy.configure(0, false, 0.9);
+    }
+
+    @After
+    public void tearDown() {
+        compressPolicy.configure(-1, true, 0.9);
+    }
+
+    @Test
+    public void dictionaryIsSentInlineOnceBeforeFirstUse() throws InterruptedException {
+        String serviceKey = "DictionaryFrameTest.inline1.0";
+        CompressionDictionary dictionary = train(serviceKey);
+
+        EmbeddedChannel client = new EmbeddedChannel(new CsRpcEncoder());
+        EmbeddedChannel server = new EmbeddedChannel(new CsRpcDecoder());
+        for (int i = 0; i < 5; i++) {
+            client.writeOutbound(requestMessage(serviceKey, i));
+        }
+        List<ByteBuf> frames = readFrames(client);
+        //第一个帧是字典,之后5个请求都用这个字典压缩,字典不再重复发送
+        assertEquals(6, frames.size());
+        assertEquals(MessageTypeEnum.DICTIONARY.getCode(), frames.get(0).getByte(MESSAGE_TYPE_INDEX));
+        for (int i = 1; i < frames.size(); i++) {
+            assertEquals(MessageTypeEnum.REQUEST.getCode(), frames.get(i).getByte(MESSAGE_TYPE_INDEX));
+            assertEquals(CompressTypeEnum.DEFLATE_DICT.getCode(), frames.get(i).getByte(COMPRESS_INDEX));
+            //body的前4个字节是字典id
+            assertEquals(dictionary.getId(), frames.get(i).getInt(CsRpcConstants.HEAD_LENGTH));
+        }
+
+        for (ByteBuf frame : frames) {
+            server.writeInbound(frame);
+        }
+        for (int i = 0; i < 5; i++) {
+            CsMessage message = server.readInbound();
+            assertEquals("method" + i, ((CsRequest) message.getData()).getMethodName());
+        }
+        assertNull(server.readInbound());
+        CompressionDictionary received = ChannelDictionaries.get(server).lookup(dictionary.getId());
+        assertNotNull(received);
+        assertEquals(serviceKey, received.getServiceKey());
+        assertArrayEquals(dictionary.getData(), received.getData());
+
+        //新的连接重新发送一次
+        EmbeddedChannel other = new EmbeddedChannel(new CsRpcEncoder());
+        other.writeOutbound(requestMessage(serviceKey, 0));
+        other.writeOutbound(requestMessage(serviceKey, 1));
+        List<ByteBuf> otherFrames = readFrames(other);
+        assertEquals(3, otherFrames.size());
+        assertEquals(MessageTypeEnum.DICTIONARY.getCode(), otherFrames.get(0).getByte(MESSAGE_TYPE_INDEX));
+        release(otherFrames);
+        client.finishAndReleaseAll();
+        server.finishAndReleaseAll();
+        other.finishAndReleaseAll();
+    }
+
+    @Test
+    public void pushedDictionaryIsNotSentAgain() throws InterruptedException {
+        String serviceKey = "DictionaryFrameTest.push1.0";
+        CompressionDictionary dictionary = train(serviceKey);
+
+        //和业务处理器一样,在编码器之后的处理器中推送
+        EmbeddedChannel client = new EmbeddedChannel(new CsRpcEncoder(), new ChannelInboundHandlerAdapter());
+        //建立连接时推送所有字典
+        ChannelDictionaries.pushAll(client.pipeline().lastContext());
+        int pushed = readFrames(client).size();
+        assertEquals(dictionaryRegistry.all().size(), pushed);
+
+        client.writeOutbound(requestMessage(serviceKey, 0));
+        List<ByteBuf> frames = readFrames(client);
+        assertEquals(1, frames.size());
+        assertEquals(MessageTypeEnum.REQUEST.getCode(), frames.get(0).getByte(MESSAGE_TYPE_INDEX));
+        assertEquals(dictionary.getId(), frames.get(0).getInt(CsRpcConstants.HEAD_LENGTH));
+        release(frames);
+        client.finishAndReleaseAll();
+    }
+
+    @Test
+    public void receiverKeepsTheLatestTwoVersionsPerService() {
+        EmbeddedChannel server = new EmbeddedChannel(new CsRpcDecoder());
+        CompressionDictionary v1 = dictionary(101, "order", 1);
+        CompressionDictionary v2 = dictionary(102, "order", 2);
+        CompressionDictionary v3 = dictionary(103, "order", 3);
+        CompressionDictionary user = dictionary(201, "user", 1);
+        for (CompressionDictionary dictionary : new CompressionDictionary[]{v1, user, v2}) {
+            server.writeInbound(dictionaryFrame(dictionary));
+        }
+        ChannelDictionaries dictionaries = ChannelDictionaries.get(server);
+        assertNotNull(dictionaries.lookup(101));
+        assertNotNull(dictionaries.lookup(102));
+
+        server.writeInbound(dictionaryFrame(v3));
+        //v3到达后v1被删除,v2留给还在路上的消息
+        assertNull(dictionaries.lookup(101));
+        assertNotNull(dictionaries.lookup(102));
+        assertNotNull(dictionaries.lookup(103));
+        assertNotNull(dictionaries.lookup(201));
+        //字典帧不往后传
+        assertNull(server.readInbound());
+
+        //用上一个版本压缩的消息仍然可以解压
+        server.writeInbound(requestFrame(v2, "inFlight"));
+        CsMessage message = server.readInbound();
+        assertEquals("inFlight", ((CsRequest) message.getData()).getMethodName());
+        server.finishAndReleaseAll();
+    }
+
+    /**
+     * 抽样请求直到后台训练出字典
+     */
+    private CompressionDictionary train(String serviceKey) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        int i = 0;
+        while (System.currentTimeMillis() < deadline) {
+            ByteBuf serialized = Unpooled.buffer();
+            serializer.serialize(request(i++), serialized);
+            CompressionDictionary dictionary = dictionaryRegistry.sampleAndGet(serviceKey, serialized);
+            serialized.release();
+            if (dictionary != null) {
+                return dictionary;
+            }
+            if (i % 1000 == 0) {
+                Thread.sleep(10);
+            }
+        }
+        throw new AssertionError("没有训练出字典");
+    }
+
+    private static CsMessage requestMessage(String serviceKey, int i) {
+        return CsMessage.builder()
+                .messageType(MessageTypeEnum.REQUEST.getCode())
+                .codec(SerializationTypeEnum.PROTO_STUFF.getCode())
+                .compress(CompressTypeEnum.DEFLATE_DICT.getCode())
+                .requestId(i + 1)
+                .serviceKey(serviceKey)
+                .methodKey(serviceKey + "#method" + i)
+                .data(request(i))
+                .build();
+    }
+
+    private static CsRequest request(int i) {
+        Random random = new Random(i);
+        return CsRequest.builder()
+                .requestId(String.valueOf(i))
+                .interfaceName("com.cs.rpc.demo.OrderService")
+                .methodName("method" + (i % 1000))
+                .parameters(new Object[]{"ORD" + (100000000L + random.nextInt(900000000)), "user-" + random.nextInt(100000)})
+                .paramTypes(new Class<?>[]{String.class, String.class})
+                .version("1.0")
+                .build();
+    }
+
+    private static CompressionDictionary dictionary(int id, String serviceKey, int version) {
+        byte[] data = ("interfaceName methodName com.cs.rpc.demo.OrderService " + serviceKey + version).getBytes();
+        return new CompressionDictionary(id, serviceKey, version, data);
+    }
+
+    private static ByteBuf dictionaryFrame(CompressionDictionary dictionary) {
+        ByteBuf frame = Unpooled.buffer();
+        CsRpcEncoder.encodeDictionary(dictionary, frame);
+        return frame;
+    }
+
+    /**
+     * 用指定的字典压缩一个v1请求帧
+     */
+    private ByteBuf requestFrame(CompressionDictionary dictionary, String methodName) {
+        ByteBuf serialized = Unpooled.buffer();
+        serializer.serialize(CsRequest.builder().methodName(methodName).version("1.0").build(), serialized);
+        ByteBuf body = Unpooled.buffer();
+        new DeflateDictCompress().compress(serialized, body, dictionary);
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeBytes(CsRpcConstants.MAGIC_NUMBER);
+        frame.writeByte(CsRpcConstants.VERSION);
+        frame.writeInt(CsRpcConstants.HEAD_LENGTH + body.readableBytes());
+        frame.writeByte(MessageTypeEnum.REQUEST.getCode());
+        frame.writeByte(SerializationTypeEnum.PROTO_STUFF.getCode());
+        frame.writeByte(CompressTypeEnum.DEFLATE_DICT.getCode());
+        frame.writeInt(1);
+        frame.writeBytes(body);
+        serialized.release();
+        body.release();
+        return frame;
+    }
+
+    private static List<ByteBuf> readFrames(EmbeddedChannel channel) {
+        List<ByteBuf> frames = new ArrayList<>();
+        ByteBuf frame;
+        while ((frame = channel.readOutbound()) != null) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static void release(List<ByteBuf> frames) {
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.cs.rpc.netty.codec;
+
+import com.cs.rpc.constant.CompressTypeEnum;
+import com.cs.rpc.constant.CsRpcConstants;
+import com.cs.rpc.constant.MessageTypeEnum;
+import com.cs.rpc.constant.ResponseCodeEnum;
+import com.cs.rpc.constant.SerializationTypeEnum;
+import com.cs.rpc.message.CsHandshake;
+import com.cs.rpc.message.CsMessage;
+import com.cs.rpc.message.CsRequest;
+import com.cs.rpc.message.CsResponse;
+import com.cs.rpc.netty.client.handler.CsNettyClientHandler;
+import com.cs.rpc.netty.handler.CsNettyServerHandler;
+import com.cs.rpc.netty.handler.PendingRequest;
+import com.cs.rpc.netty.handler.UnprocessedRequests;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ：cs
+ * @description：v1和v2协议的互通:握手协商版本、老版本对端一直使用v1、同一个连接上混合收发v1和v2的帧
+ *      超时时间在v1中放在请求体,在v2中放在附件timeout中
+ *      两端都是带编解码器的EmbeddedChannel,握手处理和CsNettyServerHandler/CsNettyClientHandler一样调用ProtocolVersion.negotiate
+ *      单向调用经过真实的CsNettyServerHandler(业务线程池换成当前线程)和CsNettyClientHandler,
+ *      服务端没有注册服务,请求按找不到方法(404)处理,普通请求会收到失败响应
+ * @date ：2026/10/18 13:00
+ */
+public class ProtocolInteropTest {
+
+    /**
+     * 魔数之后是版本号
+     */
+    private static final int VERSION_INDEX = CsRpcConstants.MAGIC_NUMBER.length;
+    /**
+     * v1帧头:魔数、版本号、4B长度、消息类型、序列化类型、压缩类型之后是4B requestId
+     */
+    private static final int V1_REQUEST_ID_INDEX = VERSION_INDEX + 1 + 4 + 3;
+
+    private final EmbeddedChannel client = new EmbeddedChannel(new CsRpcDecoder(), new CsRpcEncoder());
+    private final EmbeddedChannel server = new EmbeddedChannel(new CsRpcDecoder(), new CsRpcEncoder());
+
+    @After
+    public void tearDown() {
+        client.finishAndReleaseAll();
+        server.finishAndReleaseAll();
+    }
+
+    @Test
+    public void newPeersNegotiateV2AndSendTimeoutAsAttachment() {
+        handshake(new CsHandshake(Collections.emptyMap()), true);
+        assertEquals(CsRpcConstants.VERSION_2, ProtocolVersion.get(server));
+        assertEquals(CsRpcConstants.VERSION_2, ProtocolVersion.get(client));
+
+        CsMessage request = transfer(client, server, request("echo", 5000), CsRpcConstants.VERSION_2);
+        assertEquals(CsRpcConstants.VERSION_2, request.getVersion());
+        long timeout = Long.parseLong(request.getAttachments().get(AttachmentCodec.TIMEOUT));
+        assertTrue(timeout > 0 && timeout <= 5000);
+        //v2不再把超时时间放在请求体中
+        assertNull(((CsRequest) request.getData()).getTimeout());
+        assertDeadlineWithin(request, 5000);
+
+        //响应使用和请求相同的版本
+        CsMessage response = transfer(server, client, respond(request, "ok"), CsRpcConstants.VERSION_2);
+        assertEquals("ok", ((CsResponse<?>) response.getData()).getData());
+    }
+
+    @Test
+    public void oldClientWithoutVersionKeepsV1() {
+        //老版本的握手没有version字段
+        handshake(new CsHandshake(), false);
+        assertEquals(CsRpcConstants.VERSION, ProtocolVersion.get(server));
+
+        CsMessage request = transfer(client, server, request("echo", 3000), CsRpcConstants.VERSION);
+        assertNull(request.getAttachments());
+        Integer timeout = ((CsRequest) request.getData()).getTimeout();
+        assertTrue(timeout > 0 && timeout <= 3000);
+        assertDeadlineWithin(request, 3000);
+
+        CsMessage response = transfer(server, client, respond(request, "ok"), CsRpcConstants.VERSION);
+        assertEquals("ok", ((CsResponse<?>) response.getData()).getData());
+    }
+
+    @Test
+    public void newClientKeepsV1WhenOldServerIgnoresHandshake() {
+        //老版本的服务端不认识握手,不返回响应,客户端不协商
+        transfer(client, server, handshakeMessage(new CsHandshake(Collections.emptyMap())), CsRpcConstants.VERSION);
+        assertEquals(CsRpcConstants.VERSION, ProtocolVersion.get(client));
+
+        CsMessage request = transfer(client, server, request("echo", 2000), CsRpcConstants.VERSION);
+        assertTrue(((CsRequest) request.getData()).getTimeout() > 0);
+        assertNull(request.getAttachments());
+    }
+
+    @Test
+    public void requestWithoutTimeoutHasNoTimeoutAnywhere() {
+        handshake(new CsHandshake(Collections.emptyMap()), true);
+        CsMessage v2 = transfer(client, server, request("echo", 0), CsRpcConstants.VERSION_2);
+        assertNull(v2.getAttachments());
+        assertEquals(0, v2.getDeadline());
+
+        CsMessage v1Message = request("echo", 0);
+        v1Message.setVersion((byte) CsRpcConstants.VERSION);
+        CsMessage v1 = transfer(client, server, v1Message, CsRpcConstants.VERSION);
+        assertNull(((CsRequest) v1.getData()).getTimeout());
+        assertEquals(0, v1.getDeadline());
+    }
+
+    @Test
+    public void otherAttachmentsAreKeptAndNotModified() {
+        handshake(new CsHandshake(Collections.emptyMap()), true);
+        CsMessage message = request("echo", 1000);
+        Map<String, String> attachments = new HashMap<>();
+        attachments.put("traceId", "t-1");
+        attachments.put("custom", "v");
+        message.setAttachments(attachments);
+
+        CsMessage request = transfer(client, server, message, CsRpcConstants.VERSION_2);
+        assertEquals("t-1", request.getAttachments().get("traceId"));
+        assertEquals("v", request.getAttachments().get("custom"));
+        assertNotNull(request.getAttachments().get(AttachmentCodec.TIMEOUT));
+        //发送方的附件不变,重发到别的连接时重新计算
+        assertEquals(2, attachments.size());
+    }
+
+    @Test
+    public void mixedVersionFramesOnOneConnection() {
+        handshake(new CsHandshake(Collections.emptyMap()), true);
+        //同一个连接上先后收到v1和v2的请求,放在同一个buffer中
+        CsMessage v1Message = request("v1", 4000);
+        v1Message.setVersion((byte) CsRpcConstants.VERSION);
+        client.writeOutbound(v1Message, request("v2", 4000));
+        ByteBuf first = client.readOutbound();
+        ByteBuf second = client.readOutbound();
+        assertEquals(CsRpcConstants.VERSION, first.getByte(first.readerIndex() + VERSION_INDEX));
+        assertEquals(CsRpcConstants.VERSION_2, second.getByte(second.readerIndex() + VERSION_INDEX));
+        server.writeInbound(Unpooled.wrappedBuffer(first, second));
+
+        CsMessage v1 = server.readInbound();
+        CsMessage v2 = server.readInbound();
+        assertEquals("v1", ((CsRequest) v1.getData()).getMethodName());
+        assertEquals(CsRpcConstants.VERSION, v1.getVersion());
+        assertTrue(((CsRequest) v1.getData()).getTimeout() > 0);
+        assertDeadlineWithin(v1, 4000);
+        assertEquals("v2", ((CsRequest) v2.getData()).getMethodName());
+        assertEquals(CsRpcConstants.VERSION_2, v2.getVersion());
+        assertNull(((CsRequest) v2.getData()).getTimeout());
+        assertDeadlineWithin(v2, 4000);
+
+        //响应各自使用请求的版本,客户端同样能在一个buffer中解析两种帧
+        server.writeOutbound(respond(v1, "r1"), respond(v2, "r2"));
+        ByteBuf r1 = server.readOutbound();
+        ByteBuf r2 = server.readOutbound();
+        assertEquals(CsRpcConstants.VERSION, r1.getByte(r1.readerIndex() + VERSION_INDEX));
+        assertEquals(CsRpcConstants.VERSION_2, r2.getByte(r2.readerIndex() + VERSION_INDEX));
+        client.writeInbound(Unpooled.wrappedBuffer(r1, r2));
+        assertEquals("r1", ((CsResponse<?>) ((CsMessage) client.readInbound()).getData()).getData());
+        assertEquals("r2", ((CsResponse<?>) ((CsMessage) client.readInbound()).getData()).getData());
+    }
+
+    @Test
+    public void onewayRequestGetsNoResponseOnV2() {
+        EmbeddedChannel handlerServer = serverWithHandler();
+        ProtocolVersion.negotiate(client, CsRpcConstants.MAX_VERSION);
+        ProtocolVersion.negotiate(handlerServer, CsRpcConstants.MAX_VERSION);
+        try {
+            handlerServer.writeInbound(frame(client, oneway("fire"), CsRpcConstants.VERSION_2));
+            assertNull(handlerServer.readOutbound());
+
+            //同样的请求不带单向标记时返回失败响应
+            handlerServer.writeInbound(frame(client, request("fire", 5000), CsRpcConstants.VERSION_2));
+            ByteBuf response = handlerServer.readOutbound();
+            assertNotNull(response);
+            client.writeInbound(response);
+            CsMessage message = client.readInbound();
+            assertEquals(7, message.getRequestId());
+            assertEquals(ResponseCodeEnum.NOT_FOUND.getCode(), (int) ((CsResponse<?>) message.getData()).getCode());
+        } finally {
+            handlerServer.finishAndReleaseAll();
+        }
+    }
+
+    @Test
+    public void onewayOnV1GetsResponseWithRequestIdZeroWhichIsDropped() {
+        EmbeddedChannel handlerServer = serverWithHandler();
+        EmbeddedChannel handlerClient = new EmbeddedChannel(new CsRpcDecoder(), new CsRpcEncoder(), new CsNettyClientHandler());
+        releaseOutbound(handlerClient);
+        try {
+            //没有协商,一直是v1,单向标记发不出去
+            PendingRequest pendingRequest = new PendingRequest(new CompletableFuture<>(), 0);
+            UnprocessedRequests unprocessedRequests = UnprocessedRequests.get(handlerClient);
+            unprocessedRequests.put(pendingRequest);
+            handlerServer.writeInbound(frame(handlerClient, oneway("fire"), CsRpcConstants.VERSION));
+
+            //服务端把它当成普通请求返回响应,requestId沿用0
+            ByteBuf response = handlerServer.readOutbound();
+            assertNotNull(response);
+            assertEquals(CsRpcConstants.VERSION, response.getByte(response.readerIndex() + VERSION_INDEX));
+            assertEquals(0, response.getInt(response.readerIndex() + V1_REQUEST_ID_INDEX));
+
+            //客户端丢弃requestId为0的响应,不影响其他等待中的请求
+            handlerClient.writeInbound(response);
+            assertFalse(pendingRequest.isDone());
+            assertEquals(1, unprocessedRequests.size());
+        } finally {
+            handlerClient.finishAndReleaseAll();
+            handlerServer.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * 服务端处理器,业务线程池换成当前线程;连接建立时推送的压缩字典不关心,丢掉
+     */
+    private static EmbeddedChannel serverWithHandler() {
+        EmbeddedChannel channel = new EmbeddedChannel(new CsRpcDecoder(), new CsRpcEncoder(), new CsNettyServerHandler(Runnable::run));
+        releaseOutbound(channel);
+        return channel;
+    }
+
+    private static void releaseOutbound(EmbeddedChannel channel) {
+        for (Object frame = channel.readOutbound(); frame != null; frame = channel.readOutbound()) {
+            ReferenceCountUtil.release(frame);
+        }
+    }
+
+    /**
+     * 从from写出一个消息,检查帧的版本号后返回编码后的帧
+     */
+    private static ByteBuf frame(EmbeddedChannel from, CsMessage message, int expectedVersion) {
+        from.writeOutbound(message);
+        ByteBuf frame = from.readOutbound();
+        assertEquals(expectedVersion, frame.getByte(frame.readerIndex() + VERSION_INDEX));
+        return frame;
+    }
+
+    /**
+     * 和NettyClient.sendOneway一样:带单向标记,requestId为0
+     */
+    private static CsMessage oneway(String methodName) {
+        CsMessage message = request(methodName, 0);
+        message.setFlags(CsRpcConstants.FLAG_ONEWAY);
+        message.setRequestId(0);
+        return message;
+    }
+
+    /**
+     * 握手:客户端按v1发送,服务端协商后按请求的版本(v1)返回,客户端收到后协商
+     * @param clientNegotiates 老版本客户端收到握手响应也不协商
+     */
+    private void handshake(CsHandshake handshake, boolean clientNegotiates) {
+        CsMessage request = transfer(client, server, handshakeMessage(handshake), CsRpcConstants.VERSION);
+        ProtocolVersion.negotiate(server, ((CsHandshake) request.getData()).getVersion());
+        request.setMessageType(MessageTypeEnum.HANDSHAKE_RESPONSE.getCode());
+        request.setData(new CsHandshake(Collections.emptyMap()));
+        CsMessage response = transfer(server, client, request, CsRpcConstants.VERSION);
+        if (clientNegotiates) {
+            ProtocolVersion.negotiate(client, ((CsHandshake) response.getData()).getVersion());
+        }
+    }
+
+    /**
+     * 从from写出一个消息,检查帧的版本号后交给to解码
+     */
+    private static CsMessage transfer(EmbeddedChannel from, EmbeddedChannel to, CsMessage message, int expectedVersion) {
+        from.writeOutbound(message);
+        ByteBuf frame = from.readOutbound();
+        assertEquals(expectedVersion, frame.getByte(frame.readerIndex() + VERSION_INDEX));
+        assertNull(from.readOutbound());
+        to.writeInbound(frame);
+        CsMessage received = to.readInbound();
+        assertNotNull(received);
+        return received;
+    }
+
+    private static CsMessage handshakeMessage(CsHandshake handshake) {
+        return CsMessage.builder()
+                .messageType(MessageTypeEnum.HANDSHAKE_REQUEST.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .codec(SerializationTypeEnum.PROTO_STUFF.getCode())
+                .data(handshake)
+                .build();
+    }
+
+    private static CsMessage request(String methodName, long timeoutMillis) {
+        CsRequest request = CsRequest.builder()
+                .interfaceName("com.cs.EchoService")
+                .methodName(methodName)
+                .version("1.0")
+                .parameters(new Object[]{"hello"})
+                .paramTypes(new Class<?>[]{String.class})
+                .build();
+        return CsMessage.builder()
+                .messageType(MessageTypeEnum.REQUEST.getCode())
+                .codec(SerializationTypeEnum.PROTO_STUFF.getCode())
+                .compress(CompressTypeEnum.NONE.getCode())
+                .requestId(7)
+                .data(request)
+                .deadline(timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0)
+                .build();
+    }
+
+    /**
+     * 和服务端一样复用请求消息写回响应,版本保持不变
+     */
+    private static CsMessage respond(CsMessage request, String data) {
+        request.setMessageType(MessageTypeEnum.RESPONSE.getCode());
+        request.setAttachments(null);
+        request.setData(CsResponse.success(data, null));
+        return request;
+    }
+
+    private static void assertDeadlineWithin(CsMessage message, long timeoutMillis) {
+        long remaining = message.getDeadline() - System.nanoTime();
+        assertTrue(remaining > 0 && remaining <= TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+}
@@ -0,0 +1,132 @@
+package com.cs.rpc.netty.handler;
+
+import com.cs.rpc.factory.SingletonFactory;
+import com.cs.rpc.metrics.CsRpcMetrics;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author ：cs
+ * @description：用EmbeddedChannel统计到达head的flush次数(即write系统调用次数),对比合并前后每个请求的flush数
+ * @date ：2026/10/18 10:05
+ */
+public class FlushBatchingHandlerTest {
+
+    private static final int ROUNDS = 100;
+
+    @Test
+    public void withoutBatchingEveryRequestFlushes() {
+        for (int burst : new int[]{1, 8, 64, 256}) {
+            assertEquals(ROUNDS * burst, flushesPerBursts(null, burst, 128));
+        }
+    }
+
+    @Test
+    public void burstInOneTickFlushesOnce() {
+        //maxMessages=64:每轮最多攒64个flush,超过后立即发出
+        assertEquals(ROUNDS, flushesPerBursts(new FlushBatchingHandler("test", 64, 1 << 20), 1, 128));
+        assertEquals(ROUNDS, flushesPerBursts(new FlushBatchingHandler("test", 64, 1 << 20), 8, 128));
+        assertEquals(ROUNDS, flushesPerBursts(new FlushBatchingHandler("test", 64, 1 << 20), 64, 128));
+        assertEquals(ROUNDS * 4, flushesPerBursts(new FlushBatchingHandler("test", 64, 1 << 20), 256, 128));
+    }
+
+    @Test
+    public void byteThresholdFlushesEarly() {
+        //每条4KB,4条达到16KB,每轮64条需要16次flush
+        assertEquals(ROUNDS * 16, flushesPerBursts(new FlushBatchingHandler("test", 64, 16 * 1024), 64, 4096));
+    }
+
+    @Test
+    public void metricsGiveFlushesPerRequest() {
+        CsRpcMetrics metrics = SingletonFactory.getInstance(CsRpcMetrics.class);
+        long flushes = flushesPerBursts(new FlushBatchingHandler("flushMetricsTest", 64, 1 << 20), 8, 128);
+        assertEquals(ROUNDS * 8, metrics.counter("flushMetricsTest.flush.requested").sum());
+        assertEquals(flushes, metrics.counter("flushMetricsTest.flush.actual").sum());
+    }
+
+    @Test
+    public void responsesToOneReadBatchFlushOnReadComplete() {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(counter, new FlushBatchingHandler("test", 64, 1 << 20),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        //收到一个请求就写回一个响应
+                        ctx.writeAndFlush(msg);
+                    }
+                });
+        for (int i = 0; i < 10; i++) {
+            channel.pipeline().fireChannelRead(channel.alloc().buffer(16).writeZero(16));
+        }
+        channel.runPendingTasks();
+        assertEquals(0, counter.flushes);
+        channel.pipeline().fireChannelReadComplete();
+        assertEquals(1, counter.flushes);
+        assertEquals(10, counter.messages);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void pendingFlushIsSentOnClose() {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedChannel channel = new EmbeddedChannel(counter, new FlushBatchingHandler("test", 64, 1 << 20));
+        channel.writeAndFlush(channel.alloc().buffer(16).writeZero(16));
+        assertEquals(0, counter.flushes);
+        channel.close();
+        assertEquals(1, counter.flushes);
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * 每轮EventLoop写入burst个消息,每个都是writeAndFlush,返回到达head的flush次数
+     */
+    private static long flushesPerBursts(ChannelHandler batching, int burst, int size) {
+        FlushCounter counter = new FlushCounter();
+        EmbeddedChannel channel = batching == null ? new EmbeddedChannel(counter) : new EmbeddedChannel(counter, batching);
+        for (int i = 0; i < ROUNDS; i++) {
+            for (int j = 0; j < burst; j++) {
+                channel.writeAndFlush(channel.alloc().buffer(size).writeZero(size));
+            }
+            //一轮EventLoop结束,执行推迟的flush任务
+            channel.runPendingTasks();
+        }
+        assertEquals(ROUNDS * burst, counter.messages);
+        channel.finishAndReleaseAll();
+        return counter.flushes;
+    }
+
+    /**
+     * 放在最靠近head的位置模拟socket:写入的消息直接丢弃,只统计有数据要写的flush
+     *      EmbeddedChannel每次写入后都会执行积压的任务,消息继续往head传会让推迟的flush提前执行
+     */
+    private static final class FlushCounter extends ChannelOutboundHandlerAdapter {
+
+        private long flushes;
+        private long messages;
+        private boolean pending;
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            messages++;
+            pending = true;
+            ReferenceCountUtil.release(msg);
+            promise.setSuccess();
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            if (pending) {
+                pending = false;
+                flushes++;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.cs.rpc.netty.handler;
+
+import com.cs.rpc.constant.MessageTypeEnum;
+import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.exception.CsRpcTimeoutException;
+import com.cs.rpc.message.CsMessage;
+import com.cs.rpc.message.CsResponse;
+import com.cs.rpc.netty.client.handler.CsNettyClientHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ：cs
+ * @description：连接内的未完成请求表:requestId的分配和回绕,超时移除,连接断开时全部失败,迟到的响应丢弃
+ *      超时直接调用PendingRequest.run模拟时间轮触发,EmbeddedChannel的runPendingTasks模拟切换到EventLoop
+ * @date ：2026/10/18 17:10
+ */
+public class UnprocessedRequestsTest {
+
+    @Test
+    public void allocatesIdsAndSkipsZeroOnWraparound() throws Exception {
+        UnprocessedRequests requests = new UnprocessedRequests(new EmbeddedChannel());
+        assertEquals(1, requests.put(pending()));
+        assertEquals(2, requests.put(pending()));
+
+        setNextRequestId(requests, Integer.MAX_VALUE - 1);
+        assertEquals(Integer.MAX_VALUE, requests.put(pending()));
+        //回绕后跳过0和还在等待响应的1、2
+        assertEquals(3, requests.put(pending()));
+        assertEquals(4, requests.size());
+    }
+
+    @Test
+    public void timeoutRemovesRegisteredRequest() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        UnprocessedRequests requests = new UnprocessedRequests(channel);
+        PendingRequest pendingRequest = pending();
+        int requestId = requests.put(pendingRequest);
+
+        pendingRequest.run(null);
+        assertFailedWith(pendingRequest.getFuture(), CsRpcTimeoutException.class);
+        //移除要切换到EventLoop中进行
+        assertEquals(1, requests.size());
+        channel.runPendingTasks();
+        assertEquals(0, requests.size());
+
+        //迟到的响应丢弃
+        assertFalse(requests.complete(requestId, CsResponse.success("late", null)));
+    }
+
+    @Test
+    public void timeoutBeforeRegistrationIsNotKept() {
+        UnprocessedRequests requests = new UnprocessedRequests(new EmbeddedChannel());
+        PendingRequest pendingRequest = pending();
+        //超时发生在发送前的检查之后、登记之前,超时线程看不到登记
+        pendingRequest.run(null);
+        assertEquals(0, requests.put(pendingRequest));
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    public void responseCompletesAndLateResponseIsDropped() {
+        EmbeddedChannel channel = new EmbeddedChannel(new CsNettyClientHandler());
+        UnprocessedRequests requests = UnprocessedRequests.get(channel);
+        PendingRequest pendingRequest = pending();
+        int requestId = requests.put(pendingRequest);
+
+        channel.writeInbound(response(requestId, "ok"));
+        assertTrue(pendingRequest.isDone());
+        assertEquals("ok", pendingRequest.getFuture().join().getData());
+        assertEquals(0, requests.size());
+
+        //同一个id的重复响应、不属于本端的id都丢弃
+        channel.writeInbound(response(requestId, "again"));
+        channel.writeInbound(response(Integer.MAX_VALUE + 1L, "foreign"));
+        assertEquals("ok", pendingRequest.getFuture().join().getData());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void inactiveChannelFailsAllPending() {
+        EmbeddedChannel channel = new EmbeddedChannel(new CsNettyClientHandler());
+        UnprocessedRequests requests = UnprocessedRequests.get(channel);
+        PendingRequest first = pending();
+        PendingRequest second = pending();
+        requests.put(first);
+        requests.put(second);
+
+        channel.close();
+        assertFailedWith(first.getFuture(), CsRpcException.class);
+        assertFailedWith(second.getFuture(), CsRpcException.class);
+        assertEquals(0, requests.size());
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * 不计时,超时由测试直接触发
+     */
+    private static PendingRequest pending() {
+        return new PendingRequest(new CompletableFuture<>(), 0);
+    }
+
+    private static CsMessage response(long requestId, Object data) {
+        CsMessage message = new CsMessage();
+        message.setMessageType(MessageTypeEnum.RESPONSE.getCode());
+        message.setRequestId(requestId);
+        message.setData(CsResponse.success(data, null));
+        return message;
+    }
+
+    private static void setNextRequestId(UnprocessedRequests requests, int value) throws Exception {
+        Field field = UnprocessedRequests.class.getDeclaredField("nextRequestId");
+        field.setAccessible(true);
+        field.setInt(requests, value);
+    }
+
+    private static void assertFailedWith(CompletableFuture<?> future, Class<? extends Throwable> type) {
+        try {
+            future.get();
+            fail("请求应该失败");
+        } catch (ExecutionException e) {
+            assertSame(type, e.getCause().getClass());
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
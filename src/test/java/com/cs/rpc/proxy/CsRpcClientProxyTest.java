@@ -0,0 +1,112 @@
+package com.cs.rpc.proxy;
+
+import com.cs.rpc.annotation.CsMethod;
+import com.cs.rpc.annotation.CsReference;
+import com.cs.rpc.exception.CsRpcCircuitOpenException;
+import com.cs.rpc.exception.CsRpcException;
+import com.cs.rpc.message.CsRequest;
+import com.cs.rpc.netty.client.NettyClient;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ：cs
+ * @description：请求没有发出就失败(没有可用的服务提供方、熔断)时,普通调用和单向调用按同样的方式交给调用方:
+ *      同步调用抛出,异步签名返回失败的future,CsRpcContext.call中交出失败的future
+ * @date ：2026/10/18 19:00
+ */
+public class CsRpcClientProxyTest {
+
+    interface QuoteService {
+        String quote(String symbol);
+
+        CompletableFuture<String> quoteAsync(String symbol);
+
+        CompletionStage<String> quoteStage(String symbol);
+
+        @CsMethod(oneway = true)
+        void publish(String symbol);
+    }
+
+    private static final class ReferenceHolder {
+        @CsReference(version = "1.0")
+        private QuoteService service;
+    }
+
+    @Test
+    public void noProviderFailsTheSameWayOnEveryPath() throws Exception {
+        assertRejectedEverywhere(new CsRpcException("没有可用的服务提供方:demo"));
+    }
+
+    @Test
+    public void openCircuitFailsTheSameWayOnEveryPath() throws Exception {
+        assertRejectedEverywhere(new CsRpcCircuitOpenException("熔断器打开"));
+    }
+
+    private static void assertRejectedEverywhere(CsRpcException rejection) throws Exception {
+        QuoteService service = new CsRpcClientProxy(reference(), new RejectingClient(rejection)).getProxy(QuoteService.class);
+
+        try {
+            service.quote("a");
+            fail("应该抛出");
+        } catch (CsRpcException e) {
+            assertSame(rejection, e);
+        }
+        try {
+            service.publish("a");
+            fail("应该抛出");
+        } catch (CsRpcException e) {
+            assertSame(rejection, e);
+        }
+
+        assertFailedWith(rejection, service.quoteAsync("a"));
+        assertFailedWith(rejection, service.quoteStage("a").toCompletableFuture());
+        assertFailedWith(rejection, CsRpcContext.call(() -> service.quote("a")));
+        assertFailedWith(rejection, CsRpcContext.call(() -> {
+            service.publish("a");
+            return null;
+        }));
+    }
+
+    private static CsReference reference() throws NoSuchFieldException {
+        return ReferenceHolder.class.getDeclaredField("service").getAnnotation(CsReference.class);
+    }
+
+    private static void assertFailedWith(Throwable expected, CompletableFuture<?> future) throws InterruptedException {
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail("应该失败");
+        } catch (ExecutionException e) {
+            assertSame(expected, e.getCause());
+        }
+    }
+
+    /**
+     * 选不出服务提供方,按CsClient的约定直接抛出
+     */
+    private static final class RejectingClient extends NettyClient {
+        private final CsRpcException rejection;
+
+        private RejectingClient(CsRpcException rejection) {
+            this.rejection = rejection;
+        }
+
+        @Override
+        public Object sendRequest(CsRequest csRequest, CsMethodMetadata metadata) {
+            throw rejection;
+        }
+
+        @Override
+        public void sendOneway(CsRequest csRequest, CsMethodMetadata metadata) {
+            throw rejection;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.cs.rpc.proxy;
+
+import com.cs.rpc.annotation.CsReference;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ：cs
+ * @description：生成的存根的测试:参数装箱、返回值拆箱、void、数组、受检异常原样抛出、default方法和父接口方法
+ *      代理的invoke(metadata,args)被替换成记录调用并返回预设结果,不发请求
+ * @date ：2026/10/18 10:30
+ */
+public class CsRpcStubGeneratorTest {
+
+    private RecordingProxy proxy;
+    private StubService stub;
+
+    @Before
+    public void setUp() throws Exception {
+        proxy = new RecordingProxy(reference());
+        stub = proxy.getStub(StubService.class);
+    }
+
+    @Test
+    public void generatesStubInsteadOfJdkProxy() {
+        assertTrue(stub instanceof CsRpcStub);
+        assertFalse(Proxy.isProxyClass(stub.getClass()));
+    }
+
+    @Test
+    public void boxesPrimitiveArguments() {
+        proxy.results.put("mix", 99L);
+        assertEquals(99L, stub.mix(true, (byte) 1, 'c', (short) 2, 3, 4L, 5.5f, 6.5d));
+        Call call = proxy.lastCall("mix");
+        assertArrayEquals(new Object[]{true, (byte) 1, 'c', (short) 2, 3, 4L, 5.5f, 6.5d}, call.args);
+        assertArrayEquals(new Class<?>[]{boolean.class, byte.class, char.class, short.class, int.class,
+                long.class, float.class, double.class}, call.metadata.getParamTypes());
+    }
+
+    @Test
+    public void unboxesPrimitiveReturns() {
+        proxy.results.put("isReady", true);
+        proxy.results.put("toByte", (byte) -1);
+        proxy.results.put("toChar", 'x');
+        proxy.results.put("toShort", (short) -2);
+        proxy.results.put("toInt", Integer.MIN_VALUE);
+        proxy.results.put("toLong", Long.MAX_VALUE);
+        proxy.results.put("toFloat", 1.5f);
+        proxy.results.put("toDouble", -2.5d);
+        assertTrue(stub.isReady());
+        assertEquals((byte) -1, stub.toByte());
+        assertEquals('x', stub.toChar());
+        assertEquals((short) -2, stub.toShort());
+        assertEquals(Integer.MIN_VALUE, stub.toInt());
+        assertEquals(Long.MAX_VALUE, stub.toLong());
+        assertEquals(1.5f, stub.toFloat(), 0f);
+        assertEquals(-2.5d, stub.toDouble(), 0d);
+        //无参方法传null参数数组
+        assertNull(proxy.lastCall("toInt").args);
+    }
+
+    @Test
+    public void voidMethodIsInvokedRemotely() {
+        proxy.results.put("fire", "ignored");
+        stub.fire("start");
+        assertArrayEquals(new Object[]{"start"}, proxy.lastCall("fire").args);
+    }
+
+    @Test
+    public void passesAndReturnsArrays() {
+        int[] ids = {1, 2, 3};
+        proxy.results.put("names", new String[]{"a", "b"});
+        proxy.results.put("ids", ids);
+        assertArrayEquals(new String[]{"a", "b"}, stub.names(ids));
+        assertSame(ids, proxy.lastCall("names").args[0]);
+        assertSame(ids, stub.ids());
+    }
+
+    @Test
+    public void checkedExceptionIsThrownUnwrapped() throws Exception {
+        proxy.failures.put("load", new FileNotFoundException("/missing"));
+        try {
+            stub.load("/missing");
+            fail();
+        } catch (FileNotFoundException e) {
+            assertEquals("/missing", e.getMessage());
+        }
+    }
+
+    @Test
+    public void runtimeExceptionIsThrownUnwrapped() {
+        IllegalStateException failure = new IllegalStateException("down");
+        proxy.failures.put("toInt", failure);
+        try {
+            stub.toInt();
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void defaultMethodRunsLocallyAndInheritedMethodRunsRemotely() {
+        proxy.results.put("upper", "BOB");
+        assertEquals("hi BOB", stub.greet("bob"));
+        assertEquals(1, proxy.calls.size());
+        Call call = proxy.lastCall("upper");
+        assertArrayEquals(new Object[]{"bob"}, call.args);
+    }
+
+    @Test
+    public void objectMethodsAreNotRemote() {
+        assertTrue(stub.toString().startsWith(CsRpcStub.class.getName()));
+        assertEquals(stub, stub);
+        assertTrue(proxy.calls.isEmpty());
+    }
+
+    @Test
+    public void stubClassIsSharedBetweenReferences() throws Exception {
+        StubService other = new RecordingProxy(reference()).getStub(StubService.class);
+        assertSame(stub.getClass(), other.getClass());
+    }
+
+    @Test
+    public void nonPublicInterfaceFallsBackToJdkProxy() throws Exception {
+        HiddenService hidden = proxy.getStub(HiddenService.class);
+        assertTrue(Proxy.isProxyClass(hidden.getClass()));
+        proxy.results.put("hidden", 7);
+        assertEquals(7, hidden.hidden());
+    }
+
+    private static CsReference reference() throws NoSuchFieldException {
+        return ReferenceHolder.class.getDeclaredField("service").getAnnotation(CsReference.class);
+    }
+
+    interface HiddenService {
+        int hidden();
+    }
+
+    private static final class ReferenceHolder {
+        @CsReference(version = "1.0")
+        private StubService service;
+    }
+
+    private static final class Call {
+        private final CsMethodMetadata metadata;
+        private final Object[] args;
+
+        private Call(CsMethodMetadata metadata, Object[] args) {
+            this.metadata = metadata;
+            this.args = args;
+        }
+    }
+
+    /**
+     * 不发请求,记录调用并按方法名返回预设结果或抛出预设异常
+     */
+    private static final class RecordingProxy extends CsRpcClientProxy {
+        private final List<Call> calls = new ArrayList<>();
+        private final Map<String, Object> results = new HashMap<>();
+        private final Map<String, Throwable> failures = new HashMap<>();
+
+        private RecordingProxy(CsReference csReference) {
+            super(csReference, null);
+        }
+
+        @Override
+        public Object invoke(CsMethodMetadata metadata, Object[] args) throws Throwable {
+            calls.add(new Call(metadata, args));
+            Throwable failure = failures.get(metadata.getMethodName());
+            if (failure != null) {
+                throw failure;
+            }
+            return results.get(metadata.getMethodName());
+        }
+
+        private Call lastCall(String methodName) {
+            for (int i = calls.size() - 1; i >= 0; i--) {
+                if (calls.get(i).metadata.getMethodName().equals(methodName)) {
+                    return calls.get(i);
+                }
+            }
+            throw new AssertionError("没有调用:" + methodName);
+        }
+    }
+}
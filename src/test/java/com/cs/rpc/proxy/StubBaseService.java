@@ -0,0 +1,11 @@
+package com.cs.rpc.proxy;
+
+/**
+ * @author ：cs
+ * @description：存根测试用的父接口,存根需要实现父接口中的方法
+ * @date ：2026/10/18 10:30
+ */
+public interface StubBaseService {
+
+    String upper(String value);
+}
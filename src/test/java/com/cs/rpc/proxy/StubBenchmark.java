@@ -0,0 +1,74 @@
+package com.cs.rpc.proxy;
+
+import com.cs.rpc.annotation.CsReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author ：cs
+ * @description：JDK动态代理和生成的存根的调用开销对比(JMH)
+ *      不发请求,只比较到CsRpcClientProxy.invoke(metadata,args)之前的分发
+ *      运行: java -cp test-classes:classes:依赖 com.cs.rpc.proxy.StubBenchmark
+ * @date ：2026/10/18 10:30
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StubBenchmark {
+
+    private BenchmarkService proxy;
+    private BenchmarkService stub;
+    private long id;
+
+    @Setup
+    public void setup() throws Exception {
+        CsReference csReference = BenchmarkHolder.class.getDeclaredField("service").getAnnotation(CsReference.class);
+        CsRpcClientProxy target = new CsRpcClientProxy(csReference, null) {
+            @Override
+            public Object invoke(CsMethodMetadata metadata, Object[] arguments) {
+                return arguments[1];
+            }
+        };
+        proxy = target.getProxy(BenchmarkService.class);
+        stub = target.getStub(BenchmarkService.class);
+    }
+
+    @Benchmark
+    public long jdkProxy() {
+        return proxy.find("goods", ++id);
+    }
+
+    @Benchmark
+    public long stub() {
+        return stub.find("goods", ++id);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StubBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    public interface BenchmarkService {
+        long find(String name, long id);
+    }
+
+    private static final class BenchmarkHolder {
+        @CsReference(version = "1.0")
+        private BenchmarkService service;
+    }
+}
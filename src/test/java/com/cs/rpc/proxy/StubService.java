@@ -0,0 +1,41 @@
+package com.cs.rpc.proxy;
+
+import java.io.IOException;
+
+/**
+ * @author ：cs
+ * @description：存根测试用的接口,覆盖各种基本类型的参数和返回值、void、数组、受检异常和default方法
+ * @date ：2026/10/18 10:30
+ */
+public interface StubService extends StubBaseService {
+
+    long mix(boolean z, byte b, char c, short s, int i, long l, float f, double d);
+
+    boolean isReady();
+
+    byte toByte();
+
+    char toChar();
+
+    short toShort();
+
+    int toInt();
+
+    long toLong();
+
+    float toFloat();
+
+    double toDouble();
+
+    void fire(String event);
+
+    String[] names(int[] ids);
+
+    int[] ids();
+
+    String load(String path) throws IOException;
+
+    default String greet(String name) {
+        return "hi " + upper(name);
+    }
+}
@@ -0,0 +1,128 @@
+package com.cs.rpc.serialize;
+
+import com.cs.rpc.message.CsRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.runtime.RuntimeSchema;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author ：cs
+ * @description：LinkedBufferPool的重入和多线程测试
+ * @date ：2026/10/18 10:30
+ */
+public class LinkedBufferPoolTest {
+
+    @Test
+    public void nestedAcquireNeverSharesABuffer() {
+        LinkedBuffer large = LinkedBufferPool.acquire(4 * 1024);
+        LinkedBuffer outer = LinkedBufferPool.acquire(0);
+        LinkedBuffer inner = LinkedBufferPool.acquire(0);
+        LinkedBuffer innermost = LinkedBufferPool.acquire(0);
+        assertNotSame(large, outer);
+        assertNotSame(outer, inner);
+        assertNotSame(outer, innermost);
+        assertNotSame(inner, innermost);
+        LinkedBufferPool.release(innermost, 0);
+        LinkedBufferPool.release(inner, 0);
+        LinkedBufferPool.release(outer, 0);
+        LinkedBufferPool.release(large, 0);
+        //归还后每个级别复用池中的buffer
+        assertSame(outer, LinkedBufferPool.acquire(0));
+        assertSame(large, LinkedBufferPool.acquire(4 * 1024));
+    }
+
+    @Test
+    public void nestedSerializationKeepsBothResults() {
+        ProtostuffSerializer serializer = new ProtostuffSerializer();
+        CsRequest outerRequest = request("outer", 100);
+        LinkedBuffer outer = LinkedBufferPool.acquire(0);
+        try {
+            //外层持有buffer时,同一线程内再次序列化同级别大小的对象
+            byte[] innerBytes = serializer.serialize(request("inner", 100));
+            byte[] outerBytes = ProtostuffIOUtil.toByteArray(outerRequest, RuntimeSchema.getSchema(CsRequest.class), outer);
+            assertEquals("inner", ((CsRequest) serializer.deserialize(innerBytes, CsRequest.class)).getMethodName());
+            assertEquals("outer", ((CsRequest) serializer.deserialize(outerBytes, CsRequest.class)).getMethodName());
+        } finally {
+            LinkedBufferPool.release(outer, 0);
+        }
+    }
+
+    /**
+     * 多个线程同时序列化大小不同(覆盖所有级别以及超过最大级别)的对象,反序列化后逐个校验,不能有任何错乱
+     */
+    @Test
+    public void concurrentSerializationHasNoMismatches() throws InterruptedException {
+        ProtostuffSerializer serializer = new ProtostuffSerializer();
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int iterations = 2000;
+        AtomicLong mismatches = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < iterations; i++) {
+                        String method = "t" + id + "-" + i;
+                        CsRequest request = request(method, random.nextInt(1, 48 * 1024));
+                        CsRequest copy;
+                        if ((i & 1) == 0) {
+                            copy = (CsRequest) serializer.deserialize(serializer.serialize(request), CsRequest.class);
+                        } else {
+                            ByteBuf buf = Unpooled.buffer();
+                            try {
+                                serializer.serialize(request, buf);
+                                copy = (CsRequest) serializer.deserialize(buf, CsRequest.class);
+                            } finally {
+                                buf.release();
+                            }
+                        }
+                        if (!request.getInterfaceName().equals(copy.getInterfaceName())
+                                || !method.equals(copy.getMethodName())) {
+                            mismatches.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }, "buffer-pool-stress-" + t);
+            worker.start();
+        }
+        start.countDown();
+        assertTrue("压力测试超时", done.await(2, TimeUnit.MINUTES));
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertEquals(0, mismatches.get());
+    }
+
+    private static CsRequest request(String method, int size) {
+        char[] chars = new char[size];
+        char c = (char) ('a' + (method.hashCode() & 15));
+        Arrays.fill(chars, c);
+        return CsRequest.builder()
+                .interfaceName(new String(chars))
+                .methodName(method)
+                .version("1.0")
+                .build();
+    }
+}
@@ -0,0 +1,11 @@
+package com.cs.rpc.server;
+
+/**
+ * @author ：cs
+ * @description：测试用的父接口,方法声明在父接口中
+ * @date ：2026/10/18 9:50
+ */
+public interface BaseService {
+
+    int ping(byte b, short s, char c, float f);
+}
@@ -0,0 +1,21 @@
+package com.cs.rpc.server;
+
+import java.io.IOException;
+
+/**
+ * @author ：cs
+ * @description：测试用的服务接口,覆盖基本类型、void、数组、受检异常和父接口中的方法
+ * @date ：2026/10/18 9:50
+ */
+public interface EchoService extends BaseService {
+
+    String echo(String message, int times);
+
+    long sum(int a, long b, double c, boolean negate);
+
+    char[] chars(String message);
+
+    void record(String message);
+
+    String read(String path) throws IOException;
+}
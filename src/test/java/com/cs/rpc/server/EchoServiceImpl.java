@@ -0,0 +1,47 @@
+package com.cs.rpc.server;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author ：cs
+ * @description：测试用的服务实现,类本身不是public,调用器只能通过接口调用
+ * @date ：2026/10/18 9:50
+ */
+class EchoServiceImpl implements EchoService {
+
+    final List<String> records = new ArrayList<>();
+
+    @Override
+    public String echo(String message, int times) {
+        return message + times;
+    }
+
+    @Override
+    public long sum(int a, long b, double c, boolean negate) {
+        long sum = a + b + (long) c;
+        return negate ? -sum : sum;
+    }
+
+    @Override
+    public char[] chars(String message) {
+        return message.toCharArray();
+    }
+
+    @Override
+    public void record(String message) {
+        records.add(message);
+    }
+
+    @Override
+    public String read(String path) throws IOException {
+        throw new FileNotFoundException(path);
+    }
+
+    @Override
+    public int ping(byte b, short s, char c, float f) {
+        return b + s + c + (int) f;
+    }
+}
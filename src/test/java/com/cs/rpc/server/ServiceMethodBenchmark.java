@@ -0,0 +1,89 @@
+package com.cs.rpc.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author ：cs
+ * @description：服务方法调用方式的对比(JMH):每次getMethod后反射、缓存的Method.invoke、
+ *      保存在实例字段里的MethodHandle(原来的做法)、生成的调用器(以及加上checkArguments)、直接调用
+ *      运行: java -cp test-classes:classes:依赖 com.cs.rpc.server.ServiceMethodBenchmark
+ * @date ：2026/10/18 9:50
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceMethodBenchmark {
+
+    private EchoService service;
+    private Method method;
+    private MethodHandle handle;
+    private ServiceMethod serviceMethod;
+    private Object[] arguments;
+
+    @Setup
+    public void setup() throws Exception {
+        service = new EchoServiceImpl();
+        method = EchoService.class.getMethod("sum", int.class, long.class, double.class, boolean.class);
+        handle = MethodHandles.lookup().unreflect(method)
+                .bindTo(service)
+                .asSpreader(Object[].class, 4)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        serviceMethod = new ServiceMethod(1, "echo", EchoService.class.getName(), service, method);
+        arguments = new Object[]{1, 10L, 5.5d, false};
+    }
+
+    @Benchmark
+    public Object getMethodAndInvoke() throws Exception {
+        return service.getClass().getMethod("sum", int.class, long.class, double.class, boolean.class).invoke(service, arguments);
+    }
+
+    @Benchmark
+    public Object cachedMethodInvoke() throws Exception {
+        return method.invoke(service, arguments);
+    }
+
+    @Benchmark
+    public Object fieldMethodHandle() throws Throwable {
+        return (Object) handle.invokeExact(arguments);
+    }
+
+    @Benchmark
+    public Object generatedInvoker() throws Throwable {
+        return serviceMethod.invoke(arguments);
+    }
+
+    @Benchmark
+    public Object checkAndGeneratedInvoker() throws Throwable {
+        return serviceMethod.checkArguments(arguments) == null ? serviceMethod.invoke(arguments) : null;
+    }
+
+    @Benchmark
+    public Object direct() {
+        return service.sum((Integer) arguments[0], (Long) arguments[1], (Double) arguments[2], (Boolean) arguments[3]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ServiceMethodBenchmark.class.getSimpleName()).build()).run();
+    }
+}
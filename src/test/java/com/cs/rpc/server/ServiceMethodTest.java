@@ -0,0 +1,103 @@
+package com.cs.rpc.server;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author ：cs
+ * @description：服务方法调用器的测试,生成的调用器和非public接口退回的MethodHandle都要覆盖
+ * @date ：2026/10/18 9:50
+ */
+public class ServiceMethodTest {
+
+    private final EchoServiceImpl service = new EchoServiceImpl();
+
+    @Test
+    public void publicInterfaceUsesGeneratedInvoker() throws Exception {
+        ServiceMethod method = method("echo", String.class, int.class);
+        assertTrue(method.getInvoker().getClass().getName().startsWith(ServiceInvoker.class.getName() + "$EchoService$echo$"));
+    }
+
+    @Test
+    public void invokesWithPrimitiveArgumentsAndReturn() throws Throwable {
+        assertEquals("hello42", method("echo", String.class, int.class).invoke(new Object[]{"hello", 42}));
+        assertEquals(-16L, method("sum", int.class, long.class, double.class, boolean.class)
+                .invoke(new Object[]{1, 10L, 5.9d, true}));
+    }
+
+    @Test
+    public void invokesMethodDeclaredInParentInterface() throws Throwable {
+        ServiceMethod method = method("ping", byte.class, short.class, char.class, float.class);
+        assertEquals(BaseService.class, method.getMethod().getDeclaringClass());
+        assertEquals(1 + 2 + 'a' + 3, method.invoke(new Object[]{(byte) 1, (short) 2, 'a', 3.5f}));
+    }
+
+    @Test
+    public void voidMethodReturnsNull() throws Throwable {
+        assertNull(method("record", String.class).invoke(new Object[]{"a"}));
+        assertEquals(Collections.singletonList("a"), service.records);
+    }
+
+    @Test
+    public void returnsArray() throws Throwable {
+        assertArrayEquals(new char[]{'a', 'b'}, (char[]) method("chars", String.class).invoke(new Object[]{"ab"}));
+    }
+
+    @Test
+    public void checkedExceptionIsThrownUnwrapped() throws Throwable {
+        ServiceMethod method = method("read", String.class);
+        try {
+            method.invoke(new Object[]{"/missing"});
+            fail();
+        } catch (FileNotFoundException e) {
+            assertEquals("/missing", e.getMessage());
+        }
+    }
+
+    @Test
+    public void checksArgumentsBeforeInvoke() throws Exception {
+        ServiceMethod method = method("echo", String.class, int.class);
+        assertNull(method.checkArguments(new Object[]{"a", 1}));
+        assertNull(method.checkArguments(new Object[]{null, 1}));
+        assertNotNull(method.checkArguments(new Object[]{"a"}));
+        assertNotNull(method.checkArguments(null));
+        assertNotNull(method.checkArguments(new Object[]{"a", null}));
+        assertNotNull(method.checkArguments(new Object[]{"a", 1L}));
+    }
+
+    @Test
+    public void nonPublicInterfaceFallsBackToMethodHandle() throws Throwable {
+        HiddenService hidden = (a, b) -> a * b;
+        Method method = HiddenService.class.getMethod("multiply", int.class, int.class);
+        ServiceMethod serviceMethod = new ServiceMethod(1, "hidden", HiddenService.class.getName(), hidden, method);
+        assertEquals(42, serviceMethod.invoke(new Object[]{6, 7}));
+    }
+
+    @Test
+    public void eachMethodGetsItsOwnInvoker() throws Exception {
+        ServiceMethod echo = method("echo", String.class, int.class);
+        ServiceMethod record = method("record", String.class);
+        assertSame(service, echo.getService());
+        assertTrue(echo.getInvoker().getClass() != record.getInvoker().getClass());
+    }
+
+    private ServiceMethod method(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        Method method = EchoService.class.getMethod(name, parameterTypes);
+        return new ServiceMethod(1, "echo", EchoService.class.getName(), service, method);
+    }
+
+    interface HiddenService {
+        int multiply(int a, int b);
+    }
+}